@@ -0,0 +1,157 @@
+package Q4.bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Q4.DTNode;
+import Q4.Dataset;
+import Q4.ID3;
+
+/*
+ * JMH benchmarks for the ID3 hot paths, on both the ArrayList datasets and the
+ * encoded Dataset, over a SyntheticDataset. The same operations as ID3Benchmark,
+ * measured by JMH's harness (forked JVMs, dead code elimination guarded by
+ * returning each result).
+ *
+ * Build with bench/pom.xml and run with the gc profiler for allocation per operation:
+ *   cd bench && mvn package
+ *   java -jar target/benchmarks.jar HotPathBenchmark -prof gc
+ * The dataset settings are JMH parameters, e.g. -p rows=100000 -p attributes=20 -p skew=0.5
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotPathBenchmark {
+
+	//the seeded synthetic dataset, generated and encoded once per trial
+	@State(Scope.Benchmark)
+	public static class Data {
+
+		@Param("10000")
+		int rows;
+		@Param("10")
+		int attributes;
+		@Param("4")
+		int cardinality;
+		@Param("2")
+		int classes;
+		@Param("0")
+		double skew;
+		@Param("42")
+		long seed;
+
+		ArrayList<ArrayList<String>> rowList;
+		Dataset ds;
+		int[] allRows;
+		String attribute;
+		ID3 legacy;
+		ID3 encoded;
+		PrintStream out;
+
+		@Setup(Level.Trial)
+		public void setup() throws Exception {
+			rowList = new SyntheticDataset(rows, attributes, cardinality, classes, skew, seed).generateRows();
+			ds = Dataset.fromRows(rowList);
+			allRows = new int[ds.getNumRows()];
+			for (int i = 0; i < allRows.length; i++) {
+				allRows[i] = i;
+			}
+			attribute = ds.getAttributeName(0);
+			legacy = new ID3(rowList, SyntheticDataset.CLASS_ATTRIBUTE);
+			encoded = new ID3(ds, SyntheticDataset.CLASS_ATTRIBUTE);
+
+			//testSolution prints its results, keep that out of the report
+			out = System.out;
+			System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+			legacy.buildDecisionTree(new ArrayList<String>(), rowList);
+			encoded.buildDecisionTree(ds);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			System.setOut(out);
+		}
+	}
+
+
+	@Benchmark
+	public double legacyCalculateEntropy(Data data) {
+		return data.legacy.calculateEntropy(data.rowList);
+	}
+
+	@Benchmark
+	public double legacyCalculateInformationGain(Data data) {
+		return data.legacy.calculateInformationGain(data.attribute, data.rowList);
+	}
+
+	@Benchmark
+	public HashMap<String, ArrayList<ArrayList<String>>> legacySplitDataset(Data data) {
+		return data.legacy.splitDataset(data.attribute, data.rowList);
+	}
+
+	@Benchmark
+	public String legacyChooseBestSplit(Data data) {
+		return data.legacy.chooseBestSplit(data.rowList, new ArrayList<String>());
+	}
+
+	@Benchmark
+	public DTNode legacyBuildDecisionTree(Data data) {
+		return data.legacy.buildDecisionTree(new ArrayList<String>(), data.rowList);
+	}
+
+	@Benchmark
+	public Boolean legacyTestSolution(Data data) {
+		return data.legacy.testSolution(data.rowList);
+	}
+
+
+	@Benchmark
+	public double encodedCalculateEntropy(Data data) {
+		return data.encoded.calculateEntropy(data.ds, data.allRows);
+	}
+
+	@Benchmark
+	public double encodedCalculateInformationGain(Data data) {
+		return data.encoded.calculateInformationGain(data.attribute, data.ds, data.allRows);
+	}
+
+	@Benchmark
+	public int[][] encodedSplitDataset(Data data) {
+		return data.encoded.splitDataset(data.attribute, data.ds, data.allRows);
+	}
+
+	@Benchmark
+	public String encodedChooseBestSplit(Data data) {
+		return data.encoded.chooseBestSplit(data.ds, data.allRows, new ArrayList<String>());
+	}
+
+	@Benchmark
+	public DTNode encodedBuildDecisionTree(Data data) {
+		return data.encoded.buildDecisionTree(data.ds);
+	}
+
+	@Benchmark
+	public Boolean encodedTestSolution(Data data) {
+		return data.encoded.testSolution(data.ds);
+	}
+
+}
@@ -0,0 +1,207 @@
+package Q4.bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+import Q4.CompiledTree;
+import Q4.DTNode;
+import Q4.Dataset;
+import Q4.ID3;
+import Q4.Predictor;
+import Q4.TreeCodegen;
+
+/*
+ * Benchmarks for the ID3 hot paths, on both the ArrayList datasets and the
+ * encoded Dataset, over a SyntheticDataset.
+ *
+ * Each benchmark is warmed up, then run for a number of timed iterations on the
+ * main thread. For each one it reports throughput (ops/s and ms/op) and the
+ * bytes allocated per operation and per second, measured with the per-thread
+ * allocation counter of the JVM (the same counter JMH's gc profiler reports as
+ * gc.alloc.rate and gc.alloc.rate.norm).
+ *
+ * Run from the project root after compiling src and bench to bin:
+ *   java -cp bin Q4.bench.ID3Benchmark -rows 100000 -attributes 20 -cardinality 5 -classes 2 -skew 0.5
+ * Other options: -seed, -warmup (iterations), -iterations, -time (ms per iteration),
+ * -filter (only run benchmarks whose name contains the text).
+ */
+public class ID3Benchmark {
+
+	static volatile Object sink; //keeps benchmark results alive so the JIT cannot drop the work
+
+	int warmupIterations = 3;
+	int iterations = 5;
+	long iterationMillis = 1000;
+	String filter = "";
+	PrintStream out = System.out;
+	com.sun.management.ThreadMXBean threads;
+
+
+	public static void main(String[] args) throws Exception {
+
+		int rows = 10000;
+		int attributes = 10;
+		int cardinality = 4;
+		int classes = 2;
+		double skew = 0;
+		long seed = 42;
+		ID3Benchmark bench = new ID3Benchmark();
+
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch (args[i]) {
+				case "-rows": rows = Integer.parseInt(value); break;
+				case "-attributes": attributes = Integer.parseInt(value); break;
+				case "-cardinality": cardinality = Integer.parseInt(value); break;
+				case "-classes": classes = Integer.parseInt(value); break;
+				case "-skew": skew = Double.parseDouble(value); break;
+				case "-seed": seed = Long.parseLong(value); break;
+				case "-warmup": bench.warmupIterations = Integer.parseInt(value); break;
+				case "-iterations": bench.iterations = Integer.parseInt(value); break;
+				case "-time": bench.iterationMillis = Long.parseLong(value); break;
+				case "-filter": bench.filter = value; break;
+				default: throw new IllegalArgumentException("unknown option " + args[i]);
+			}
+		}
+
+		bench.runAll(new SyntheticDataset(rows, attributes, cardinality, classes, skew, seed));
+	}
+
+
+	/*
+	 * Runs every benchmark that matches the filter on one synthetic dataset
+	 *
+	 * @param data - the dataset generator settings
+	 */
+	void runAll(SyntheticDataset data) throws Exception {
+
+		threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		ArrayList<ArrayList<String>> rows = data.generateRows();
+		Dataset ds = Dataset.fromRows(rows);
+		String classAttr = SyntheticDataset.CLASS_ATTRIBUTE;
+		String attribute = ds.getAttributeName(0);
+		int[] allRows = new int[ds.getNumRows()];
+		for (int i = 0; i < allRows.length; i++) {
+			allRows[i] = i;
+		}
+
+		out.println("# " + data);
+		out.println(String.format("%-40s %14s %12s %14s %12s", "Benchmark", "ops/s", "ms/op", "alloc B/op", "alloc MB/s"));
+
+		//testSolution prints its results, keep that out of the report
+		PrintStream quiet = new PrintStream(OutputStream.nullOutputStream());
+		System.setOut(quiet);
+		try {
+			ID3 legacy = new ID3(rows, classAttr);
+			run("legacy.calculateEntropy", () -> legacy.calculateEntropy(rows));
+			run("legacy.calculateInformationGain", () -> legacy.calculateInformationGain(attribute, rows));
+			run("legacy.splitDataset", () -> legacy.splitDataset(attribute, rows));
+			run("legacy.chooseBestSplit", () -> legacy.chooseBestSplit(rows, new ArrayList<String>()));
+			DTNode legacyRoot = null;
+			try {
+				legacyRoot = legacy.buildDecisionTree(new ArrayList<String>(), rows);
+			} catch (RuntimeException e) { //the ArrayList build fails when no attribute has a positive gain
+				out.println(String.format("%-40s %s", "legacy.buildDecisionTree", "fails on this dataset: " + e));
+			}
+			if (legacyRoot != null) {
+				run("legacy.buildDecisionTree", () -> legacy.buildDecisionTree(new ArrayList<String>(), rows));
+				run("legacy.testSolution", () -> legacy.testSolution(rows));
+			}
+
+			ID3 encoded = new ID3(ds, classAttr);
+			run("encoded.calculateEntropy", () -> encoded.calculateEntropy(ds, allRows));
+			run("encoded.calculateInformationGain", () -> encoded.calculateInformationGain(attribute, ds, allRows));
+			run("encoded.splitDataset", () -> encoded.splitDataset(attribute, ds, allRows));
+			run("encoded.chooseBestSplit", () -> encoded.chooseBestSplit(ds, allRows, new ArrayList<String>()));
+			run("encoded.buildDecisionTree", () -> encoded.buildDecisionTree(ds));
+			run("encoded.buildDecisionTreeLevelWise", () -> encoded.buildDecisionTreeLevelWise(ds));
+			run("encoded.testSolution", () -> encoded.testSolution(ds));
+			encoded.buildDecisionTree(ds); //when the filter skipped the build benchmarks
+			CompiledTree compiled = encoded.compile();
+			int[] predictions = new int[ds.getNumRows()];
+			run("compiled.predictBatch", () -> {
+				compiled.predictBatch(ds, predictions);
+				return predictions;
+			});
+
+			//the interpreted and generated predictors on the same encoded rows, which must agree on every row
+			int[][] encodedRows = new int[ds.getNumRows()][compiled.getNumAttributes()];
+			for (int row = 0; row < encodedRows.length; row++) {
+				compiled.encode(rows.get(row + 1), encodedRows[row]);
+			}
+			Predictor generated = TreeCodegen.generate(compiled);
+			int[] interpretedOut = new int[encodedRows.length];
+			int[] generatedOut = new int[encodedRows.length];
+			compiled.predictBatch(encodedRows, interpretedOut);
+			generated.predictBatch(encodedRows, generatedOut);
+			if (!Arrays.equals(interpretedOut, generatedOut)) {
+				throw new AssertionError("the generated tree predicts differently from the compiled tree");
+			}
+			run("compiled.predictBatch(int[][])", () -> {
+				compiled.predictBatch(encodedRows, interpretedOut);
+				return interpretedOut;
+			});
+			run("generated.predictBatch(int[][])", () -> {
+				generated.predictBatch(encodedRows, generatedOut);
+				return generatedOut;
+			});
+		} finally {
+			System.setOut(out);
+		}
+	}
+
+
+	/*
+	 * Warms up and measures one benchmark, printing a line of results
+	 *
+	 * @param name - the benchmark name
+	 * @param op - one operation; its result is kept in the sink
+	 */
+	void run(String name, Callable<Object> op) throws Exception {
+
+		if (!name.contains(filter)) return;
+
+		for (int i = 0; i < warmupIterations; i++) {
+			iteration(op);
+		}
+
+		long ops = 0, nanos = 0, bytes = 0;
+		for (int i = 0; i < iterations; i++) {
+			long[] result = iteration(op);
+			ops += result[0];
+			nanos += result[1];
+			bytes += result[2];
+		}
+
+		double seconds = nanos / 1e9;
+		out.println(String.format("%-40s %14.3f %12.4f %14.0f %12.1f", name,
+				ops / seconds, (nanos / 1e6) / ops, (double)bytes / ops, bytes / 1e6 / seconds));
+	}
+
+
+	/*
+	 * Runs an operation repeatedly for one iteration's time
+	 *
+	 * @return {operations, elapsed nanoseconds, allocated bytes}
+	 */
+	long[] iteration(Callable<Object> op) throws Exception {
+
+		long threadId = Thread.currentThread().getId();
+		long deadline = System.nanoTime() + iterationMillis * 1000000;
+		long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+		long start = System.nanoTime();
+		long ops = 0;
+		long now;
+		do {
+			sink = op.call();
+			ops++;
+		} while ((now = System.nanoTime()) < deadline);
+		long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+		return new long[] {ops, now - start, allocated};
+	}
+
+}
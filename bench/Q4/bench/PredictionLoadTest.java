@@ -0,0 +1,134 @@
+package Q4.bench;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import Q4.LatencyHistogram;
+import Q4.PredictionServer;
+
+/*
+ * Closed-loop load test for a PredictionServer on localhost.
+ *
+ * Opens a number of concurrent connections (each on a virtual thread when the JVM
+ * has them); each connection sends the rows of a csv file one at a time, in turn,
+ * waiting for every answer before sending the next. At the end it reports the
+ * throughput and the p50/p99 latency seen by the clients, followed by the server's
+ * own STATS line.
+ *
+ * Run from the project root after compiling src and bench to bin, with a server running:
+ *   java -cp bin Q4.PredictionServer model.id3 5000
+ *   java -cp bin Q4.bench.PredictionLoadTest -port 5000 -csv data.csv -connections 2000 -seconds 10
+ * Other options: -warmup (seconds before measuring).
+ */
+public class PredictionLoadTest {
+
+	public static void main(String[] args) throws Exception {
+
+		int port = 5000;
+		String csv = null;
+		int connections = 1000;
+		long seconds = 10;
+		long warmupSeconds = 2;
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch (args[i]) {
+				case "-port": port = Integer.parseInt(value); break;
+				case "-csv": csv = value; break;
+				case "-connections": connections = Integer.parseInt(value); break;
+				case "-seconds": seconds = Long.parseLong(value); break;
+				case "-warmup": warmupSeconds = Long.parseLong(value); break;
+				default: throw new IllegalArgumentException("unknown option " + args[i]);
+			}
+		}
+		if (csv == null) {
+			System.err.println("usage: java Q4.bench.PredictionLoadTest -csv <rows file> [-port 5000] [-connections 1000] [-seconds 10] [-warmup 2]");
+			return;
+		}
+
+		List<String> lines = Files.readAllLines(Paths.get(csv), StandardCharsets.UTF_8);
+		List<String> rows = lines.subList(1, lines.size()); //skip the header
+		if (rows.isEmpty()) throw new IllegalArgumentException(csv + " has no rows");
+
+		LatencyHistogram latencies = new LatencyHistogram();
+		AtomicLong completed = new AtomicLong();
+		AtomicLong failures = new AtomicLong();
+		long start = System.nanoTime();
+		long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+		long end = measureFrom + TimeUnit.SECONDS.toNanos(seconds);
+
+		ExecutorService clients = PredictionServer.newThreadPerTaskExecutor();
+		for (int c = 0; c < connections; c++) {
+			int first = c % rows.size();
+			int serverPort = port;
+			clients.execute(() -> {
+				try {
+					run(serverPort, rows, first, measureFrom, end, latencies, completed);
+				} catch (IOException e) {
+					failures.incrementAndGet();
+				}
+			});
+		}
+		clients.shutdown();
+		clients.awaitTermination(warmupSeconds + seconds + 60, TimeUnit.SECONDS);
+
+		double measured = (System.nanoTime() - measureFrom) / 1e9;
+		System.out.println(String.format("connections=%d requests=%d throughput=%.0f/s p50=%.1fus p99=%.1fus failedConnections=%d",
+				connections, completed.get(), completed.get() / measured,
+				latencies.getPercentile(50) / 1e3, latencies.getPercentile(99) / 1e3, failures.get()));
+		System.out.println("server: " + request(port, "STATS"));
+	}
+
+
+	/*
+	 * One client connection: sends rows in turn until the end time, recording the latency
+	 * of every answer after the warmup
+	 */
+	static void run(int port, List<String> rows, int first, long measureFrom, long end,
+			LatencyHistogram latencies, AtomicLong completed) throws IOException {
+
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+			socket.setTcpNoDelay(true);
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+			int next = first;
+			while (true) {
+				long sent = System.nanoTime();
+				if (sent >= end) return;
+				out.write(rows.get(next));
+				out.write('\n');
+				out.flush();
+				if (in.readLine() == null) throw new IOException("server closed the connection");
+				if (sent >= measureFrom) {
+					latencies.record(System.nanoTime() - sent);
+					completed.incrementAndGet();
+				}
+				next = (next + 1) % rows.size();
+			}
+		}
+	}
+
+
+	//helper function to send one line on a new connection and read the answer
+	static String request(int port, String line) throws IOException {
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+			Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+			out.write(line + "\n");
+			out.flush();
+			return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)).readLine();
+		}
+	}
+
+}
@@ -0,0 +1,141 @@
+package Q4.bench;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import Q4.Dataset;
+
+/*
+ * Seeded generator of categorical datasets for the benchmarks.
+ *
+ * Attribute values are drawn uniformly from "v0".."v{cardinality-1}". The class
+ * depends on the first few attributes (so trees have some structure to find),
+ * with some rows relabelled at random as noise. Class frequencies are skewed
+ * by the skew setting: class c is drawn with weight exp(-skew * c), so 0 gives
+ * balanced classes and larger values make class "c0" more and more common.
+ *
+ * The same settings and seed always give the same dataset.
+ */
+public class SyntheticDataset {
+
+	public static final String CLASS_ATTRIBUTE = "class";
+
+	int rows;
+	int attributes;
+	int cardinality;
+	int classes;
+	double skew;
+	double noise; //fraction of rows whose class is drawn at random
+	long seed;
+
+
+	/*
+	 * Constructor for the generator settings
+	 *
+	 * @param rows - the number of data rows
+	 * @param attributes - the number of attributes, not including the class
+	 * @param cardinality - the number of distinct values of each attribute
+	 * @param classes - the number of class values
+	 * @param skew - the class skew, 0 for balanced classes
+	 * @param seed - the random seed
+	 */
+	public SyntheticDataset(int rows, int attributes, int cardinality, int classes, double skew, long seed) {
+		this.rows = rows;
+		this.attributes = attributes;
+		this.cardinality = cardinality;
+		this.classes = classes;
+		this.skew = skew;
+		this.noise = 0.1;
+		this.seed = seed;
+	}
+
+
+	/*
+	 * Generates the dataset as a 2d arraylist, in the same form as DecisionTree.parseCSV
+	 *
+	 * @return the dataset, with the header as row 0 and the class as the last column
+	 */
+	public ArrayList<ArrayList<String>> generateRows() {
+
+		Random random = new Random(seed);
+		double[] classCdf = classCdf();
+
+		//the class of each combination of the first few attribute values
+		int keyAttributes = Math.min(3, attributes);
+		int keys = 1;
+		for (int i = 0; i < keyAttributes; i++) {
+			keys *= cardinality;
+		}
+		int[] keyClass = new int[keys];
+		for (int key = 0; key < keys; key++) {
+			keyClass[key] = drawClass(random, classCdf);
+		}
+
+		ArrayList<ArrayList<String>> dataset = new ArrayList<ArrayList<String>>();
+		ArrayList<String> header = new ArrayList<String>();
+		for (int i = 0; i < attributes; i++) {
+			header.add("a" + i);
+		}
+		header.add(CLASS_ATTRIBUTE);
+		dataset.add(header);
+
+		String[] values = new String[cardinality];
+		for (int v = 0; v < cardinality; v++) {
+			values[v] = "v" + v;
+		}
+
+		for (int r = 0; r < rows; r++) {
+			ArrayList<String> row = new ArrayList<String>(attributes + 1);
+			int key = 0;
+			for (int i = 0; i < attributes; i++) {
+				int v = random.nextInt(cardinality);
+				if (i < keyAttributes) {
+					key = key * cardinality + v;
+				}
+				row.add(values[v]);
+			}
+			int classCode = random.nextDouble() < noise ? drawClass(random, classCdf) : keyClass[key];
+			row.add("c" + classCode);
+			dataset.add(row);
+		}
+		return dataset;
+	}
+
+
+	//generates the dataset and encodes it
+	public Dataset generate() {
+		return Dataset.fromRows(generateRows());
+	}
+
+
+	//helper function for the cumulative class distribution
+	double[] classCdf() {
+		double[] cdf = new double[classes];
+		double total = 0;
+		for (int c = 0; c < classes; c++) {
+			total += Math.exp(-skew * c);
+			cdf[c] = total;
+		}
+		for (int c = 0; c < classes; c++) {
+			cdf[c] /= total;
+		}
+		return cdf;
+	}
+
+	//helper function to draw a class from the cumulative class distribution
+	static int drawClass(Random random, double[] cdf) {
+		double u = random.nextDouble();
+		int c = 0;
+		while (c < cdf.length - 1 && u >= cdf[c]) {
+			c++;
+		}
+		return c;
+	}
+
+	@Override
+	public String toString() {
+		return "rows=" + rows + " attributes=" + attributes + " cardinality=" + cardinality
+				+ " classes=" + classes + " skew=" + skew + " seed=" + seed;
+	}
+
+}
@@ -0,0 +1,451 @@
+package Q4;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Scores a large unlabeled csv file with a trained tree, writing the predicted
+ * class of each row to an output file, one per line in input order.
+ *
+ * The work runs as a pipeline of three stages connected by bounded queues of row
+ * batches, so reading, predicting and writing overlap:
+ *   parse   - one thread streams the csv with CSVLoader and encodes each field
+ *             straight from its bytes to the tree's code (ByteDictionary lookups,
+ *             no String per field) into a batch of encoded rows
+ *   predict - several threads run Predictor.predictBatch on whole batches
+ *   write   - one thread puts the batches back in order and writes the labels
+ * Batches are recycled through a fixed pool, so memory stays bounded whatever the
+ * file size and a slow stage holds back the ones before it.
+ *
+ * Run from the project root:
+ *   java -cp bin Q4.BatchScorer -model model.id3 -input rows.csv -output predictions.csv
+ *   java -cp bin Q4.BatchScorer -train training.csv -class "House sold in 10 days?" -input rows.csv -output predictions.csv
+ * Other options: -batch (rows per batch), -threads (predict threads), -generate true (use TreeCodegen).
+ */
+public class BatchScorer {
+
+	static final int DEFAULT_BATCH_ROWS = 4096;
+	static final int MAX_NUMERIC_MEMO = 1 << 16; //distinct values of a numeric attribute whose interval codes are kept
+	static final Batch END = new Batch(0, 0); //sent down the pipeline after the last batch
+
+	CompiledTree tree; //the tree's dictionaries and cuts, to encode rows
+	Predictor predictor; //predicts the encoded rows: the tree itself or a generated class
+	int batchRows;
+	int predictThreads;
+	volatile Throwable failure; //the first error of any stage, which stops the others
+
+	//stage statistics
+	long rows;
+	long parseWaitNanos; //time the parser waited for a free batch (the later stages are behind)
+	long writeWaitNanos; //time the writer waited for a predicted batch (the earlier stages are behind)
+
+
+	/*
+	 * A batch of encoded rows and their predictions
+	 */
+	static class Batch {
+
+		int[][] rows; //rows[r][attribute] = the tree's code of the value
+		int[] predictions;
+		int size; //the rows in use
+		long sequence; //the batch's position in the input
+
+		Batch(int batchRows, int numAttributes) {
+			this.rows = new int[batchRows][numAttributes];
+			this.predictions = new int[batchRows];
+		}
+	}
+
+
+	/*
+	 * Constructor for a scorer
+	 *
+	 * @param tree - the compiled tree, whose dictionaries encode the input
+	 * @param predictor - predicts encoded rows as the tree does (the tree itself, or TreeCodegen.generate(tree))
+	 * @param batchRows - the rows per batch
+	 * @param predictThreads - the threads of the predict stage
+	 */
+	public BatchScorer(CompiledTree tree, Predictor predictor, int batchRows, int predictThreads) {
+		this.tree = tree;
+		this.predictor = predictor;
+		this.batchRows = Math.max(1, batchRows);
+		this.predictThreads = Math.max(1, predictThreads);
+	}
+
+
+	/*
+	 * Scores a csv file. Its header names the columns, which are matched to the tree's
+	 * attributes by name; other columns (e.g. the class) are ignored. A row whose value has
+	 * no edge in the tree, or that lacks a column the tree needs, is predicted as "?".
+	 *
+	 * @param input - the csv file to score
+	 * @param output - the file to write, the class attribute name then one predicted class per line
+	 * @throws IOException if a file cannot be read or written
+	 * @throws InterruptedException if the calling thread is interrupted
+	 */
+	public void score(String input, String output) throws IOException, InterruptedException {
+
+		//enough batches for every stage to hold some, and no more
+		int numBatches = 2 * predictThreads + 4;
+		BlockingQueue<Batch> free = new ArrayBlockingQueue<Batch>(numBatches);
+		BlockingQueue<Batch> parsed = new ArrayBlockingQueue<Batch>(numBatches + 1);
+		BlockingQueue<Batch> predicted = new ArrayBlockingQueue<Batch>(numBatches + predictThreads);
+		for (int i = 0; i < numBatches; i++) {
+			free.add(new Batch(batchRows, tree.getNumAttributes()));
+		}
+		failure = null;
+		rows = 0;
+		parseWaitNanos = 0;
+		writeWaitNanos = 0;
+
+		ArrayList<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < predictThreads; t++) {
+			threads.add(stage("predict-" + t, () -> predictStage(parsed, predicted)));
+		}
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output), 1 << 16)) {
+			threads.add(stage("write", () -> writeStage(predicted, free, out)));
+
+			//the parse stage runs on the calling thread; a failure anywhere stops every stage
+			try {
+				EncodingHandler handler = new EncodingHandler(free, parsed);
+				CSVLoader.parse(Paths.get(input), handler);
+				handler.finish();
+				for (int t = 0; t < predictThreads; t++) {
+					put(parsed, END);
+				}
+			} catch (Exception | Error e) {
+				fail(e);
+			}
+			try {
+				for (Thread thread : threads) {
+					thread.join();
+				}
+			} catch (InterruptedException e) {
+				fail(e);
+				throw e;
+			}
+		}
+
+		if (failure instanceof IOException) throw (IOException)failure;
+		if (failure instanceof RuntimeException) throw (RuntimeException)failure;
+		if (failure instanceof Error) throw (Error)failure;
+		if (failure != null) throw new IOException("scoring failed", failure);
+	}
+
+
+	//a stage's body, which may fail
+	interface StageBody {
+		void run() throws Exception;
+	}
+
+	//helper function to start a stage thread that records its failure
+	Thread stage(String name, StageBody body) {
+		Thread thread = new Thread(() -> {
+			try {
+				body.run();
+			} catch (Throwable e) {
+				fail(e);
+			}
+		}, "BatchScorer-" + name);
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	//helper function to record the first failure, which the other stages see and stop on
+	synchronized void fail(Throwable e) {
+		if (failure == null) failure = e;
+	}
+
+
+	//helper function to put a batch on a queue, giving up when another stage failed
+	void put(BlockingQueue<Batch> queue, Batch batch) throws InterruptedException {
+		while (!queue.offer(batch, 50, TimeUnit.MILLISECONDS)) {
+			if (failure != null) throw new InterruptedException("another stage failed");
+		}
+	}
+
+	//helper function to take a batch from a queue, giving up when another stage failed
+	Batch take(BlockingQueue<Batch> queue) throws InterruptedException {
+		Batch batch;
+		while ((batch = queue.poll(50, TimeUnit.MILLISECONDS)) == null) {
+			if (failure != null) throw new InterruptedException("another stage failed");
+		}
+		return batch;
+	}
+
+
+	//the predict stage: predicts whole batches until it takes END
+	void predictStage(BlockingQueue<Batch> parsed, BlockingQueue<Batch> predicted) throws InterruptedException {
+		while (true) {
+			Batch batch = take(parsed);
+			if (batch == END) {
+				put(predicted, END);
+				return;
+			}
+			if (batch.size == batchRows) {
+				predictor.predictBatch(batch.rows, batch.predictions);
+			}
+			else { //the last batch
+				predictor.predictBatch(Arrays.copyOf(batch.rows, batch.size), batch.predictions);
+			}
+			put(predicted, batch);
+		}
+	}
+
+
+	//the write stage: writes batches in input order, returning each to the free pool
+	void writeStage(BlockingQueue<Batch> predicted, BlockingQueue<Batch> free, OutputStream out) throws IOException, InterruptedException {
+
+		//the bytes of each class label, and "?" for no prediction
+		byte[][] labels = new byte[tree.dictionaries.get(tree.classIndex).size() + 1][];
+		labels[0] = "?\n".getBytes(StandardCharsets.UTF_8);
+		for (int code = 0; code + 1 < labels.length; code++) {
+			labels[code + 1] = (quote(tree.getClassLabel(code)) + "\n").getBytes(StandardCharsets.UTF_8);
+		}
+		out.write((quote(tree.header[tree.classIndex]) + "\n").getBytes(StandardCharsets.UTF_8));
+
+		//batches can come out of the predict stage out of order, hold the early ones back
+		HashMap<Long, Batch> waiting = new HashMap<Long, Batch>();
+		long next = 0;
+		int ended = 0;
+		while (ended < predictThreads) {
+			long start = System.nanoTime();
+			Batch batch = take(predicted);
+			writeWaitNanos += System.nanoTime() - start;
+			if (batch == END) {
+				ended++;
+				continue;
+			}
+			waiting.put(batch.sequence, batch);
+			while ((batch = waiting.remove(next)) != null) {
+				for (int r = 0; r < batch.size; r++) {
+					out.write(labels[batch.predictions[r] + 1]);
+				}
+				rows += batch.size;
+				next++;
+				put(free, batch);
+			}
+		}
+		out.flush();
+	}
+
+
+	//helper function to quote a csv value if it needs it
+	static String quote(String value) {
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+			return value;
+		}
+		return "\"" + value.replace("\"", "\"\"") + "\"";
+	}
+
+
+	/*
+	 * The parse stage: a FieldHandler that encodes each field straight into the current
+	 * batch, and sends the batch on when it is full
+	 */
+	class EncodingHandler implements CSVLoader.FieldHandler {
+
+		BlockingQueue<Batch> free;
+		BlockingQueue<Batch> parsed;
+		ArrayList<String> header = new ArrayList<String>(); //null once the header is read
+		int[] attributeOf; //attributeOf[input column] = the tree's attribute, -1 for columns the tree does not use
+		ByteDictionary[] dictionaries; //the values the tree looks up for each categorical attribute, keyed on bytes
+		int[][] treeCodes; //treeCodes[attribute][dictionary code] = the tree's code of the value
+		ByteDictionary[] numericSeen; //the values seen of each numeric attribute, so each is only parsed once
+		int[][] numericCodes; //numericCodes[attribute][seen code] = the interval code of the value
+		Batch batch;
+		int row; //the position of the current row in the batch
+		long sequence;
+
+		EncodingHandler(BlockingQueue<Batch> free, BlockingQueue<Batch> parsed) {
+			this.free = free;
+			this.parsed = parsed;
+
+			//dictionaries of every value the tree looks up, aliases included (e.g. the original
+			//values of a binned attribute), each mapped to the tree's code
+			this.dictionaries = new ByteDictionary[tree.getNumAttributes()];
+			this.treeCodes = new int[tree.getNumAttributes()][];
+			this.numericSeen = new ByteDictionary[tree.getNumAttributes()];
+			this.numericCodes = new int[tree.getNumAttributes()][];
+			for (int attr = 0; attr < dictionaries.length; attr++) {
+				if (tree.cuts[attr] != null) {
+					numericSeen[attr] = new ByteDictionary();
+					numericCodes[attr] = new int[64];
+				}
+				else {
+					dictionaries[attr] = new ByteDictionary();
+					treeCodes[attr] = new int[tree.lookups.get(attr).size()];
+					for (Map.Entry<String, Integer> value : tree.lookups.get(attr).entrySet()) {
+						treeCodes[attr][dictionaries[attr].getOrAdd(value.getKey())] = value.getValue();
+					}
+				}
+			}
+		}
+
+		@Override
+		public void field(int column, byte[] buf, int off, int len) {
+			if (header != null) {
+				header.add(new String(buf, off, len, StandardCharsets.UTF_8));
+				return;
+			}
+			if (column >= attributeOf.length || attributeOf[column] < 0) return;
+			int attr = attributeOf[column];
+			if (tree.cuts[attr] != null) {
+				batch.rows[row][attr] = intervalCode(attr, buf, off, len);
+			}
+			else {
+				int code = dictionaries[attr].get(buf, off, len);
+				batch.rows[row][attr] = code < 0 ? -1 : treeCodes[attr][code];
+			}
+		}
+
+		@Override
+		public void endRecord(int numFields) {
+			if (header != null) {
+				attributeOf = new int[header.size()];
+				for (int column = 0; column < attributeOf.length; column++) {
+					attributeOf[column] = -1;
+					for (int attr = 0; attr < tree.getNumAttributes(); attr++) {
+						if (attr != tree.classIndex && tree.header[attr].equals(header.get(column))) attributeOf[column] = attr;
+					}
+				}
+				header = null;
+				nextBatch();
+				return;
+			}
+			row++;
+			if (row == batchRows) {
+				send();
+				nextBatch();
+			}
+			else {
+				Arrays.fill(batch.rows[row], -1);
+			}
+		}
+
+		//helper function for the interval code of a numeric field, parsing each distinct value once (up to MAX_NUMERIC_MEMO)
+		int intervalCode(int attr, byte[] buf, int off, int len) {
+			int seen = numericSeen[attr].get(buf, off, len);
+			if (seen >= 0) {
+				return numericCodes[attr][seen];
+			}
+			double value = Dataset.parseNumber(new String(buf, off, len, StandardCharsets.UTF_8));
+			int code = CompiledTree.intervalCode(tree.cuts[attr], value);
+			if (numericSeen[attr].size() < MAX_NUMERIC_MEMO) {
+				seen = numericSeen[attr].getOrAdd(buf, off, len);
+				if (seen == numericCodes[attr].length) {
+					numericCodes[attr] = Arrays.copyOf(numericCodes[attr], seen * 2);
+				}
+				numericCodes[attr][seen] = code;
+			}
+			return code;
+		}
+
+		//sends the last batch on, if it has rows
+		void finish() {
+			if (batch != null && row > 0) {
+				send();
+			}
+			else if (batch != null) {
+				free.add(batch);
+			}
+		}
+
+		//helper function to send the current batch to the predict stage
+		void send() {
+			batch.size = row;
+			batch.sequence = sequence++;
+			try {
+				put(parsed, batch);
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		//helper function to take a free batch for the next rows
+		void nextBatch() {
+			long start = System.nanoTime();
+			try {
+				batch = take(free);
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+			parseWaitNanos += System.nanoTime() - start;
+			row = 0;
+			Arrays.fill(batch.rows[0], -1);
+		}
+	}
+
+
+	//a summary of the last run
+	@Override
+	public String toString() {
+		return String.format("%d rows; parser waited %.1f ms for free batches, writer waited %.1f ms for predictions",
+				rows, parseWaitNanos / 1e6, writeWaitNanos / 1e6);
+	}
+
+
+	public static void main(String[] args) throws Exception {
+
+		String model = null;
+		String training = null;
+		String classAttr = null;
+		String input = null;
+		String output = null;
+		int batchRows = DEFAULT_BATCH_ROWS;
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 2);
+		boolean generate = false;
+
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch (args[i]) {
+				case "-model": model = value; break;
+				case "-train": training = value; break;
+				case "-class": classAttr = value; break;
+				case "-input": input = value; break;
+				case "-output": output = value; break;
+				case "-batch": batchRows = Integer.parseInt(value); break;
+				case "-threads": threads = Integer.parseInt(value); break;
+				case "-generate": generate = Boolean.parseBoolean(value); break;
+				default: throw new IllegalArgumentException("unknown option " + args[i]);
+			}
+		}
+		if ((model == null) == (training == null) || input == null || output == null || (training != null && classAttr == null)) {
+			System.err.println("usage: BatchScorer (-model <model.id3> | -train <training.csv> -class <class attribute>)"
+					+ " -input <rows.csv> -output <predictions.csv> [-batch rows] [-threads n] [-generate true]");
+			return;
+		}
+
+		CompiledTree tree;
+		if (model != null) {
+			tree = ModelFile.load(model);
+		}
+		else {
+			Dataset ds = CSVLoader.load(training);
+			ID3 ID3Search = new ID3(ds, classAttr);
+			ID3Search.buildDecisionTree(ds);
+			tree = ID3Search.compile();
+		}
+		Predictor predictor = generate ? TreeCodegen.generate(tree) : tree;
+
+		long start = System.nanoTime();
+		BatchScorer scorer = new BatchScorer(tree, predictor, batchRows, threads);
+		scorer.score(input, output);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(scorer);
+		System.out.println(String.format("%.2f s, %.0f rows/s", seconds, scorer.rows / seconds));
+	}
+
+}
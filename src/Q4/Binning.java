@@ -0,0 +1,236 @@
+package Q4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/*
+ * Groups the values of high-cardinality attributes (IDs, postcodes, free text)
+ * into a bounded number of bins, so a split on them has at most that many
+ * branches and its count table at most that many rows.
+ *
+ * Two groupings are available:
+ *   frequency: the maxBins - 1 most frequent values keep a bin of their own and
+ *              every other value shares one "(other)" bin
+ *   class:     values are ordered by their class distribution and adjacent groups
+ *              are merged, cheapest first, until maxBins are left; the cost of a
+ *              merge is the information gain it loses, so values that predict the
+ *              class the same way end up together
+ *
+ * Binning rewrites the column in place (see Dataset.setBins). The attribute's
+ * lookup keeps every original value, mapped to its bin, so rows of other datasets
+ * are still translated by value.
+ */
+public class Binning {
+
+	static final int LABEL_VALUES = 3; //number of member values shown in a bin label
+
+
+	/*
+	 * Bins every categorical attribute (except the class) with more than maxBins values
+	 *
+	 * @param ds - the encoded dataset
+	 * @param classAttribute - the class attribute, which is never binned
+	 * @param maxBins - the maximum number of bins per attribute (at least 2)
+	 * @param byClass - true to group by class distribution, false to group by frequency
+	 * @return the number of attributes binned
+	 */
+	public static int binHighCardinality(Dataset ds, String classAttribute, int maxBins, boolean byClass) {
+
+		if (maxBins < 2) {
+			throw new IllegalArgumentException("maxBins must be at least 2");
+		}
+		int classIndex = ds.getAttributeIndex(classAttribute);
+		int count = 0;
+		for (int attr = 0; attr < ds.getNumAttributes(); attr++) {
+			if (attr == classIndex || ds.isNumeric(attr) || ds.getCardinality(attr) <= maxBins) continue;
+			if (byClass && classIndex >= 0) {
+				byClass(ds, attr, classIndex, maxBins);
+			}
+			else {
+				byFrequency(ds, attr, maxBins);
+			}
+			count++;
+		}
+		return count;
+	}
+
+
+	/*
+	 * Bins an attribute by value frequency
+	 *
+	 * @param ds - the encoded dataset
+	 * @param attr - the column index
+	 * @param maxBins - the maximum number of bins
+	 */
+	public static void byFrequency(Dataset ds, int attr, int maxBins) {
+
+		int cardinality = ds.getCardinality(attr);
+		int[] counts = new int[cardinality];
+		for (int code : ds.getColumn(attr)) {
+			counts[code]++;
+		}
+
+		//codes by descending count, ties in code (first seen) order; packed so a primitive sort works
+		long[] keys = new long[cardinality];
+		for (int code = 0; code < cardinality; code++) {
+			keys[code] = ((long)(Integer.MAX_VALUE - counts[code]) << 32) | code;
+		}
+		Arrays.sort(keys);
+
+		int[] binOf = new int[cardinality];
+		ArrayList<String> labels = new ArrayList<String>();
+		int kept = Math.min(cardinality, maxBins - 1);
+		for (int i = 0; i < cardinality; i++) {
+			int code = (int)keys[i];
+			if (i < kept) {
+				binOf[code] = i;
+				labels.add(ds.getValue(attr, code));
+			}
+			else {
+				binOf[code] = kept;
+			}
+		}
+		if (cardinality > kept) {
+			labels.add("(other: " + (cardinality - kept) + " values)");
+		}
+		ds.setBins(attr, binOf, labels);
+	}
+
+
+	/*
+	 * Bins an attribute by class distribution, merging the adjacent groups that lose
+	 * the least information gain until maxBins are left
+	 *
+	 * @param ds - the encoded dataset
+	 * @param attr - the column index
+	 * @param classIndex - the column index of the class attribute
+	 * @param maxBins - the maximum number of bins
+	 */
+	public static void byClass(Dataset ds, int attr, int classIndex, int maxBins) {
+
+		int cardinality = ds.getCardinality(attr);
+		int numClasses = ds.getCardinality(classIndex);
+		ContingencyTable table = new ContingencyTable(cardinality, numClasses);
+		int[] column = ds.getColumn(attr);
+		int[] classColumn = ds.getColumn(classIndex);
+		for (int row = 0; row < ds.getNumRows(); row++) {
+			table.add(column[row], classColumn[row]);
+		}
+
+		//order the values by majority class, then by the share of that class, so similar values are adjacent
+		Integer[] order = new Integer[cardinality];
+		for (int code = 0; code < cardinality; code++) {
+			order[code] = code;
+		}
+		int[] majority = new int[cardinality];
+		double[] share = new double[cardinality];
+		for (int code = 0; code < cardinality; code++) {
+			int best = 0;
+			for (int c = 1; c < numClasses; c++) {
+				if (table.getCount(code, c) > table.getCount(code, best)) best = c;
+			}
+			majority[code] = best;
+			int total = table.getValueTotal(code);
+			share[code] = total == 0 ? 0 : (double)table.getCount(code, best) / total;
+		}
+		Arrays.sort(order, (a, b) -> majority[a] != majority[b] ? Integer.compare(majority[a], majority[b])
+				: share[a] != share[b] ? Double.compare(share[b], share[a]) : Integer.compare(a, b));
+
+		//one group per value, in sorted order, as a linked list of class counts
+		int[][] groupCounts = new int[cardinality][];
+		int[] groupTotal = new int[cardinality];
+		int[] next = new int[cardinality];
+		int[] prev = new int[cardinality];
+		int[] version = new int[cardinality]; //bumped when a group changes, to skip stale queue entries
+		for (int i = 0; i < cardinality; i++) {
+			int code = order[i];
+			groupCounts[i] = new int[numClasses];
+			for (int c = 0; c < numClasses; c++) {
+				groupCounts[i][c] = table.getCount(code, c);
+			}
+			groupTotal[i] = table.getValueTotal(code);
+			next[i] = i + 1 < cardinality ? i + 1 : -1;
+			prev[i] = i - 1;
+		}
+
+		//queue of {cost, left group, left version, right version} for each adjacent pair
+		PriorityQueue<double[]> queue = new PriorityQueue<double[]>((a, b) ->
+				a[0] != b[0] ? Double.compare(a[0], b[0]) : Double.compare(a[1], b[1]));
+		for (int i = 0; i + 1 < cardinality; i++) {
+			queue.add(new double[] {mergeCost(groupCounts[i], groupTotal[i], groupCounts[i + 1], groupTotal[i + 1]), i, 0, 0});
+		}
+		int groups = cardinality;
+		while (groups > maxBins) {
+			double[] merge = queue.poll();
+			int left = (int)merge[1];
+			int right = next[left];
+			if (right < 0 || version[left] != (int)merge[2] || version[right] != (int)merge[3]) continue;
+
+			//merge right into left
+			for (int c = 0; c < numClasses; c++) {
+				groupCounts[left][c] += groupCounts[right][c];
+			}
+			groupTotal[left] += groupTotal[right];
+			next[left] = next[right];
+			if (next[right] >= 0) prev[next[right]] = left;
+			version[left]++;
+			version[right] = -1;
+			groups--;
+
+			if (prev[left] >= 0) {
+				int p = prev[left];
+				queue.add(new double[] {mergeCost(groupCounts[p], groupTotal[p], groupCounts[left], groupTotal[left]), p, version[p], version[left]});
+			}
+			if (next[left] >= 0) {
+				int n = next[left];
+				queue.add(new double[] {mergeCost(groupCounts[left], groupTotal[left], groupCounts[n], groupTotal[n]), left, version[left], version[n]});
+			}
+		}
+
+		//number the remaining groups in order and label them by their first values
+		int[] binOf = new int[cardinality];
+		ArrayList<String> labels = new ArrayList<String>();
+		int bin = -1;
+		int members = 0;
+		StringBuilder label = new StringBuilder();
+		for (int i = 0; i < cardinality; i++) {
+			if (i == 0 || version[i] >= 0) { //a group starts here
+				if (bin >= 0) labels.add(finishLabel(label, members));
+				bin++;
+				members = 0;
+				label.setLength(0);
+			}
+			binOf[order[i]] = bin;
+			if (members < LABEL_VALUES) {
+				if (members > 0) label.append('|');
+				label.append(ds.getValue(attr, order[i]));
+			}
+			members++;
+		}
+		labels.add(finishLabel(label, members));
+		ds.setBins(attr, binOf, labels);
+	}
+
+
+	//helper function for the information lost by merging two groups (times the number of rows)
+	static double mergeCost(int[] a, int totalA, int[] b, int totalB) {
+		if (totalA == 0 || totalB == 0) return 0;
+		int[] merged = new int[a.length];
+		for (int c = 0; c < a.length; c++) {
+			merged[c] = a[c] + b[c];
+		}
+		return (totalA + totalB) * ContingencyTable.entropy(merged, 0, merged.length, totalA + totalB)
+				- totalA * ContingencyTable.entropy(a, 0, a.length, totalA)
+				- totalB * ContingencyTable.entropy(b, 0, b.length, totalB);
+	}
+
+	//helper function to finish a bin label, noting the values not shown
+	static String finishLabel(StringBuilder label, int members) {
+		if (members > LABEL_VALUES) {
+			label.append("|...(+").append(members - LABEL_VALUES).append(')');
+		}
+		return label.toString();
+	}
+
+}
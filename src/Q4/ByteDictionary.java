@@ -0,0 +1,131 @@
+package Q4;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/*
+ * A value dictionary keyed on raw bytes, used to encode csv fields without
+ * first turning each one into a String.
+ *
+ * Codes are given out in the order values are first seen. The String for a
+ * value is only created once, when the value is added.
+ */
+public class ByteDictionary {
+
+	byte[][] keys = new byte[16][]; //keys[code] = the bytes of the value
+	int[] hashes = new int[16]; //hashes[code] = hash of keys[code]
+	int[] slots = new int[32]; //open addressing table of code + 1, 0 = empty
+	ArrayList<String> values = new ArrayList<String>(); //values[code] = the decoded value
+	int size;
+
+
+	/*
+	 * Looks up the code of a value, adding the value if it is new
+	 *
+	 * @param buf - the buffer holding the value bytes
+	 * @param off - the position of the first byte
+	 * @param len - the number of bytes
+	 * @return the code of the value
+	 */
+	public int getOrAdd(byte[] buf, int off, int len) {
+
+		int hash = hash(buf, off, len);
+		int mask = slots.length - 1;
+		int slot = hash & mask;
+		while (slots[slot] != 0) {
+			int code = slots[slot] - 1;
+			if (hashes[code] == hash && equals(keys[code], buf, off, len)) {
+				return code;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		//new value
+		int code = size++;
+		if (code == keys.length) {
+			keys = Arrays.copyOf(keys, code * 2);
+			hashes = Arrays.copyOf(hashes, code * 2);
+		}
+		keys[code] = Arrays.copyOfRange(buf, off, off + len);
+		hashes[code] = hash;
+		values.add(new String(buf, off, len, StandardCharsets.UTF_8));
+		slots[slot] = code + 1;
+		if (size * 2 > slots.length) {
+			rehash();
+		}
+		return code;
+	}
+
+
+	/*
+	 * Looks up the code of a value without adding it
+	 *
+	 * @return the code of the value, or -1 if it is not in the dictionary
+	 */
+	public int get(byte[] buf, int off, int len) {
+
+		int hash = hash(buf, off, len);
+		int mask = slots.length - 1;
+		int slot = hash & mask;
+		while (slots[slot] != 0) {
+			int code = slots[slot] - 1;
+			if (hashes[code] == hash && equals(keys[code], buf, off, len)) {
+				return code;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+
+	//adds a String value, returning its code
+	public int getOrAdd(String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		return getOrAdd(bytes, 0, bytes.length);
+	}
+
+	//getter function for the number of values
+	public int size() {
+		return size;
+	}
+
+	//getter function for the decoded values, indexed by code
+	public ArrayList<String> getValues() {
+		return values;
+	}
+
+
+	//helper function to double the slot table
+	void rehash() {
+		int[] newSlots = new int[slots.length * 2];
+		int mask = newSlots.length - 1;
+		for (int code = 0; code < size; code++) {
+			int slot = hashes[code] & mask;
+			while (newSlots[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			newSlots[slot] = code + 1;
+		}
+		slots = newSlots;
+	}
+
+	//helper function to hash a run of bytes (FNV-1a, with the high bits mixed down for the mask)
+	static int hash(byte[] buf, int off, int len) {
+		int h = 0x811c9dc5;
+		for (int i = off; i < off + len; i++) {
+			h = (h ^ buf[i]) * 0x01000193;
+		}
+		return h ^ (h >>> 16);
+	}
+
+	//helper function to compare a key with a run of bytes
+	static boolean equals(byte[] key, byte[] buf, int off, int len) {
+		if (key.length != len) return false;
+		for (int i = 0; i < len; i++) {
+			if (key[i] != buf[off + i]) return false;
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,267 @@
+package Q4;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/*
+ * A streaming csv reader that memory-maps the input file and hands each field
+ * to a FieldHandler as raw bytes, without building a String or an ArrayList per row.
+ *
+ * It follows RFC 4180: fields may be quoted, quoted fields may contain commas,
+ * line breaks and doubled quotes (""), and records end with LF or CRLF.
+ * Blank lines are skipped and a leading UTF-8 byte order mark is ignored.
+ *
+ * load() uses it to stream a csv straight into an encoded Dataset (or read one
+ * back from a DatasetCache).
+ */
+public class CSVLoader {
+
+	static final long WINDOW_SIZE = 1L << 28; //bytes mapped at a time
+	static final int CHUNK_SIZE = 1 << 20; //bytes copied out of the mapping at a time
+
+	//parser states
+	static final int FIELD_START = 0;
+	static final int UNQUOTED = 1;
+	static final int QUOTED = 2;
+	static final int QUOTE_IN_QUOTED = 3; //a quote inside a quoted field, either "" or the closing quote
+
+
+	/*
+	 * Receives the fields of each record in order
+	 */
+	public interface FieldHandler {
+
+		/*
+		 * Called for each field of a record
+		 *
+		 * @param column - the position of the field in the record
+		 * @param buf - the buffer holding the field bytes (quotes removed); only valid during the call
+		 * @param off - the position of the first byte
+		 * @param len - the number of bytes
+		 */
+		void field(int column, byte[] buf, int off, int len);
+
+		/*
+		 * Called after the last field of a record
+		 *
+		 * @param numFields - the number of fields in the record
+		 */
+		void endRecord(int numFields);
+	}
+
+
+	/*
+	 * Parses a csv file, passing every field of every record (including the header) to the handler
+	 *
+	 * @param path - the filepath to the csv file
+	 * @param handler - receives the fields
+	 * @throws IOException if the file cannot be read
+	 */
+	public static void parse(Path path, FieldHandler handler) throws IOException {
+		parse(path, handler, WINDOW_SIZE, CHUNK_SIZE);
+	}
+
+
+	/*
+	 * Overloaded function parse() with the sizes of the mapping window and of the chunks
+	 * copied out of it; tests make them small to put fields across their boundaries
+	 *
+	 * @param windowSize - the bytes mapped at a time
+	 * @param chunkSize - the bytes copied out of the mapping at a time
+	 */
+	static void parse(Path path, FieldHandler handler, long windowSize, int chunkSize) throws IOException {
+
+		byte[] chunk = new byte[chunkSize];
+		byte[] fieldBuf = new byte[256];
+		int fieldLen = 0;
+		int column = 0;
+		int state = FIELD_START;
+		boolean skipLF = false; //set after a CR, so a following LF does not end another record
+		boolean first = true;
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			for (long position = 0; position < size; position += windowSize) {
+				MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(windowSize, size - position));
+				while (window.hasRemaining()) {
+					int n = Math.min(chunk.length, window.remaining());
+					window.get(chunk, 0, n);
+					int i = 0;
+
+					//skip a byte order mark at the start of the file
+					if (first) {
+						first = false;
+						if (n >= 3 && chunk[0] == (byte)0xEF && chunk[1] == (byte)0xBB && chunk[2] == (byte)0xBF) {
+							i = 3;
+						}
+					}
+
+					for (; i < n; i++) {
+						byte b = chunk[i];
+						if (skipLF) {
+							skipLF = false;
+							if (b == '\n') continue;
+						}
+
+						//fast path: an unquoted field that ends inside this chunk is passed on without copying
+						if (state == FIELD_START && b != '"') {
+							int end = i;
+							while (end < n && (b = chunk[end]) != ',' && b != '\n' && b != '\r' && b != '"') {
+								end++;
+							}
+							if (end < n && b != '"') {
+								if (!(b != ',' && end == i && column == 0)) { //a blank line is not a record
+									handler.field(column++, chunk, i, end - i);
+									if (b != ',') {
+										handler.endRecord(column);
+										column = 0;
+									}
+								}
+								skipLF = b == '\r';
+								i = end;
+								continue;
+							}
+							b = chunk[i]; //the field runs past the chunk or has a stray quote, parse it byte by byte
+						}
+
+						if (state == QUOTED) {
+							if (b == '"') {
+								state = QUOTE_IN_QUOTED;
+								continue;
+							}
+						}
+						else if (b == ',' || b == '\n' || b == '\r') {
+							if (!(b != ',' && state == FIELD_START && column == 0)) { //a blank line is not a record
+								handler.field(column++, fieldBuf, 0, fieldLen);
+								fieldLen = 0;
+								if (b != ',') {
+									handler.endRecord(column);
+									column = 0;
+								}
+							}
+							skipLF = b == '\r';
+							state = FIELD_START;
+							continue;
+						}
+						else if (state == QUOTE_IN_QUOTED) {
+							//a doubled quote is a literal quote; anything else after the closing quote is kept as-is
+							state = b == '"' ? QUOTED : UNQUOTED;
+						}
+						else if (state == FIELD_START) {
+							if (b == '"') {
+								state = QUOTED;
+								continue;
+							}
+							state = UNQUOTED;
+						}
+
+						if (fieldLen == fieldBuf.length) {
+							fieldBuf = Arrays.copyOf(fieldBuf, fieldLen * 2);
+						}
+						fieldBuf[fieldLen++] = b;
+					}
+				}
+			}
+		}
+
+		//last record without a line break at the end of the file
+		if (state != FIELD_START || column > 0) {
+			handler.field(column++, fieldBuf, 0, fieldLen);
+			handler.endRecord(column);
+		}
+	}
+
+
+	/*
+	 * Loads a csv file straight into an encoded Dataset. The first record is the header.
+	 * Short records are padded with empty values and extra fields are ignored.
+	 *
+	 * @param path - the filepath to the csv file
+	 * @return the encoded dataset
+	 * @throws IOException if the file cannot be read
+	 */
+	public static Dataset load(String path) throws IOException {
+
+		DatasetHandler handler = new DatasetHandler();
+		parse(Paths.get(path), handler);
+		return handler.toDataset();
+	}
+
+
+	/*
+	 * Overloaded function load() that reads the dataset from a cache entry while the
+	 * file is unchanged, and parses it (and caches the result) otherwise
+	 *
+	 * @param path - the filepath to the csv file
+	 * @param cache - the dataset cache, or null to always parse the file
+	 * @return the encoded dataset
+	 * @throws IOException if the file cannot be read
+	 */
+	public static Dataset load(String path, DatasetCache cache) throws IOException {
+		return cache == null ? load(path) : cache.load(path);
+	}
+
+
+	/*
+	 * FieldHandler that encodes each field into a growable column as it is read
+	 */
+	static class DatasetHandler implements FieldHandler {
+
+		ArrayList<String> header = new ArrayList<String>();
+		ByteDictionary[] dictionaries;
+		int[][] columns;
+		int numRows;
+		byte[] empty = new byte[0];
+
+		@Override
+		public void field(int column, byte[] buf, int off, int len) {
+			if (dictionaries == null) {
+				header.add(new String(buf, off, len, StandardCharsets.UTF_8));
+			}
+			else if (column < columns.length) {
+				columns[column][numRows] = dictionaries[column].getOrAdd(buf, off, len);
+			}
+		}
+
+		@Override
+		public void endRecord(int numFields) {
+			if (dictionaries == null) { //header done, set up the columns
+				dictionaries = new ByteDictionary[header.size()];
+				columns = new int[header.size()][1024];
+				for (int i = 0; i < dictionaries.length; i++) {
+					dictionaries[i] = new ByteDictionary();
+				}
+				return;
+			}
+			for (int i = numFields; i < columns.length; i++) {
+				columns[i][numRows] = dictionaries[i].getOrAdd(empty, 0, 0);
+			}
+			numRows++;
+			if (numRows == columns[0].length) {
+				for (int i = 0; i < columns.length; i++) {
+					columns[i] = Arrays.copyOf(columns[i], numRows * 2);
+				}
+			}
+		}
+
+		Dataset toDataset() {
+			if (dictionaries == null) { //empty file or header only
+				endRecord(header.size());
+			}
+			ArrayList<ArrayList<String>> values = new ArrayList<ArrayList<String>>();
+			for (int i = 0; i < columns.length; i++) {
+				columns[i] = Arrays.copyOf(columns[i], numRows);
+				values.add(dictionaries[i].getValues());
+			}
+			return new Dataset(header.toArray(new String[header.size()]), columns, values, numRows);
+		}
+	}
+
+}
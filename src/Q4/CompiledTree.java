@@ -0,0 +1,431 @@
+package Q4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.TreeSet;
+
+/*
+ * A trained decision tree flattened into primitive arrays for fast prediction.
+ *
+ * Rows are predicted on their encoded values (codes of the training dataset's
+ * dictionaries), so no Strings are compared or hashed while walking the tree.
+ * Each node takes two ints in the nodes array:
+ *   internal node: nodes[2n] = split attribute index, nodes[2n+1] = offset of its children in childTable
+ *   leaf node:     nodes[2n] = -1,                    nodes[2n+1] = class code
+ * The children of an internal node are looked up by value code,
+ * childTable[offset + code] = child node index, or -1 when the value has no edge.
+ *
+ * A threshold split on a numeric attribute is stored as
+ *   nodes[2n] = -(attribute index + 2), nodes[2n+1] = offset of {cut index, low child, high child} in childTable
+ * For numeric attributes a row holds an interval code instead of a value code: the number
+ * of the tree's thresholds for that attribute (its cuts) that are below the value. A value
+ * is at or below cuts[j] exactly when its interval code is <= j, so the walk only compares ints.
+ * Node 0 is the root.
+ */
+public class CompiledTree implements Predictor {
+
+	String[] header; //attribute names, in the training dataset's column order
+	int classIndex; //column index of the class attribute
+	ArrayList<ArrayList<String>> dictionaries; //value dictionaries of the training dataset, dictionaries[attribute][code]
+	ArrayList<HashMap<String, Integer>> lookups = new ArrayList<HashMap<String, Integer>>(); //value -> code for each attribute
+	int[] cardinality; //number of codes of each attribute (interval codes for numeric attributes)
+	double[][] cuts; //cuts[attribute] = the tree's thresholds for a numeric attribute, ascending; null for categorical attributes
+	int[] nodes;
+	int[] childTable;
+	int numNodes;
+	int childTableSize;
+	TreeListener listener; //receives prediction metrics, null for none
+
+
+	//empty constructor, for subclasses that fill in the fields themselves
+	CompiledTree() {
+	}
+
+
+	/*
+	 * Constructor that flattens a trained tree
+	 *
+	 * @param root - the root of the decision tree
+	 * @param schema - the encoded dataset the tree was trained on (for its header and dictionaries)
+	 * @param classAttr - the class attribute of the tree
+	 * @throws IllegalArgumentException if the tree refers to an attribute or class value not in the schema
+	 */
+	public CompiledTree(DTNode root, Dataset schema, String classAttr) {
+
+		this.header = schema.header;
+		this.classIndex = schema.getAttributeIndex(classAttr);
+		if (this.classIndex < 0) {
+			throw new IllegalArgumentException("class attribute " + classAttr + " is not in the dataset");
+		}
+		this.dictionaries = new ArrayList<ArrayList<String>>();
+		this.cardinality = new int[header.length];
+		for (int i = 0; i < header.length; i++) {
+			dictionaries.add(new ArrayList<String>(schema.dictionaries.get(i)));
+			lookups.add(new HashMap<String, Integer>(schema.lookups.get(i)));
+			cardinality[i] = schema.getCardinality(i);
+		}
+
+		//the thresholds used for each numeric attribute, which define its interval codes
+		this.cuts = new double[header.length][];
+		ArrayList<TreeSet<Double>> thresholds = new ArrayList<TreeSet<Double>>();
+		for (int i = 0; i < header.length; i++) {
+			thresholds.add(new TreeSet<Double>());
+		}
+		collectThresholds(root, thresholds);
+		for (int i = 0; i < header.length; i++) {
+			if (!thresholds.get(i).isEmpty()) {
+				cuts[i] = new double[thresholds.get(i).size()];
+				int j = 0;
+				for (double t : thresholds.get(i)) {
+					cuts[i][j++] = t;
+				}
+				cardinality[i] = cuts[i].length + 1;
+			}
+		}
+
+		this.nodes = new int[64];
+		this.childTable = new int[64];
+		addNode(root);
+		this.nodes = Arrays.copyOf(nodes, numNodes * 2);
+		this.childTable = Arrays.copyOf(childTable, childTableSize);
+	}
+
+
+	//recursively collects the thresholds of the threshold splits in a tree, per attribute
+	void collectThresholds(DTNode node, ArrayList<TreeSet<Double>> thresholds) {
+		if (node.isThresholdSplit()) {
+			thresholds.get(attributeIndex(node.getValue())).add(node.getThreshold());
+		}
+		for (DTNode child : node.children.values()) {
+			collectThresholds(child, thresholds);
+		}
+	}
+
+
+	/*
+	 * Recursively adds a node and its subtree in pre-order, returning the node's index
+	 */
+	int addNode(DTNode node) {
+
+		int index = numNodes++;
+		if (nodes.length < numNodes * 2) {
+			nodes = Arrays.copyOf(nodes, nodes.length * 2);
+		}
+
+		if (!node.getType().contentEquals("internal")) {
+			int classCode = code(classIndex, node.getValue());
+			nodes[2 * index] = -1;
+			nodes[2 * index + 1] = classCode;
+			return index;
+		}
+
+		int attr = attributeIndex(node.getValue());
+		int offset = childTableSize;
+		if (node.isThresholdSplit()) {
+			childTableSize += 3;
+			if (childTable.length < childTableSize) {
+				childTable = Arrays.copyOf(childTable, childTable.length * 2);
+			}
+			double t = node.getThreshold();
+			nodes[2 * index] = -(attr + 2);
+			nodes[2 * index + 1] = offset;
+			childTable[offset] = Arrays.binarySearch(cuts[attr], t);
+			DTNode low = node.children.get(DTNode.lowEdge(t));
+			DTNode high = node.children.get(DTNode.highEdge(t));
+			//add the children before storing them, since adding may grow (replace) childTable
+			int lowChild = low == null ? -1 : addNode(low);
+			int highChild = high == null ? -1 : addNode(high);
+			childTable[offset + 1] = lowChild;
+			childTable[offset + 2] = highChild;
+			return index;
+		}
+		childTableSize += cardinality[attr];
+		if (childTable.length < childTableSize) {
+			childTable = Arrays.copyOf(childTable, Math.max(childTable.length * 2, childTableSize));
+		}
+		Arrays.fill(childTable, offset, childTableSize, -1);
+		nodes[2 * index] = attr;
+		nodes[2 * index + 1] = offset;
+
+		for (String edge : node.children.keySet()) {
+			int child = addNode(node.children.get(edge));
+			childTable[offset + code(attr, edge)] = child;
+		}
+		return index;
+	}
+
+
+	//helper function to look up a code, failing if the value is not in the dictionary
+	int code(int attr, String value) {
+		Integer code = lookups.get(attr).get(value);
+		if (code == null) {
+			throw new IllegalArgumentException("value " + value + " of " + header[attr] + " is not in the dataset");
+		}
+		return code;
+	}
+
+	//helper function to look up an attribute index, failing if it is not in the header
+	int attributeIndex(String attribute) {
+		for (int i = 0; i < header.length; i++) {
+			if (header[i].equals(attribute)) return i;
+		}
+		throw new IllegalArgumentException("attribute " + attribute + " is not in the dataset");
+	}
+
+
+	/*
+	 * Predicts the class of one encoded row. Single predictions are not timed; predictBatch
+	 * reports each batch to the listener and JFR.
+	 *
+	 * @param row - the code of each attribute, in the training dataset's column order and dictionaries
+	 *              (a code of -1 is an unseen value)
+	 * @return the class code, or -1 if the row reaches a value with no edge
+	 */
+	@Override
+	public int predict(int[] row) {
+
+		int[] nodes = this.nodes;
+		int[] childTable = this.childTable;
+		int n = 0;
+		int attr;
+		while ((attr = nodes[2 * n]) != -1) {
+			int offset = nodes[2 * n + 1];
+			if (attr >= 0) {
+				int code = row[attr];
+				if (code < 0 || code >= cardinality[attr]) return -1;
+				n = childTable[offset + code];
+			}
+			else { //threshold split
+				int code = row[-attr - 2];
+				if (code < 0) return -1;
+				n = childTable[code <= childTable[offset] ? offset + 1 : offset + 2];
+			}
+			if (n < 0) return -1;
+		}
+		return nodes[2 * n + 1];
+	}
+
+
+	/*
+	 * Predicts the class of each encoded row
+	 *
+	 * @param rows - the encoded rows, as for predict(int[])
+	 * @param out - filled with the class code (or -1) of each row
+	 */
+	@Override
+	public void predictBatch(int[][] rows, int[] out) {
+		long start = System.nanoTime();
+		TreeEvents.Prediction event = new TreeEvents.Prediction();
+		event.begin();
+		for (int r = 0; r < rows.length; r++) {
+			out[r] = predict(rows[r]);
+		}
+		predicted(event, rows.length, start);
+	}
+
+
+	/*
+	 * Predicts the class of every row of an encoded dataset. The dataset may have its own
+	 * dictionaries and column order; its codes are translated to the tree's once per call.
+	 *
+	 * @param ds - the encoded dataset (it must have every attribute the tree splits on)
+	 * @param out - filled with the class code (or -1) of each row
+	 */
+	public void predictBatch(Dataset ds, int[] out) {
+		long start = System.nanoTime();
+		TreeEvents.Prediction event = new TreeEvents.Prediction();
+		event.begin();
+		walkBatch(ds, out);
+		predicted(event, ds.getNumRows(), start);
+	}
+
+
+	//walks every row of an encoded dataset through the tree, for predictBatch(Dataset, int[])
+	void walkBatch(Dataset ds, int[] out) {
+		int[][] columns = new int[header.length][];
+		int[][] translations = translate(ds, columns);
+		walk(columns, translations, null, 0, ds.getNumRows(), out, 0);
+	}
+
+
+	/*
+	 * Walks a range of rows of an encoded dataset through the tree
+	 *
+	 * @param columns - the dataset's columns, from translate
+	 * @param translations - the dataset's code translations, from translate
+	 * @param rows - row indices, to walk rows[from, to); null to walk rows from to to themselves
+	 * @param from - the first position (inclusive)
+	 * @param to - the last position (exclusive)
+	 * @param out - filled with the class code (or -1) of each row, the one at from at outOffset
+	 * @param outOffset - the position in out of the first row
+	 */
+	void walk(int[][] columns, int[][] translations, int[] rows, int from, int to, int[] out, int outOffset) {
+
+		int[] nodes = this.nodes;
+		int[] childTable = this.childTable;
+
+		for (int i = from; i < to; i++) {
+			int row = rows == null ? i : rows[i];
+			int n = 0;
+			int attr;
+			while ((attr = nodes[2 * n]) != -1) {
+				int offset = nodes[2 * n + 1];
+				if (attr >= 0) {
+					int code = translations[attr][columns[attr][row]];
+					n = code < 0 ? -1 : childTable[offset + code];
+				}
+				else { //threshold split
+					int a = -attr - 2;
+					int code = translations[a][columns[a][row]];
+					n = code < 0 ? -1 : childTable[code <= childTable[offset] ? offset + 1 : offset + 2];
+				}
+				if (n < 0) break;
+			}
+			out[outOffset + i - from] = n < 0 ? -1 : nodes[2 * n + 1];
+		}
+	}
+
+
+	/*
+	 * Reports a batch of predictions to the JFR event and the listener
+	 *
+	 * @param event - the batch's event, begun when the batch started
+	 * @param numRows - the rows predicted
+	 * @param start - System.nanoTime() when the batch started
+	 */
+	void predicted(TreeEvents.Prediction event, int numRows, long start) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.rows = numRows;
+			event.commit();
+		}
+		if (listener != null) listener.predicted(numRows, System.nanoTime() - start);
+	}
+
+
+	//setter function for the listener that receives prediction metrics (see TreeMetrics), or null for none
+	public void setTreeListener(TreeListener listener) {
+		this.listener = listener;
+	}
+
+
+	/*
+	 * Builds the code translation from a dataset's dictionaries to the tree's for every
+	 * attribute the tree splits on (to interval codes for numeric attributes)
+	 *
+	 * @param ds - the encoded dataset
+	 * @param columns - filled with the dataset's column for each attribute the tree splits on
+	 * @return translations[attribute][dataset code] = tree code, or -1 when the tree has not seen the value
+	 */
+	int[][] translate(Dataset ds, int[][] columns) {
+
+		int[][] translations = new int[header.length][];
+		for (int n = 0; n < numNodes; n++) {
+			int attr = nodeAttribute(n);
+			if (attr < -1) {
+				attr = -attr - 2; //threshold split
+			}
+			if (attr >= 0 && translations[attr] == null) {
+				int dsAttr = ds.getAttributeIndex(header[attr]);
+				if (dsAttr < 0) {
+					throw new IllegalArgumentException("attribute " + header[attr] + " is not in the dataset");
+				}
+				columns[attr] = ds.getColumn(dsAttr);
+				translations[attr] = new int[ds.getCardinality(dsAttr)];
+				for (int code = 0; code < translations[attr].length; code++) {
+					if (cuts[attr] != null) {
+						double value = ds.isNumeric(dsAttr) ? ds.getNumericValue(dsAttr, code) : Dataset.parseNumber(ds.getValue(dsAttr, code));
+						translations[attr][code] = intervalCode(cuts[attr], value);
+					}
+					else {
+						Integer treeCode = lookups.get(attr).get(ds.getValue(dsAttr, code));
+						translations[attr][code] = treeCode == null ? -1 : treeCode;
+					}
+				}
+			}
+		}
+		return translations;
+	}
+
+
+	/*
+	 * Gets the interval code of a numeric value: the number of cuts below it
+	 *
+	 * @param cuts - the thresholds of a numeric attribute, ascending
+	 * @param value - the value
+	 * @return the interval code, or -1 for NaN (not a number)
+	 */
+	static int intervalCode(double[] cuts, double value) {
+		if (Double.isNaN(value)) return -1;
+		int position = Arrays.binarySearch(cuts, value);
+		return position >= 0 ? position : -position - 1;
+	}
+
+
+	//getter function for the split attribute of a node: -1 for a leaf, -(attribute + 2) for a threshold split
+	int nodeAttribute(int n) {
+		return nodes[2 * n];
+	}
+
+
+	//getter function for the nodes array, trimmed to the number of nodes
+	int[] nodeArray() {
+		return nodes;
+	}
+
+	//getter function for the child table
+	int[] childArray() {
+		return childTable;
+	}
+
+
+	/*
+	 * Encodes a row of String values with the tree's dictionaries, for predict(int[])
+	 *
+	 * @param values - the row values in the training dataset's column order
+	 * @param out - filled with the code (interval code for numeric attributes) of each value, -1 for unseen values
+	 */
+	public void encode(ArrayList<String> values, int[] out) {
+		for (int i = 0; i < header.length; i++) {
+			if (cuts[i] != null) {
+				out[i] = i < values.size() ? intervalCode(cuts[i], Dataset.parseNumber(values.get(i))) : -1;
+				continue;
+			}
+			Integer code = i < values.size() ? lookups.get(i).get(values.get(i)) : null;
+			out[i] = code == null ? -1 : code;
+		}
+	}
+
+
+	//getter function for the class value of a class code
+	public String getClassLabel(int classCode) {
+		return classCode < 0 ? null : dictionaries.get(classIndex).get(classCode);
+	}
+
+	/*
+	 * Looks up the class code of a class value
+	 *
+	 * @return the class code, or -1 if the tree has no such class value
+	 */
+	public int getClassCode(String classLabel) {
+		Integer code = lookups.get(classIndex).get(classLabel);
+		return code == null ? -1 : code;
+	}
+
+	//getter function for the number of attributes an encoded row must have
+	public int getNumAttributes() {
+		return header.length;
+	}
+
+	//getter function for the class attribute of the tree
+	public String getClassAttribute() {
+		return header[classIndex];
+	}
+
+	//getter function for the number of nodes in the tree
+	public int getNumNodes() {
+		return numNodes;
+	}
+
+}
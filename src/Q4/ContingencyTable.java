@@ -0,0 +1,192 @@
+package Q4;
+
+import java.util.Arrays;
+
+/*
+ * An attribute value x class count table for one candidate split attribute.
+ *
+ * The table is filled in a single scan over the rows of a node, and the
+ * information gain of splitting on the attribute is then calculated from the
+ * counts alone, without building the split datasets.
+ *
+ * Counts are kept in one flat array, counts[value * numClasses + class].
+ */
+public class ContingencyTable {
+
+	int numValues; //the cardinality of the attribute
+	int numClasses; //the cardinality of the class attribute
+	int[] counts; //the value x class counts
+	int[] classTotals; //the class counts of all rows in the table (the parent node)
+	int total; //the number of rows in the table
+
+
+	//constructor for an empty table
+	public ContingencyTable(int numValues, int numClasses) {
+		this.numValues = numValues;
+		this.numClasses = numClasses;
+		this.counts = new int[numValues * numClasses];
+		this.classTotals = new int[numClasses];
+	}
+
+
+	//constructor for a table over counts that were filled elsewhere, counts[value * numClasses + class]
+	public ContingencyTable(int[] counts, int numValues, int numClasses) {
+		this.numValues = numValues;
+		this.numClasses = numClasses;
+		this.counts = counts;
+		this.classTotals = new int[numClasses];
+		updateTotals();
+	}
+
+
+	/*
+	 * Fills a table from one scan over a range of row indices
+	 *
+	 * @param column - the encoded attribute column
+	 * @param classColumn - the encoded class column
+	 * @param rows - the row indices
+	 * @param from - the first position in rows (inclusive)
+	 * @param to - the last position in rows (exclusive)
+	 * @param numValues - the cardinality of the attribute
+	 * @param numClasses - the cardinality of the class attribute
+	 * @return the filled table
+	 */
+	public static ContingencyTable count(int[] column, int[] classColumn, int[] rows, int from, int to,
+			int numValues, int numClasses) {
+
+		ContingencyTable table = new ContingencyTable(numValues, numClasses);
+		int[] counts = table.counts;
+		for (int i = from; i < to; i++) {
+			int row = rows[i];
+			counts[column[row] * numClasses + classColumn[row]]++;
+		}
+		table.updateTotals();
+		return table;
+	}
+
+
+	//adds one row with the given attribute value and class codes
+	public void add(int value, int classCode) {
+		counts[value * numClasses + classCode]++;
+		classTotals[classCode]++;
+		total++;
+	}
+
+
+	/*
+	 * Derives the table of the rows left after taking out some disjoint subsets of this
+	 * table's rows, e.g. one child node's table from its parent's and its siblings'
+	 *
+	 * @param parts - tables of the same attribute over disjoint subsets of the rows (null entries are skipped)
+	 * @return a new table of this table's counts less the parts' counts
+	 */
+	public ContingencyTable subtract(ContingencyTable[] parts) {
+		int[] remaining = counts.clone();
+		for (ContingencyTable part : parts) {
+			if (part == null) continue;
+			for (int i = 0; i < remaining.length; i++) {
+				remaining[i] -= part.counts[i];
+			}
+		}
+		return new ContingencyTable(remaining, numValues, numClasses);
+	}
+
+
+	//recalculates the class totals after the counts array was filled directly
+	void updateTotals() {
+		Arrays.fill(classTotals, 0);
+		total = 0;
+		for (int value = 0; value < numValues; value++) {
+			int base = value * numClasses;
+			for (int c = 0; c < numClasses; c++) {
+				classTotals[c] += counts[base + c];
+			}
+		}
+		for (int c = 0; c < numClasses; c++) {
+			total += classTotals[c];
+		}
+	}
+
+
+	//getter function for the count of one attribute value and class
+	public int getCount(int value, int classCode) {
+		return counts[value * numClasses + classCode];
+	}
+
+	//getter function for the number of rows with an attribute value
+	public int getValueTotal(int value) {
+		int valueTotal = 0;
+		int base = value * numClasses;
+		for (int c = 0; c < numClasses; c++) {
+			valueTotal += counts[base + c];
+		}
+		return valueTotal;
+	}
+
+	//getter function for the class counts of all rows in the table
+	public int[] getClassTotals() {
+		return classTotals;
+	}
+
+	//getter function for the number of rows in the table
+	public int getTotal() {
+		return total;
+	}
+
+	//getter function for the attribute cardinality
+	public int getNumValues() {
+		return numValues;
+	}
+
+
+	/*
+	 * Calculates the information gain of splitting the table's rows on its attribute:
+	 * the entropy of the class totals less the weighted entropy of each value's class counts
+	 *
+	 * @return the information gain
+	 */
+	public double informationGain() {
+
+		double infoGain = entropy(classTotals, 0, numClasses, total);
+		for (int value = 0; value < numValues; value++) {
+			int base = value * numClasses;
+			int valueTotal = 0;
+			for (int c = 0; c < numClasses; c++) {
+				valueTotal += counts[base + c];
+			}
+			if (valueTotal > 0) {
+				infoGain -= ((double)valueTotal/total) * entropy(counts, base, numClasses, valueTotal);
+			}
+		}
+		return infoGain;
+	}
+
+
+	/*
+	 * Calculates entropy from a run of class counts. The log base is the number
+	 * of classes present, the same as ID3.calculateEntropy
+	 *
+	 * @param counts - the array holding the class counts
+	 * @param from - the position of the first class count
+	 * @param length - the number of class counts
+	 * @param total - the sum of the class counts
+	 * @return the entropy
+	 */
+	public static double entropy(int[] counts, int from, int length, int total) {
+
+		int classes = 0;
+		for (int i = from; i < from + length; i++) {
+			if (counts[i] > 0) classes++;
+		}
+
+		double entropy = 0;
+		for (int i = from; i < from + length; i++) {
+			double part = ((double)counts[i]/(double)total);
+			if (!(part == 0 || part == 1)) { //if partition value is 0, do nothing, value will be 0
+				entropy = entropy - (part * ID3.logk(part, classes));
+			}
+		}
+		return entropy;
+	}
+
+}
@@ -0,0 +1,314 @@
+package Q4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/*
+ * k-fold cross-validation and grid search of tree parameters, to measure how well
+ * trees do on rows they were not trained on (ID3.testSolution only tests the
+ * training rows).
+ *
+ * The rows of one encoded dataset are shuffled once and cut into k folds. Each fold
+ * is tested on a tree trained on the other k - 1 folds, where both are row index
+ * views of the shared dataset: nothing is parsed or copied per fold. Every
+ * (configuration, fold) pair is its own task, so a whole grid runs in parallel.
+ */
+public class CrossValidation {
+
+	Dataset dataset; //the shared dataset, read-only
+	String classAttr;
+	int classIndex;
+	int numClasses;
+	int[] shuffled; //the row indices in random order; fold f is shuffled[foldStart[f], foldStart[f + 1])
+	int[] foldStart;
+
+
+	/*
+	 * The tree parameters of one configuration: the stopping rules of ID3.setStoppingRules
+	 */
+	public static class Config {
+
+		int maxDepth;
+		int minRows;
+		double minGain;
+		int maxNodes;
+
+		//constructor
+		public Config(int maxDepth, int minRows, double minGain, int maxNodes) {
+			this.maxDepth = maxDepth;
+			this.minRows = minRows;
+			this.minGain = minGain;
+			this.maxNodes = maxNodes;
+		}
+
+		@Override
+		public String toString() {
+			return "maxDepth=" + limit(maxDepth) + " minRows=" + minRows + " minGain=" + minGain + " maxNodes=" + limit(maxNodes);
+		}
+
+		//helper function to print "none" for an unlimited value
+		static String limit(int value) {
+			return value == Integer.MAX_VALUE ? "none" : Integer.toString(value);
+		}
+	}
+
+
+	/*
+	 * The cross-validated result of one configuration
+	 */
+	public static class Result {
+
+		Config config;
+		int[][] confusion; //confusion[actual class][predicted class], with column numClasses for rows no edge fits
+		double[] foldAccuracy;
+		long foldNanos; //the time to train and test every fold, added up over the folds
+		long wallNanos; //from the start of the first fold to the end of the last
+		long treeNodes; //the nodes of every fold's tree, added up
+
+		//getter function for the configuration
+		public Config getConfig() {
+			return config;
+		}
+
+		//getter function for the confusion counts, [actual class code][predicted class code or numClasses for no prediction]
+		public int[][] getConfusion() {
+			return confusion;
+		}
+
+		//getter function for the accuracy of each fold
+		public double[] getFoldAccuracy() {
+			return foldAccuracy;
+		}
+
+		//the fraction of all rows classified correctly, over every fold
+		public double getAccuracy() {
+			long correct = 0;
+			long total = 0;
+			for (int actual = 0; actual < confusion.length; actual++) {
+				correct += confusion[actual][actual];
+				for (int count : confusion[actual]) {
+					total += count;
+				}
+			}
+			return total == 0 ? 0 : (double)correct / total;
+		}
+
+		//getter function for the milliseconds spent training and testing, added up over the folds
+		public double getMillis() {
+			return foldNanos / 1e6;
+		}
+
+		//getter function for the wall-clock milliseconds from the first fold's start to the last fold's end
+		public double getWallMillis() {
+			return wallNanos / 1e6;
+		}
+
+		//getter function for the mean nodes of the folds' trees
+		public double getMeanNodes() {
+			return (double)treeNodes / foldAccuracy.length;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s: accuracy %.4f, %.1f nodes, %.1f ms (%.1f ms wall-clock)",
+					config, getAccuracy(), getMeanNodes(), getMillis(), getWallMillis());
+		}
+	}
+
+
+	/*
+	 * Constructor that cuts a dataset into folds
+	 *
+	 * @param dataset - the encoded dataset, shared by every fold (it must not change while evaluating)
+	 * @param classAttribute - the class attribute
+	 * @param k - the number of folds, at least 2
+	 * @param seed - the seed of the shuffle that assigns rows to folds
+	 * @throws NoMatchingClassException if the class attribute is not in the dataset
+	 */
+	public CrossValidation(Dataset dataset, String classAttribute, int k, long seed) throws NoMatchingClassException {
+
+		this.dataset = dataset;
+		this.classAttr = classAttribute;
+		this.classIndex = dataset.getAttributeIndex(classAttribute);
+		if (this.classIndex < 0) throw new NoMatchingClassException("no class in dataset matches class attribute entered on the command line");
+		if (k < 2 || k > dataset.getNumRows()) {
+			throw new IllegalArgumentException("cannot cut " + dataset.getNumRows() + " rows into " + k + " folds");
+		}
+		this.numClasses = dataset.getCardinality(classIndex);
+
+		int numRows = dataset.getNumRows();
+		this.shuffled = new int[numRows];
+		for (int i = 0; i < numRows; i++) {
+			shuffled[i] = i;
+		}
+		Random random = new Random(seed);
+		for (int i = numRows - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int swap = shuffled[i];
+			shuffled[i] = shuffled[j];
+			shuffled[j] = swap;
+		}
+		this.foldStart = new int[k + 1];
+		for (int f = 0; f <= k; f++) {
+			foldStart[f] = (int)((long)numRows * f / k);
+		}
+	}
+
+
+	/*
+	 * Builds the grid of every combination of the given parameter values
+	 *
+	 * @return the configurations, maxDepth varying slowest
+	 */
+	public static List<Config> grid(int[] maxDepths, int[] minRows, double[] minGains, int[] maxNodes) {
+		List<Config> configs = new ArrayList<Config>();
+		for (int depth : maxDepths) {
+			for (int rows : minRows) {
+				for (double gain : minGains) {
+					for (int nodes : maxNodes) {
+						configs.add(new Config(depth, rows, gain, nodes));
+					}
+				}
+			}
+		}
+		return configs;
+	}
+
+
+	/*
+	 * Cross-validates one configuration
+	 *
+	 * @param config - the tree parameters
+	 * @param pool - the pool the folds are run on
+	 * @return the result
+	 */
+	public Result evaluate(Config config, ForkJoinPool pool) {
+		return gridSearch(Arrays.asList(config), pool).get(0);
+	}
+
+
+	/*
+	 * Cross-validates every configuration of a grid, running all their folds concurrently
+	 *
+	 * @param configs - the configurations
+	 * @param pool - the pool the folds are run on
+	 * @return the result of each configuration, in the same order
+	 */
+	public List<Result> gridSearch(List<Config> configs, ForkJoinPool pool) {
+
+		int k = foldStart.length - 1;
+		List<FoldTask> tasks = new ArrayList<FoldTask>();
+		for (Config config : configs) {
+			for (int f = 0; f < k; f++) {
+				tasks.add(new FoldTask(config, f));
+			}
+		}
+		for (FoldTask task : tasks) {
+			pool.execute(task);
+		}
+		for (FoldTask task : tasks) {
+			task.join();
+		}
+
+		List<Result> results = new ArrayList<Result>();
+		for (int c = 0; c < configs.size(); c++) {
+			Result result = new Result();
+			result.config = configs.get(c);
+			result.confusion = new int[numClasses][numClasses + 1];
+			result.foldAccuracy = new double[k];
+			long firstStart = Long.MAX_VALUE;
+			long lastEnd = Long.MIN_VALUE;
+			for (int f = 0; f < k; f++) {
+				FoldTask task = tasks.get(c * k + f);
+				int correct = 0;
+				for (int actual = 0; actual < numClasses; actual++) {
+					for (int predicted = 0; predicted <= numClasses; predicted++) {
+						result.confusion[actual][predicted] += task.confusion[actual][predicted];
+					}
+					correct += task.confusion[actual][actual];
+				}
+				result.foldAccuracy[f] = (double)correct / (foldStart[f + 1] - foldStart[f]);
+				result.foldNanos += task.end - task.start;
+				firstStart = Math.min(firstStart, task.start);
+				lastEnd = Math.max(lastEnd, task.end);
+				result.treeNodes += task.nodes;
+			}
+			result.wallNanos = lastEnd - firstStart;
+			results.add(result);
+		}
+		return results;
+	}
+
+
+	//trains a tree on every fold but one and tests it on that fold
+	class FoldTask extends RecursiveTask<int[][]> {
+
+		private static final long serialVersionUID = 1L;
+		Config config;
+		int fold;
+		int[][] confusion;
+		long start; //System.nanoTime() at the start and end of the fold
+		long end;
+		int nodes;
+
+		FoldTask(Config config, int fold) {
+			this.config = config;
+			this.fold = fold;
+		}
+
+		@Override
+		protected int[][] compute() {
+
+			start = System.nanoTime();
+			int from = foldStart[fold];
+			int to = foldStart[fold + 1];
+
+			//the other folds' rows, in a fresh array since the build reorders them
+			int[] training = new int[shuffled.length - (to - from)];
+			System.arraycopy(shuffled, 0, training, 0, from);
+			System.arraycopy(shuffled, to, training, from, shuffled.length - to);
+
+			ID3 tree;
+			try {
+				tree = new ID3(dataset, classAttr);
+			} catch (NoMatchingClassException e) {
+				throw new IllegalStateException(e); //checked in the constructor
+			}
+			tree.setStoppingRules(config.maxDepth, config.minRows, config.minGain, config.maxNodes);
+			DTNode root = tree.buildDecisionTree(new ArrayList<String>(), dataset, training, 0, training.length);
+			nodes = ID3.countNodes(root);
+
+			//the tree shares the dataset's dictionaries, so its class codes are the dataset's
+			CompiledTree compiled = new CompiledTree(root, dataset, classAttr);
+			int[][] columns = new int[dataset.getNumAttributes()][];
+			int[][] translations = compiled.translate(dataset, columns);
+			int[] predictions = new int[to - from];
+			compiled.walk(columns, translations, shuffled, from, to, predictions, 0);
+
+			confusion = new int[numClasses][numClasses + 1];
+			int[] classColumn = dataset.getColumn(classIndex);
+			for (int i = 0; i < predictions.length; i++) {
+				int predicted = predictions[i] < 0 ? numClasses : predictions[i];
+				confusion[classColumn[shuffled[from + i]]][predicted]++;
+			}
+			end = System.nanoTime();
+			return confusion;
+		}
+	}
+
+
+	//getter function for the class value of a class code, to label the confusion counts
+	public String getClassLabel(int classCode) {
+		return dataset.getValue(classIndex, classCode);
+	}
+
+	//getter function for the number of folds
+	public int getNumFolds() {
+		return foldStart.length - 1;
+	}
+
+}
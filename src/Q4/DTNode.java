@@ -18,8 +18,12 @@ public class DTNode {
 	String value; //split attribute or class depending on type
 	DTNode parent;
 	ArrayList<String> pathMap = new ArrayList<String>(); //contains attributes used along path for decisions (prevent repeats)
-	ArrayList<ArrayList<String>> dataset; //the dataset associated with the split for this node; for root of tree, this is the full training dataset
+	int rowOffset; //start of the rows associated with the split for this node, in the row index array shared by the whole build
+	int rowCount; //number of rows associated with the split for this node; for root of tree, this is the full training dataset
 	HashMap<String, DTNode> children = new HashMap<String, DTNode>(); //container for children key = split attribute value, value = child node
+	boolean thresholdSplit; //true if an internal node splits a numeric attribute on a threshold
+	double threshold; //for a threshold split, the children are lowEdge(threshold) (value <= threshold) and highEdge(threshold)
+	String majorityClass; //the most common class of the node's training rows, null if not known
 	
 	
 	//constructor
@@ -51,6 +55,91 @@ public class DTNode {
 		return this.type;
 	}
 	
+	//setter function for node value, for trees that change as they learn
+	public void setValue(String val) {
+		this.value = val;
+	}
+	
+	//setter function for node type, for trees that change as they learn
+	public void setType(String tp) {
+		this.type = tp;
+	}
+	
+	//getter function for the most common class of the node's training rows
+	public String getMajorityClass() {
+		return this.majorityClass;
+	}
+	
+	//setter function for the most common class of the node's training rows
+	public void setMajorityClass(String classValue) {
+		this.majorityClass = classValue;
+	}
+	
+	//turns the node into a leaf of a class, dropping its subtree (used by pruning)
+	public void makeLeaf(String classValue) {
+		this.type = "leaf";
+		this.value = classValue;
+		this.thresholdSplit = false;
+		this.children = new HashMap<String, DTNode>();
+	}
+	
+	//setter function for the node's range of the shared row index array
+	public void setRowRange(int offset, int count) {
+		this.rowOffset = offset;
+		this.rowCount = count;
+	}
+	
+	//getter function for the start of the node's rows in the shared row index array
+	public int getRowOffset() {
+		return this.rowOffset;
+	}
+	
+	//getter function for the number of rows at the node
+	public int getRowCount() {
+		return this.rowCount;
+	}
+	
+	//setter function for a numeric threshold split
+	public void setThreshold(double t) {
+		this.thresholdSplit = true;
+		this.threshold = t;
+	}
+	
+	//true if the node splits a numeric attribute on a threshold
+	public boolean isThresholdSplit() {
+		return this.thresholdSplit;
+	}
+	
+	//getter function for the threshold of a threshold split
+	public double getThreshold() {
+		return this.threshold;
+	}
+	
+	//the child key for values at or below a threshold
+	public static String lowEdge(double t) {
+		return "<= " + t;
+	}
+	
+	//the child key for values above a threshold
+	public static String highEdge(double t) {
+		return "> " + t;
+	}
+	
+	/*
+	 * Gets the child for a row value, following threshold edges for a numeric split
+	 * 
+	 * @param attrValue the row's value of this node's split attribute
+	 * @return the child node, or null if there is no edge for the value
+	 */
+	public DTNode getChild(String attrValue) {
+		if (thresholdSplit) {
+			double number = Dataset.parseNumber(attrValue);
+			if (Double.isNaN(number)) return null;
+			return children.get(number <= threshold ? lowEdge(threshold) : highEdge(threshold));
+		}
+		return children.get(attrValue);
+	}
+	
 	//setter function for parent node
 	public void setParent(DTNode parentNode) {
 		this.parent = parentNode;
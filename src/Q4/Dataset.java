@@ -0,0 +1,329 @@
+package Q4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/*
+ * A column-oriented, dictionary-encoded copy of a csv dataset.
+ *
+ * Each attribute (column) is stored as an int array of codes, one per row, and
+ * a per-column dictionary that maps each code back to its String value.
+ * The header is kept separately, so row 0 of a column is the first data row
+ * (unlike the ArrayList<ArrayList<String>> datasets where row 0 is the header).
+ *
+ * Strings are only hashed once, when the dataset is encoded; after that the
+ * ID3 algorithm works on the int codes.
+ */
+public class Dataset {
+
+	String[] header; //attribute names, in column order
+	int[][] columns; //columns[attribute][row] = code of the value in that column's dictionary
+	ArrayList<ArrayList<String>> dictionaries = new ArrayList<ArrayList<String>>(); //dictionaries[attribute][code] = value
+	ArrayList<HashMap<String, Integer>> lookups = new ArrayList<HashMap<String, Integer>>(); //value -> code for each attribute
+	HashMap<String, Integer> headerIndex = new HashMap<String, Integer>(); //attribute name -> column index
+	int numRows;
+	
+	//numeric attributes; each distinct value is presorted once, when the attribute is set as numeric
+	boolean[] numeric; //numeric[attribute] = true if the attribute is split on thresholds
+	double[][] codeValues; //codeValues[attribute][code] = numeric value of the code
+	int[][] codeRanks; //codeRanks[attribute][code] = position of the code's value in rankValues
+	double[][] rankValues; //rankValues[attribute] = the distinct numeric values, ascending
+
+
+	/*
+	 * Constructor from already encoded columns
+	 *
+	 * @param header - the attribute names
+	 * @param columns - the encoded columns, columns[attribute][row]
+	 * @param dictionaries - the value dictionary for each column
+	 * @param numRows - the number of data rows (not including the header)
+	 */
+	Dataset(String[] header, int[][] columns, ArrayList<ArrayList<String>> dictionaries, int numRows) {
+		this.header = header;
+		this.columns = columns;
+		this.dictionaries = dictionaries;
+		this.numRows = numRows;
+		this.numeric = new boolean[header.length];
+		this.codeValues = new double[header.length][];
+		this.codeRanks = new int[header.length][];
+		this.rankValues = new double[header.length][];
+
+		for (int i = 0; i < header.length; i++) {
+			//keep the first column if names are repeated, the same as ID3.getAttributeIndex
+			if (!headerIndex.containsKey(header[i])) {
+				headerIndex.put(header[i], i);
+			}
+			HashMap<String, Integer> lookup = new HashMap<String, Integer>();
+			ArrayList<String> dictionary = dictionaries.get(i);
+			for (int code = 0; code < dictionary.size(); code++) {
+				lookup.put(dictionary.get(code), code);
+			}
+			lookups.add(lookup);
+		}
+	}
+
+
+	/*
+	 * Encodes a dataset as produced by DecisionTree.parseCSV
+	 * The first row is taken as the header.
+	 *
+	 * @param rows - the 2d arraylist dataset, including the header row
+	 * @return the encoded dataset
+	 */
+	public static Dataset fromRows(ArrayList<ArrayList<String>> rows) {
+
+		ArrayList<String> headerRow = rows.get(0);
+		String[] header = headerRow.toArray(new String[headerRow.size()]);
+		int numRows = rows.size() - 1; //-1 to not include header
+
+		int[][] columns = new int[header.length][numRows];
+		ArrayList<ArrayList<String>> dictionaries = new ArrayList<ArrayList<String>>();
+		ArrayList<HashMap<String, Integer>> lookups = new ArrayList<HashMap<String, Integer>>();
+		for (int i = 0; i < header.length; i++) {
+			dictionaries.add(new ArrayList<String>());
+			lookups.add(new HashMap<String, Integer>());
+		}
+
+		//encode each field, adding new values to the column dictionary as they are seen
+		for (int r = 0; r < numRows; r++) {
+			ArrayList<String> row = rows.get(r + 1);
+			for (int i = 0; i < header.length; i++) {
+				//short rows are padded with empty values
+				String value = i < row.size() ? row.get(i) : "";
+				Integer code = lookups.get(i).get(value);
+				if (code == null) {
+					code = dictionaries.get(i).size();
+					dictionaries.get(i).add(value);
+					lookups.get(i).put(value, code);
+				}
+				columns[i][r] = code;
+			}
+		}
+		return new Dataset(header, columns, dictionaries, numRows);
+	}
+
+
+	//getter function for the number of data rows (header not included)
+	public int getNumRows() {
+		return this.numRows;
+	}
+
+	//getter function for the number of attributes (columns)
+	public int getNumAttributes() {
+		return this.header.length;
+	}
+
+	//getter function for the name of an attribute
+	public String getAttributeName(int attr) {
+		return this.header[attr];
+	}
+
+	//getter function for the header as a list, in the same form as row 0 of a parsed csv
+	public ArrayList<String> getHeader() {
+		ArrayList<String> headerList = new ArrayList<String>();
+		for (String field : header) {
+			headerList.add(field);
+		}
+		return headerList;
+	}
+
+	/*
+	 * Gets the column index of an attribute
+	 *
+	 * @param attribute - the attribute name
+	 * @return the column index, or -1 if the attribute is not in the header
+	 */
+	public int getAttributeIndex(String attribute) {
+		Integer index = headerIndex.get(attribute);
+		return index == null ? -1 : index;
+	}
+
+	//getter function for an encoded column; the array is shared, not copied
+	public int[] getColumn(int attr) {
+		return this.columns[attr];
+	}
+
+	//getter function for the code of one field
+	public int getCode(int attr, int row) {
+		return this.columns[attr][row];
+	}
+
+	//getter function for the number of distinct values in a column
+	public int getCardinality(int attr) {
+		return this.dictionaries.get(attr).size();
+	}
+
+	//getter function for the String value of a code in a column
+	public String getValue(int attr, int code) {
+		return this.dictionaries.get(attr).get(code);
+	}
+
+	/*
+	 * Looks up the code of a value in a column dictionary
+	 *
+	 * @param attr - the column index
+	 * @param value - the String value
+	 * @return the code, or -1 if the value does not appear in the column
+	 */
+	public int encode(int attr, String value) {
+		Integer code = this.lookups.get(attr).get(value);
+		return code == null ? -1 : code;
+	}
+
+	/*
+	 * Declares an attribute as numeric, so it is split on a threshold instead of
+	 * one branch per value. The distinct values are parsed and sorted here, once.
+	 *
+	 * @param attr - the column index
+	 * @throws IllegalArgumentException if a value of the column is not a number
+	 */
+	public void setNumeric(int attr) {
+
+		ArrayList<String> dictionary = dictionaries.get(attr);
+		double[] values = new double[dictionary.size()];
+		for (int code = 0; code < values.length; code++) {
+			values[code] = parseNumber(dictionary.get(code)) + 0.0; //+ 0.0 turns -0.0 into 0.0 so they share a rank
+			if (Double.isNaN(values[code])) {
+				throw new IllegalArgumentException("value " + dictionary.get(code) + " of " + header[attr] + " is not a number");
+			}
+		}
+
+		//distinct values in ascending order; codes with the same value (e.g. "5" and "5.0") share a rank
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		int distinct = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			if (i == 0 || sorted[i] != sorted[distinct - 1]) {
+				sorted[distinct++] = sorted[i];
+			}
+		}
+		double[] ranks = Arrays.copyOf(sorted, distinct);
+		int[] codeRank = new int[values.length];
+		for (int code = 0; code < values.length; code++) {
+			codeRank[code] = Arrays.binarySearch(ranks, values[code]);
+		}
+
+		this.codeValues[attr] = values;
+		this.rankValues[attr] = ranks;
+		this.codeRanks[attr] = codeRank;
+		this.numeric[attr] = true;
+	}
+
+
+	/*
+	 * Sets every attribute whose values are all numbers as numeric, except the class attribute
+	 *
+	 * @param classAttribute - the class attribute, which is always left categorical
+	 * @return the number of attributes set as numeric
+	 */
+	public int detectNumericAttributes(String classAttribute) {
+		int count = 0;
+		for (int attr = 0; attr < header.length; attr++) {
+			if (numeric[attr] || header[attr].equals(classAttribute)) continue;
+			boolean allNumbers = getCardinality(attr) > 0;
+			for (String value : dictionaries.get(attr)) {
+				if (Double.isNaN(parseNumber(value))) {
+					allNumbers = false;
+					break;
+				}
+			}
+			if (allNumbers) {
+				setNumeric(attr);
+				count++;
+			}
+		}
+		return count;
+	}
+
+
+	//getter function for whether an attribute is numeric
+	public boolean isNumeric(int attr) {
+		return numeric[attr];
+	}
+
+	//getter function for the numeric value of a code of a numeric attribute
+	public double getNumericValue(int attr, int code) {
+		return codeValues[attr][code];
+	}
+
+
+	/*
+	 * Parses a number, allowing a k (thousands) or m (millions) suffix as in "300k"
+	 *
+	 * @param value - the String value
+	 * @return the number, or NaN if the value is not a number
+	 */
+	public static double parseNumber(String value) {
+		String number = value.trim();
+		double scale = 1;
+		if (number.endsWith("k") || number.endsWith("K")) {
+			scale = 1e3;
+			number = number.substring(0, number.length() - 1);
+		}
+		else if (number.endsWith("m") || number.endsWith("M")) {
+			scale = 1e6;
+			number = number.substring(0, number.length() - 1);
+		}
+		//only plain decimal numbers, so values like "NaN", "Infinity" or "1d" stay categorical
+		if (number.isEmpty() || !number.matches("[-+]?(\\d+\\.?\\d*|\\.\\d+)([eE][-+]?\\d+)?")) {
+			return Double.NaN;
+		}
+		return Double.parseDouble(number) * scale;
+	}
+
+
+	/*
+	 * Replaces the codes of an attribute with bin codes, as chosen by Binning.
+	 * The bin labels become the attribute's dictionary, and its lookup maps both the
+	 * labels and every original value to their bin.
+	 *
+	 * @param attr - the column index
+	 * @param binOf - binOf[code] = bin of each current code
+	 * @param labels - the label of each bin
+	 */
+	void setBins(int attr, int[] binOf, ArrayList<String> labels) {
+
+		int[] column = new int[numRows];
+		int[] oldColumn = columns[attr];
+		for (int row = 0; row < numRows; row++) {
+			column[row] = binOf[oldColumn[row]];
+		}
+
+		HashMap<String, Integer> lookup = new HashMap<String, Integer>();
+		ArrayList<String> oldDictionary = dictionaries.get(attr);
+		for (int code = 0; code < oldDictionary.size(); code++) {
+			lookup.put(oldDictionary.get(code), binOf[code]);
+		}
+		ArrayList<String> dictionary = new ArrayList<String>(labels.size());
+		for (int bin = 0; bin < labels.size(); bin++) {
+			String label = labels.get(bin);
+			Integer existing = lookup.get(label);
+			if (existing != null && existing != bin) { //an original value of another bin, keep the label unique
+				label = label + " #" + bin;
+			}
+			lookup.put(label, bin);
+			dictionary.add(label);
+		}
+
+		columns[attr] = column;
+		dictionaries.set(attr, dictionary);
+		lookups.set(attr, lookup);
+	}
+
+
+	/*
+	 * Decodes a single row back to Strings
+	 *
+	 * @param row - the row index (0 is the first data row)
+	 * @return the row values in column order
+	 */
+	public ArrayList<String> getRow(int row) {
+		ArrayList<String> values = new ArrayList<String>();
+		for (int i = 0; i < header.length; i++) {
+			values.add(getValue(i, columns[i][row]));
+		}
+		return values;
+	}
+
+}
@@ -0,0 +1,345 @@
+package Q4;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/*
+ * A directory of encoded copies of csv files, so a file that has not changed since
+ * it was last loaded is read back as a Dataset instead of being parsed again.
+ *
+ * Each entry is named after the csv file's path and records the file's size,
+ * modification time and SHA-256 content hash. An entry whose size and time still
+ * match is used as it is; if only the time changed (the file was touched or copied)
+ * the content is hashed, and if the hash matches the entry is used and given the
+ * new time. Otherwise the file is parsed again and the entry replaced. Entries
+ * written within a couple of seconds of the file's last change are always checked
+ * by hash, since the file may have changed again within the same time stamp.
+ *
+ * Entries are memory-mapped to be read, and written to a temporary file that is
+ * moved into place, so concurrent runs never see a half-written entry. Once the
+ * entries add up to more than maxBytes, the least recently used are deleted.
+ *
+ * An entry whose size and time match is loaded as training data without hashing,
+ * so the directory must not be writable by other users: the default is in the
+ * user's home directory, and a directory the cache creates is made owner-only.
+ *
+ * File layout (big-endian):
+ *   int     magic ("ID3D")
+ *   int     format version
+ *   string  the csv file's real path
+ *   long    the csv file's size
+ *   long    the csv file's modification time, in milliseconds
+ *   long    the time the entry was written, in milliseconds
+ *   32 bytes SHA-256 of the csv file
+ *   int     number of attributes
+ *   int     number of rows
+ *   for each attribute: string name, int cardinality, cardinality x string value
+ *   padding to a multiple of 4 bytes
+ *   for each attribute: int[number of rows] codes
+ * where a string is an int byte length followed by the UTF-8 bytes, as in ModelFile.
+ */
+public class DatasetCache {
+
+	static final int MAGIC = 0x49443344; //"ID3D"
+	static final int VERSION = 1;
+	static final String SUFFIX = ".dataset";
+	static final long RACY_MILLIS = 2000; //entries written this soon after the file's last change are checked by hash
+	static final int HASH_BYTES = 32;
+	static final long HASH_WINDOW = 1L << 28; //bytes mapped at a time to hash a file
+
+	File directory;
+	long maxBytes;
+	boolean lastHit; //whether the last load was read from the cache
+
+
+	/*
+	 * Constructor for a cache directory
+	 *
+	 * @param directory - the directory holding the entries (created when the first entry is written)
+	 * @param maxBytes - the most bytes of entries kept; a dataset larger than this is not cached
+	 */
+	public DatasetCache(File directory, long maxBytes) {
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+	}
+
+
+	//constructor for a cache in the user's .cache/id3 directory (not the shared temporary directory)
+	public DatasetCache(long maxBytes) {
+		this(new File(new File(System.getProperty("user.home"), ".cache"), "id3"), maxBytes);
+	}
+
+
+	/*
+	 * Loads a csv file as an encoded Dataset, from its cache entry if the file has not
+	 * changed, else with CSVLoader.load, caching the result
+	 *
+	 * @param path - the filepath to the csv file
+	 * @return the encoded dataset
+	 * @throws IOException if the csv file cannot be read (cache entries that cannot be read
+	 *                     or written are skipped)
+	 */
+	public Dataset load(String path) throws IOException {
+
+		Path source = Paths.get(path).toRealPath();
+		long size = Files.size(source);
+		long modified = Files.getLastModifiedTime(source).toMillis();
+		File entry = entryFile(source);
+
+		lastHit = false;
+		byte[][] hash = new byte[1][]; //set by read if it hashed the file
+		if (entry.isFile()) {
+			Dataset ds = null;
+			try {
+				ds = read(entry, source, size, modified, hash);
+			} catch (IOException | RuntimeException e) {
+				//a damaged or foreign entry, parse the file again below
+			}
+			if (ds != null) {
+				lastHit = true;
+				entry.setLastModified(System.currentTimeMillis()); //most recently used
+				return ds;
+			}
+		}
+
+		if (hash[0] == null) {
+			hash[0] = hash(source);
+		}
+		Dataset ds = CSVLoader.load(source.toString());
+		try {
+			//not cached if the file changed while it was read, the hash may not match the rows
+			if (Files.size(source) == size && Files.getLastModifiedTime(source).toMillis() == modified) {
+				write(ds, entry, source, size, modified, hash[0]);
+				evict(entry);
+			}
+		} catch (IOException e) {
+			//the dataset loaded, caching it is only an optimization
+		}
+		return ds;
+	}
+
+
+	/*
+	 * Reads an entry back as a Dataset if it is for the csv file as it is now. The entry is
+	 * only opened for writing to record a new time after a hash check, so a read-only cache
+	 * directory still gives hits.
+	 *
+	 * @param hash - hash[0] is set to the csv file's hash if it was computed, so a miss can reuse it
+	 * @return the dataset, or null if the file has changed since the entry was written
+	 * @throws IOException if the entry cannot be read or is not a cache entry of this version
+	 */
+	Dataset read(File entry, Path source, long size, long modified, byte[][] hash) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(entry.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				throw new IOException(entry + " is not a dataset cache entry of version " + VERSION);
+			}
+			if (!ModelFile.readString(buffer).equals(source.toString()) || buffer.getLong() != size) {
+				return null;
+			}
+			int timesPosition = buffer.position();
+			long entryModified = buffer.getLong();
+			long written = buffer.getLong();
+			byte[] entryHash = new byte[HASH_BYTES];
+			buffer.get(entryHash);
+			if (entryModified != modified || written - entryModified < RACY_MILLIS) {
+				hash[0] = hash(source);
+				if (!Arrays.equals(entryHash, hash[0])) {
+					return null;
+				}
+				//the same contents, record the file's time so later loads skip the hash
+				writeTimes(entry, timesPosition, modified);
+			}
+
+			int numAttributes = buffer.getInt();
+			int numRows = buffer.getInt();
+			String[] header = new String[numAttributes];
+			ArrayList<ArrayList<String>> dictionaries = new ArrayList<ArrayList<String>>();
+			for (int i = 0; i < numAttributes; i++) {
+				header[i] = ModelFile.readString(buffer);
+				int cardinality = buffer.getInt();
+				ArrayList<String> dictionary = new ArrayList<String>(cardinality);
+				for (int code = 0; code < cardinality; code++) {
+					dictionary.add(ModelFile.readString(buffer));
+				}
+				dictionaries.add(dictionary);
+			}
+			buffer.position((buffer.position() + 3) & ~3);
+
+			IntBuffer codes = buffer.slice().asIntBuffer();
+			if (codes.remaining() < (long)numAttributes * numRows) {
+				throw new IOException(entry + " is truncated");
+			}
+			int[][] columns = new int[numAttributes][numRows];
+			for (int i = 0; i < numAttributes; i++) {
+				codes.get(columns[i]);
+			}
+			return new Dataset(header, columns, dictionaries, numRows);
+		} catch (BufferUnderflowException e) {
+			throw new IOException(entry + " is truncated");
+		}
+	}
+
+
+	//helper function to record a csv file's time in its entry, with the time it was checked; skipped if the entry cannot be written
+	static void writeTimes(File entry, int position, long modified) {
+		ByteBuffer times = ByteBuffer.allocate(16).putLong(modified).putLong(System.currentTimeMillis());
+		times.flip();
+		try (FileChannel channel = FileChannel.open(entry.toPath(), StandardOpenOption.WRITE)) {
+			channel.write(times, position);
+		} catch (IOException e) {
+			//the entry is still valid, later loads hash the file again
+		}
+	}
+
+
+	/*
+	 * Writes the entry for a csv file, through a temporary file moved into place
+	 *
+	 * @throws IOException if the entry cannot be written
+	 */
+	void write(Dataset ds, File entry, Path source, long size, long modified, byte[] hash) throws IOException {
+
+		if (directory.mkdirs()) {
+			try {
+				Files.setPosixFilePermissions(directory.toPath(), PosixFilePermissions.fromString("rwx------"));
+			} catch (UnsupportedOperationException e) {
+				//no POSIX permissions on this file system
+			}
+		}
+		File temp = File.createTempFile("entry", ".tmp", directory);
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				ModelFile.writeString(out, source.toString());
+				out.writeLong(size);
+				out.writeLong(modified);
+				out.writeLong(System.currentTimeMillis());
+				out.write(hash);
+				out.writeInt(ds.getNumAttributes());
+				out.writeInt(ds.getNumRows());
+				for (int i = 0; i < ds.getNumAttributes(); i++) {
+					ModelFile.writeString(out, ds.header[i]);
+					ArrayList<String> dictionary = ds.dictionaries.get(i);
+					out.writeInt(dictionary.size());
+					for (String value : dictionary) {
+						ModelFile.writeString(out, value);
+					}
+				}
+				while (out.size() % 4 != 0) { //align the columns
+					out.writeByte(0);
+				}
+
+				//the codes go through a byte array a block at a time rather than one writeInt each
+				ByteBuffer block = ByteBuffer.allocate(1 << 16);
+				IntBuffer ints = block.asIntBuffer();
+				for (int i = 0; i < ds.getNumAttributes(); i++) {
+					int[] column = ds.getColumn(i);
+					for (int from = 0; from < ds.getNumRows(); from += ints.capacity()) {
+						int n = Math.min(ints.capacity(), ds.getNumRows() - from);
+						ints.clear();
+						ints.put(column, from, n);
+						out.write(block.array(), 0, n * 4);
+					}
+				}
+			}
+			if (temp.length() > maxBytes) {
+				return; //too large to keep
+			}
+			Files.move(temp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			temp.delete(); //left behind only if it was not moved
+		}
+	}
+
+
+	/*
+	 * Deletes the least recently used entries until the entries fit in maxBytes
+	 *
+	 * @param keep - the entry just written, deleted last
+	 */
+	void evict(File keep) {
+
+		File[] entries = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+		if (entries == null) return;
+		long total = 0;
+		for (File entry : entries) {
+			total += entry.length();
+		}
+		Arrays.sort(entries, Comparator.comparing((File entry) -> entry.equals(keep)).thenComparingLong(File::lastModified));
+		for (int i = 0; i < entries.length && total > maxBytes; i++) {
+			long length = entries[i].length();
+			if (entries[i].delete()) {
+				total -= length;
+			}
+		}
+	}
+
+
+	//helper function for the entry of a csv file, named after a hash of its path
+	File entryFile(Path source) {
+		byte[] pathHash = sha256().digest(source.toString().getBytes(StandardCharsets.UTF_8));
+		StringBuilder name = new StringBuilder();
+		for (int i = 0; i < 16; i++) {
+			name.append(String.format("%02x", pathHash[i]));
+		}
+		return new File(directory, name.append(SUFFIX).toString());
+	}
+
+
+	//helper function for the SHA-256 hash of a file's contents, read through a memory mapping
+	static byte[] hash(Path source) throws IOException {
+		MessageDigest digest = sha256();
+		try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+			long size = channel.size();
+			for (long position = 0; position < size; position += HASH_WINDOW) {
+				digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(HASH_WINDOW, size - position)));
+			}
+		}
+		return digest.digest();
+	}
+
+
+	//helper function for a SHA-256 digest, which every JVM has
+	static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+
+	//getter function for whether the last load was read from the cache
+	public boolean wasHit() {
+		return lastHit;
+	}
+
+	//getter function for the cache directory
+	public File getDirectory() {
+		return directory;
+	}
+
+}
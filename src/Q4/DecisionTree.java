@@ -1,9 +1,16 @@
 package Q4;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.management.JMException;
 
 
 /*
@@ -30,26 +37,121 @@ public class DecisionTree {
 		//String filePath =  ".\\src\\bchousing.csv";
 		String filePath =  ".\\src\\test.csv";
 		
-		//parse file to a dataset in memory
-		ArrayList<ArrayList<String>> training_dataset = parseCSV(filePath);
+		//print the parsed dataset before the tree (slow for large files)
+		boolean printDataset = true;
+		
+		//keep encoded copies of input files in the user's .cache/id3 directory, up to this many bytes, and read
+		//them back instead of parsing while the file is unchanged (0 to parse every run)
+		long datasetCacheBytes = 1L << 30;
+		
+		//split columns whose values are all numbers on thresholds instead of one branch per value
+		boolean numericAttributes = false;
+		
+		//group the values of columns with more distinct values than this into that many bins (0 to keep every value),
+		//by class distribution or else by frequency; trades some accuracy for small splits on ID-like columns
+		int maxBins = 0;
+		boolean binByClass = true;
+		
+		//train from column files on disk instead of loading the dataset into memory, for files larger
+		//than the heap; the heap used for rows and count tables stays under this many bytes (0 to train in memory)
+		long outOfCoreBudget = 0;
+		
+		//collect build metrics (rows scanned, gain evaluations, nodes, time per depth), print them after the
+		//tree and expose them over JMX as Q4:type=TreeMetrics,name=DecisionTree
+		boolean printMetrics = false;
+		
+		//stopping rules, to keep trees grown on noisy data small: nodes at maxDepth, with fewer than minRows rows,
+		//whose best split gains less than minGain, or whose children would take the tree past maxNodes become leaves
+		int maxDepth = Integer.MAX_VALUE;
+		int minRows = 0;
+		double minGain = 0;
+		int maxNodes = Integer.MAX_VALUE;
+		
+		//hold this fraction of the rows out of training and prune the tree against them afterwards (0 to use every row)
+		double pruneHoldout = 0;
+		
+		//also train a random forest of this many trees (bootstrap samples, a random attribute subset per node) on all cores
+		//and test it on the dataset (0 for no forest)
+		int forestTrees = 0;
+		
+		//cross-validate a grid of stopping rules with this many folds on all cores and print the accuracy of each (0 to skip)
+		int crossValidationFolds = 0;
+		
+		if (outOfCoreBudget > 0) {
+			trainOutOfCore(filePath, classAttr, outOfCoreBudget);
+			return;
+		}
+		
+		//stream the file straight into an encoded dataset so the ID3 algorithm works on int codes instead of Strings
+		Dataset encoded_dataset;
+		try {
+			encoded_dataset = CSVLoader.load(filePath, datasetCacheBytes > 0 ? new DatasetCache(datasetCacheBytes) : null);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+		if (printDataset) {
+			printDataset(encoded_dataset);
+		}
+		if (numericAttributes) {
+			encoded_dataset.detectNumericAttributes(classAttr);
+		}
+		if (maxBins > 0) {
+			Binning.binHighCardinality(encoded_dataset, classAttr, maxBins, binByClass);
+		}
 		
 	   //try creating an instance of ID3; If there is no matching class from
 		//the dataset, produce an exception (more important for command-line inputs)
 	  try {
 		
 		  //create an instance of the ID3 algorithm for the given datset, then built it and print it
-		  ID3 ID3Search = new ID3(training_dataset, classAttr);
-		 
-		  //initialize the path for the root node to empty (this will track which attributes have been used for splits)
-		  ArrayList<String> emptyPath = new ArrayList<String>();		   
+		  ID3 ID3Search = new ID3(encoded_dataset, classAttr);
+		  TreeMetrics metrics = new TreeMetrics();
+		  if (printMetrics) {
+			  ID3Search.setTreeListener(metrics);
+			  try {
+				  metrics.register("DecisionTree");
+			  } catch (JMException e) {
+				  e.printStackTrace();
+			  }
+		  }
 		   
-		  //build and print decision tree
-		  DTNode root = ID3Search.buildDecisionTree(emptyPath, training_dataset);
+		  ID3Search.setStoppingRules(maxDepth, minRows, minGain, maxNodes);
+		   
+		  //build and print decision tree (the root starts with an empty path of split attributes)
+		  DTNode root;
+		  if (pruneHoldout > 0) {
+			  root = buildAndPrune(ID3Search, encoded_dataset, pruneHoldout);
+		  }
+		  else {
+			  root = ID3Search.buildDecisionTree(encoded_dataset);
+		  }
 		  System.out.println("DECISION TREE: \n");
 		  ID3Search.printHorizontal(root, "");	
 		  
 		  //test solution for this dataset
-		  ID3Search.testSolution(training_dataset);
+		  ID3Search.testSolution(encoded_dataset);
+		  
+		  if (forestTrees > 0) {
+			  Forest forest = new Forest(encoded_dataset, classAttr, forestTrees, 0, 42);
+			  forest.build(ForkJoinPool.commonPool());
+			  int correct = forest.countCorrect(encoded_dataset, ForkJoinPool.commonPool());
+			  System.out.println("\nForest of " + forestTrees + " trees, correct classifications: " + correct);
+		  }
+		  
+		  if (crossValidationFolds > 0) {
+			  CrossValidation cv = new CrossValidation(encoded_dataset, classAttr, crossValidationFolds, 42);
+			  List<CrossValidation.Config> grid = CrossValidation.grid(new int[] {2, 4, 8, Integer.MAX_VALUE},
+					  new int[] {0, 10}, new double[] {0}, new int[] {Integer.MAX_VALUE});
+			  System.out.println("\n" + crossValidationFolds + "-FOLD CROSS-VALIDATION: \n");
+			  for (CrossValidation.Result result : cv.gridSearch(grid, ForkJoinPool.commonPool())) {
+				  System.out.println(result);
+			  }
+		  }
+		  
+		  if (printMetrics) {
+			  System.out.println("\nMETRICS: \n" + metrics);
+		  }
 		   
 	  }
 	  catch(NoMatchingClassException e) {
@@ -59,6 +161,82 @@ public class DecisionTree {
 	}
 	
 	
+	
+	/*
+	 * Builds a decision tree from a random part of a dataset and prunes it against the rest
+	 * 
+	 * @param ID3Search  The ID3 instance for the dataset
+	 * @param ds  The encoded dataset
+	 * @param holdoutFraction  The fraction of the rows to hold out of training
+	 * @return  The root of the pruned tree
+	 */
+	public static DTNode buildAndPrune(ID3 ID3Search, Dataset ds, double holdoutFraction) {
+		
+		//shuffle the row indices with a fixed seed, so runs are repeatable
+		int[] rows = new int[ds.getNumRows()];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = i;
+		}
+		Random random = new Random(42);
+		for (int i = rows.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int swap = rows[i];
+			rows[i] = rows[j];
+			rows[j] = swap;
+		}
+		
+		int numHoldout = (int)(rows.length * holdoutFraction);
+		int numTraining = rows.length - numHoldout;
+		int[] holdout = Arrays.copyOfRange(rows, numTraining, rows.length);
+		DTNode root = ID3Search.buildDecisionTree(new ArrayList<String>(), ds, rows, 0, numTraining);
+		ID3Search.root = root;
+		int removed = ID3Search.prune(ds, holdout);
+		System.out.println("Pruned " + removed + " nodes against " + numHoldout + " holdout rows\n");
+		return root;
+	}
+	
+	
+	/*
+	 * Builds and prints a decision tree from a csv file without loading the file into memory.
+	 * The file is encoded into column files in a temporary directory, which are deleted after,
+ * whether or not the build succeeds.
+	 * 
+	 * @param path  The filepath to the csv file
+	 * @param classAttr  The class attribute
+	 * @param memoryBudget  The bytes of heap for rows and count tables
+	 */
+	public static void trainOutOfCore(String path, String classAttr, long memoryBudget) {
+		
+		File directory = null;
+		try {
+			directory = Files.createTempDirectory("id3").toFile();
+			try (DiskDataset disk_dataset = DiskDataset.load(path, directory)) {
+				ID3 ID3Search = new ID3(disk_dataset.getSchema(), classAttr);
+				DTNode root = ID3Search.buildDecisionTree(disk_dataset, memoryBudget);
+				System.out.println("DECISION TREE: \n");
+				ID3Search.printHorizontal(root, "");
+			}
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+		}
+		catch (NoMatchingClassException e) {
+			System.err.print(e);
+		}
+		finally {
+			//close() deletes the column files, but a load that fails part way leaves the ones it wrote
+			if (directory != null) {
+				File[] files = directory.listFiles();
+				if (files != null) {
+					for (File file : files) {
+						file.delete();
+					}
+				}
+				directory.delete();
+			}
+		}
+	}
+	
 
 	/*
 	 * This method imports the dataset from a csv file.
@@ -68,6 +246,19 @@ public class DecisionTree {
 	 * @return   The dataset - a 2d arraylist of the csv data
 	 */
 	public static ArrayList<ArrayList<String>> parseCSV(String path) 
+	{
+		return parseCSV(path, true);
+	}
+	
+	
+	/*
+	 * This method imports the dataset from a csv file, optionally printing it.
+	 * 
+	 * @param path  The filepath to the csv file
+	 * @param printDataset  true to print the parsed dataset
+	 * @return   The dataset - a 2d arraylist of the csv data
+	 */
+	public static ArrayList<ArrayList<String>> parseCSV(String path, boolean printDataset) 
 	{  
 		//parsing the csv file 
 		Scanner scan;
@@ -94,15 +285,17 @@ public class DecisionTree {
 			scan.close();  //closes the scanner  
 			
 			//For testing csv parser, print the dataset
-			System.out.println("DATASET: ");
-			for (ArrayList<String> row : training_dataset) {
-				 for (String field : row) {
-					 System.out.print(String.format("%12s", field));
+			if (printDataset) {
+				System.out.println("DATASET: ");
+				for (ArrayList<String> row : training_dataset) {
+					 for (String field : row) {
+						 System.out.print(String.format("%12s", field));
+					 }
+					//print next row
+					 System.out.println(""); 
 				 }
-				//print next row
-				 System.out.println(""); 
-			 }
-			System.out.println("\n\n");
+				System.out.println("\n\n");
+			}
 			
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
@@ -110,6 +303,27 @@ public class DecisionTree {
 		return training_dataset;		
 	}
 	
+	
+	/*
+	 * This method prints an encoded dataset in the same layout as parseCSV
+	 * 
+	 * @param ds  The encoded dataset
+	 */
+	public static void printDataset(Dataset ds) {
+		StringBuilder out = new StringBuilder("DATASET: \n");
+		for (int i = 0; i < ds.getNumAttributes(); i++) {
+			out.append(String.format("%12s", ds.getAttributeName(i)));
+		}
+		out.append('\n');
+		for (int row = 0; row < ds.getNumRows(); row++) {
+			for (int i = 0; i < ds.getNumAttributes(); i++) {
+				out.append(String.format("%12s", ds.getValue(i, ds.getCode(i, row))));
+			}
+			out.append('\n');
+		}
+		System.out.println(out.append("\n\n"));
+	}
+	
 }
 
 
@@ -0,0 +1,302 @@
+package Q4;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/*
+ * An encoded dataset kept on disk, for training on more rows than fit in the heap.
+ *
+ * Each column's codes are written to its own file in a working directory, and only
+ * the header and value dictionaries stay in memory (as a Dataset with no rows, the
+ * schema). LevelWiseBuilder reads the columns back in blocks of rows, and keeps the
+ * node assignment of every row in one more file, so the heap holds a block of rows
+ * and the count tables of the nodes being grown, whatever the number of rows.
+ *
+ * Files hold big-endian ints, one per row. close() deletes them.
+ */
+public class DiskDataset implements LevelWiseBuilder.RowSource, Closeable {
+
+	static final int DEFAULT_BLOCK_SIZE = 1 << 16; //rows read at a time
+
+	Dataset schema; //header and dictionaries, no rows
+	int numRows;
+	File directory;
+	File[] columnFiles;
+	File assignmentFile;
+	FileChannel[] columnChannels;
+	FileChannel assignmentChannel;
+	int blockSize = DEFAULT_BLOCK_SIZE;
+	ByteBuffer buffer; //reused for every column of a block
+
+
+	/*
+	 * Constructor for column files that were already written
+	 *
+	 * @param schema - the header and dictionaries
+	 * @param numRows - the number of rows in each column file
+	 * @param directory - the working directory holding the column files
+	 */
+	DiskDataset(Dataset schema, int numRows, File directory) throws IOException {
+		this.schema = schema;
+		this.numRows = numRows;
+		this.directory = directory;
+		this.columnFiles = new File[schema.getNumAttributes()];
+		this.columnChannels = new FileChannel[columnFiles.length];
+		for (int i = 0; i < columnFiles.length; i++) {
+			columnFiles[i] = columnFile(directory, i);
+			columnChannels[i] = FileChannel.open(columnFiles[i].toPath(), StandardOpenOption.READ);
+		}
+		this.assignmentFile = new File(directory, "assignments.bin");
+		this.assignmentChannel = FileChannel.open(assignmentFile.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+	}
+
+
+	/*
+	 * Streams a csv file into column files, without holding its rows in memory
+	 *
+	 * @param path - the filepath of the csv file
+	 * @param directory - the working directory for the column files (created if needed)
+	 * @return the disk dataset
+	 * @throws IOException if the file cannot be read or the column files written
+	 */
+	public static DiskDataset load(String path, File directory) throws IOException {
+
+		directory.mkdirs();
+		ColumnFileHandler handler = new ColumnFileHandler(directory);
+		try {
+			CSVLoader.parse(Paths.get(path), handler);
+			return handler.finish();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			handler.closeStreams();
+		}
+	}
+
+
+	/*
+	 * Writes the columns of an in-memory dataset to column files
+	 *
+	 * @param ds - the encoded dataset
+	 * @param directory - the working directory for the column files (created if needed)
+	 * @return the disk dataset, sharing ds's header and dictionaries (and numeric settings)
+	 * @throws IOException if the column files cannot be written
+	 */
+	public static DiskDataset write(Dataset ds, File directory) throws IOException {
+
+		directory.mkdirs();
+		for (int i = 0; i < ds.getNumAttributes(); i++) {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(columnFile(directory, i))))) {
+				for (int code : ds.getColumn(i)) {
+					out.writeInt(code);
+				}
+			}
+		}
+		Dataset schema = new Dataset(ds.header, new int[ds.header.length][0], ds.dictionaries, 0);
+		for (int i = 0; i < ds.getNumAttributes(); i++) {
+			if (ds.isNumeric(i)) {
+				schema.setNumeric(i);
+			}
+		}
+		return new DiskDataset(schema, ds.getNumRows(), directory);
+	}
+
+
+	@Override
+	public Dataset getSchema() {
+		return this.schema;
+	}
+
+	@Override
+	public int getNumRows() {
+		return this.numRows;
+	}
+
+	@Override
+	public int getBlockSize() {
+		return this.blockSize;
+	}
+
+	//setter function for the number of rows read at a time
+	public void setBlockSize(int blockSize) {
+		this.blockSize = Math.max(1, blockSize);
+	}
+
+
+	@Override
+	public void readBlock(LevelWiseBuilder.Block block) throws IOException {
+
+		if (block.columns == null || block.assignments.length < block.length) {
+			block.columns = new int[columnChannels.length][block.length];
+			block.assignments = new int[block.length];
+		}
+		block.offset = 0;
+		for (int i = 0; i < columnChannels.length; i++) {
+			readInts(columnChannels[i], block.start, block.columns[i], block.length);
+		}
+		readInts(assignmentChannel, block.start, block.assignments, block.length);
+	}
+
+
+	@Override
+	public void writeAssignments(LevelWiseBuilder.Block block) throws IOException {
+
+		ByteBuffer bytes = buffer(block.length);
+		bytes.asIntBuffer().put(block.assignments, block.offset, block.length);
+		bytes.limit(block.length * 4);
+		long position = (long)block.start * 4;
+		while (bytes.hasRemaining()) {
+			position += assignmentChannel.write(bytes, position);
+		}
+	}
+
+
+	/*
+	 * Reads ints starting at a row of a file; ints past the end of the file read as 0
+	 *
+	 * @param channel - the file
+	 * @param row - the first row
+	 * @param out - filled with the ints
+	 * @param length - the number of ints
+	 */
+	void readInts(FileChannel channel, int row, int[] out, int length) throws IOException {
+
+		ByteBuffer bytes = buffer(length);
+		bytes.limit(length * 4);
+		long position = (long)row * 4;
+		while (bytes.hasRemaining()) {
+			int read = channel.read(bytes, position);
+			if (read < 0) {
+				while (bytes.hasRemaining()) {
+					bytes.put((byte)0);
+				}
+				break;
+			}
+			position += read;
+		}
+		bytes.flip();
+		bytes.asIntBuffer().get(out, 0, length);
+	}
+
+
+	//helper function for the shared byte buffer, cleared and large enough for length ints
+	ByteBuffer buffer(int length) {
+		if (buffer == null || buffer.capacity() < length * 4) {
+			buffer = ByteBuffer.allocateDirect(Math.max(length, blockSize) * 4);
+		}
+		buffer.clear();
+		return buffer;
+	}
+
+	//helper function for the file of a column
+	static File columnFile(File directory, int attr) {
+		return new File(directory, "column" + attr + ".bin");
+	}
+
+
+	//closes the files and deletes them
+	@Override
+	public void close() throws IOException {
+		for (FileChannel channel : columnChannels) {
+			channel.close();
+		}
+		assignmentChannel.close();
+		for (File file : columnFiles) {
+			file.delete();
+		}
+		assignmentFile.delete();
+	}
+
+
+	/*
+	 * FieldHandler that encodes each field and appends its code to the column's file
+	 */
+	static class ColumnFileHandler implements CSVLoader.FieldHandler {
+
+		File directory;
+		ArrayList<String> header = new ArrayList<String>();
+		ByteDictionary[] dictionaries;
+		DataOutputStream[] streams;
+		int numRows;
+		byte[] empty = new byte[0];
+
+		ColumnFileHandler(File directory) {
+			this.directory = directory;
+		}
+
+		@Override
+		public void field(int column, byte[] buf, int off, int len) {
+			if (dictionaries == null) {
+				header.add(new String(buf, off, len, StandardCharsets.UTF_8));
+			}
+			else if (column < streams.length) {
+				write(column, dictionaries[column].getOrAdd(buf, off, len));
+			}
+		}
+
+		@Override
+		public void endRecord(int numFields) {
+			if (dictionaries == null) { //header done, open the column files
+				dictionaries = new ByteDictionary[header.size()];
+				streams = new DataOutputStream[header.size()];
+				for (int i = 0; i < dictionaries.length; i++) {
+					dictionaries[i] = new ByteDictionary();
+					try {
+						streams[i] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(columnFile(directory, i)), 1 << 16));
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+				return;
+			}
+			//short rows are padded with empty values
+			for (int i = numFields; i < streams.length; i++) {
+				write(i, dictionaries[i].getOrAdd(empty, 0, 0));
+			}
+			numRows++;
+		}
+
+		//helper function to append a code to a column file
+		void write(int column, int code) {
+			try {
+				streams[column].writeInt(code);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		//flushes the column files and opens them as a disk dataset
+		DiskDataset finish() throws IOException {
+			if (dictionaries == null) { //empty file or header only
+				endRecord(header.size());
+			}
+			closeStreams();
+			ArrayList<ArrayList<String>> values = new ArrayList<ArrayList<String>>();
+			for (ByteDictionary dictionary : dictionaries) {
+				values.add(dictionary.getValues());
+			}
+			String[] names = header.toArray(new String[header.size()]);
+			return new DiskDataset(new Dataset(names, new int[names.length][0], values, 0), numRows, directory);
+		}
+
+		void closeStreams() throws IOException {
+			if (streams == null) return;
+			for (DataOutputStream stream : streams) {
+				if (stream != null) stream.close();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,253 @@
+package Q4;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * A random forest: an ensemble of ID3 trees whose majority vote overfits less
+ * than any one tree.
+ *
+ * Each tree is trained on a bootstrap sample of the rows (drawn with replacement)
+ * and chooses the split at each node from a random subset of the attributes
+ * (ID3.setRandomAttributeSubset). The samples are row index arrays over the one
+ * shared, read-only encoded dataset, so no rows are copied: a tree's sample lives
+ * only while the tree is built, and the forest keeps just the compiled trees.
+ *
+ * Trees are built concurrently on a fork/join pool, one task per tree, and rows
+ * are predicted concurrently in blocks, each block walked through every tree.
+ */
+public class Forest {
+
+	static final int PREDICT_BLOCK_ROWS = 4096; //rows per prediction task
+
+	Dataset dataset; //the shared training dataset
+	String classAttr;
+	int classIndex;
+	int numClasses;
+	int numTrees;
+	int attributeSubset; //the attributes each node chooses from
+	long[] treeSeeds; //the seed of each tree's sample and attribute subsets
+	int maxDepth = Integer.MAX_VALUE; //stopping rules of every tree, as ID3.setStoppingRules
+	int minRows = 0;
+	DTNode[] roots;
+	CompiledTree[] trees;
+
+
+	/*
+	 * Constructor for a forest over an encoded dataset
+	 *
+	 * @param dataset - the encoded training dataset, shared by every tree (it must not change while building)
+	 * @param classAttribute - the class attribute
+	 * @param numTrees - the number of trees
+	 * @param attributeSubset - the attributes each node chooses its split from, 0 for the square root of the number of attributes
+	 * @param seed - the seed of the bootstrap samples and attribute subsets
+	 * @throws NoMatchingClassException if the class attribute is not in the dataset
+	 */
+	public Forest(Dataset dataset, String classAttribute, int numTrees, int attributeSubset, long seed)
+	throws NoMatchingClassException {
+
+		this.dataset = dataset;
+		this.classAttr = classAttribute;
+		this.classIndex = dataset.getAttributeIndex(classAttribute);
+		if (this.classIndex < 0) throw new NoMatchingClassException("no class in dataset matches class attribute entered on the command line");
+		this.numClasses = dataset.getCardinality(classIndex);
+		this.numTrees = numTrees;
+		this.attributeSubset = attributeSubset > 0 ? attributeSubset
+				: Math.max(1, (int)Math.round(Math.sqrt(dataset.getNumAttributes() - 1)));
+
+		//a seed per tree, so a tree does not depend on which thread builds it
+		SplittableRandom random = new SplittableRandom(seed);
+		this.treeSeeds = new long[numTrees];
+		for (int t = 0; t < numTrees; t++) {
+			treeSeeds[t] = random.nextLong();
+		}
+	}
+
+
+	//sets the depth and row stopping rules of every tree (see ID3.setStoppingRules); trees are grown fully by default
+	public void setStoppingRules(int maxDepth, int minRows) {
+		this.maxDepth = maxDepth;
+		this.minRows = minRows;
+	}
+
+
+	/*
+	 * Builds the trees
+	 *
+	 * @param pool - the pool the trees are built on, one task per tree
+	 */
+	public void build(ForkJoinPool pool) {
+		roots = new DTNode[numTrees];
+		trees = new CompiledTree[numTrees];
+		pool.invoke(new TreeTask(0, numTrees));
+	}
+
+
+	//builds trees [from, to), splitting the range in half until it is one tree
+	class TreeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		int from;
+		int to;
+
+		TreeTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new TreeTask(from, mid), new TreeTask(mid, to));
+				return;
+			}
+			buildTree(from);
+		}
+	}
+
+
+	//builds one tree on its bootstrap sample
+	void buildTree(int t) {
+
+		SplittableRandom random = new SplittableRandom(treeSeeds[t]);
+		int numRows = dataset.getNumRows();
+		int[] sample = new int[numRows];
+		for (int i = 0; i < numRows; i++) {
+			sample[i] = random.nextInt(numRows);
+		}
+
+		ID3 tree;
+		try {
+			tree = new ID3(dataset, classAttr);
+		} catch (NoMatchingClassException e) {
+			throw new IllegalStateException(e); //checked in the constructor
+		}
+		tree.setRandomAttributeSubset(attributeSubset, random.nextLong());
+		tree.setStoppingRules(maxDepth, minRows, 0, Integer.MAX_VALUE);
+		roots[t] = tree.buildDecisionTree(new ArrayList<String>(), dataset, sample, 0, numRows);
+		trees[t] = new CompiledTree(roots[t], dataset, classAttr);
+	}
+
+
+	/*
+	 * Predicts the class of every row of an encoded dataset by majority vote of the trees.
+	 * Ties go to the lowest class code, as in ID3.majorityClass.
+	 *
+	 * @param ds - the encoded dataset (it must have every attribute the trees split on)
+	 * @param out - filled with the class code (or -1 if no tree has an edge for the row) of each row
+	 * @param pool - the pool the row blocks are predicted on
+	 */
+	public void predictBatch(Dataset ds, int[] out, ForkJoinPool pool) {
+		int[][][] columns = new int[numTrees][][];
+		int[][][] translations = new int[numTrees][][];
+		for (int t = 0; t < numTrees; t++) {
+			columns[t] = new int[trees[t].header.length][];
+			translations[t] = trees[t].translate(ds, columns[t]);
+		}
+		pool.invoke(new VoteTask(columns, translations, 0, ds.getNumRows(), out));
+	}
+
+
+	//predicts rows [from, to), splitting the range until it is one block
+	class VoteTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		int[][][] columns;
+		int[][][] translations;
+		int from;
+		int to;
+		int[] out;
+
+		VoteTask(int[][][] columns, int[][][] translations, int from, int to, int[] out) {
+			this.columns = columns;
+			this.translations = translations;
+			this.from = from;
+			this.to = to;
+			this.out = out;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > PREDICT_BLOCK_ROWS) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new VoteTask(columns, translations, from, mid, out), new VoteTask(columns, translations, mid, to, out));
+				return;
+			}
+
+			//every tree's predictions for the block, then the votes of each row
+			int numRows = to - from;
+			int[] predictions = new int[numRows];
+			int[] votes = new int[numRows * numClasses];
+			for (int t = 0; t < numTrees; t++) {
+				trees[t].walk(columns[t], translations[t], null, from, to, predictions, 0);
+				for (int r = 0; r < numRows; r++) {
+					if (predictions[r] >= 0) votes[r * numClasses + predictions[r]]++;
+				}
+			}
+			for (int r = 0; r < numRows; r++) {
+				int best = -1;
+				int bestVotes = 0;
+				for (int c = 0; c < numClasses; c++) {
+					if (votes[r * numClasses + c] > bestVotes) {
+						best = c;
+						bestVotes = votes[r * numClasses + c];
+					}
+				}
+				out[from + r] = best;
+			}
+		}
+	}
+
+
+	/*
+	 * Tests the forest on an encoded dataset, as ID3.testSolution does for one tree
+	 *
+	 * @param ds - the encoded dataset, with the class attribute
+	 * @param pool - the pool the rows are predicted on
+	 * @return the number of rows classified correctly
+	 */
+	public int countCorrect(Dataset ds, ForkJoinPool pool) {
+		int[] predictions = new int[ds.getNumRows()];
+		predictBatch(ds, predictions, pool);
+
+		//translate the dataset's class codes to the forest's
+		int testClassIndex = ds.getAttributeIndex(classAttr);
+		int[] classCodes = new int[ds.getCardinality(testClassIndex)];
+		for (int code = 0; code < classCodes.length; code++) {
+			classCodes[code] = dataset.encode(classIndex, ds.getValue(testClassIndex, code));
+		}
+		int[] classColumn = ds.getColumn(testClassIndex);
+		int correct = 0;
+		for (int row = 0; row < predictions.length; row++) {
+			if (predictions[row] >= 0 && predictions[row] == classCodes[classColumn[row]]) {
+				correct++;
+			}
+		}
+		return correct;
+	}
+
+
+	//getter function for the class value of a class code
+	public String getClassLabel(int classCode) {
+		return dataset.getValue(classIndex, classCode);
+	}
+
+	//getter function for the root of each tree
+	public DTNode[] getRoots() {
+		return roots;
+	}
+
+	//getter function for the compiled trees
+	public CompiledTree[] getTrees() {
+		return trees;
+	}
+
+	//getter function for the number of trees
+	public int getNumTrees() {
+		return numTrees;
+	}
+
+}
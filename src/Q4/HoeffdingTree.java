@@ -0,0 +1,309 @@
+package Q4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+ * An incremental decision tree that learns from one row at a time (a Hoeffding
+ * tree, or VFDT), for data that arrives as a stream.
+ *
+ * Each leaf keeps attribute value x class counts (its LeafStatistics, held by the
+ * tree rather than the node) of the rows that reached it since it was made. Every
+ * gracePeriod rows the leaf scores its candidate attributes with the same information
+ * gain as ID3, and it is split on the best one once the Hoeffding bound shows that, with probability 1 - delta, the
+ * best attribute would stay ahead of the runner-up on the full stream:
+ *   gain(best) - gain(second) > epsilon = sqrt(R^2 ln(1/delta) / 2n)
+ * where n is the number of rows at the leaf and R is the range of the gain. ID3 takes
+ * each entropy in a base of the number of classes present, so a child with fewer
+ * classes than its parent can have a higher entropy and the gain spans [-1, 1]:
+ * R is 2. When the two are too close to tell apart and epsilon has fallen below
+ * tieThreshold, the leaf is split on the best one anyway.
+ *
+ * Learning a row walks it to its leaf and updates that leaf's counts, so it takes
+ * O(depth + attributes); each internal node's attribute index is kept when it is
+ * split, so the walk itself is O(depth). The tree is a normal DTNode tree that can be printed or
+ * used to predict between updates; learning and predicting may run on different
+ * threads. Values are treated as categorical (numeric attributes are not split on
+ * thresholds).
+ */
+public class HoeffdingTree {
+
+	static final double GAIN_RANGE = 2; //R, the range of the information gain, which lies in [-1, 1]
+
+	String[] header;
+	int classIndex;
+	double delta; //the allowed chance of splitting on an attribute that is not the best
+	int gracePeriod; //rows a leaf learns between attempts to split it
+	double tieThreshold; //epsilon below which close attributes count as tied
+	DTNode root;
+	long numRows; //rows learned so far
+	ArrayList<HashMap<String, Integer>> codes = new ArrayList<HashMap<String, Integer>>(); //value -> code for each attribute
+	ArrayList<ArrayList<String>> values = new ArrayList<ArrayList<String>>(); //values[attribute][code] = value
+	IdentityHashMap<DTNode, LeafStatistics> leafStatistics = new IdentityHashMap<DTNode, LeafStatistics>(); //the counts of each leaf, which it may later be split on
+	IdentityHashMap<DTNode, Integer> splitAttributes = new IdentityHashMap<DTNode, Integer>(); //the column index each internal node splits on
+	ReentrantReadWriteLock lock = new ReentrantReadWriteLock(); //learning writes, predicting reads
+
+
+	/*
+	 * Constructor for an empty tree
+	 *
+	 * @param header - the attribute names, in the column order of the rows
+	 * @param classAttribute - the class attribute
+	 * @param delta - the allowed chance of a wrong split, e.g. 1e-7
+	 * @param gracePeriod - the rows a leaf learns between attempts to split it, e.g. 200
+	 * @param tieThreshold - the bound below which close attributes are taken as tied, e.g. 0.05
+	 * @throws NoMatchingClassException if the class attribute is not in the header
+	 */
+	public HoeffdingTree(ArrayList<String> header, String classAttribute, double delta, int gracePeriod, double tieThreshold)
+	throws NoMatchingClassException {
+
+		this.header = header.toArray(new String[header.size()]);
+		this.classIndex = header.indexOf(classAttribute);
+		if (this.classIndex < 0) throw new NoMatchingClassException("no class in dataset matches class attribute entered on the command line");
+		this.delta = delta;
+		this.gracePeriod = Math.max(1, gracePeriod);
+		this.tieThreshold = tieThreshold;
+		for (int i = 0; i < this.header.length; i++) {
+			codes.add(new HashMap<String, Integer>());
+			values.add(new ArrayList<String>());
+		}
+		this.root = newLeaf(null, new ArrayList<String>(), "");
+	}
+
+
+	/*
+	 * Learns one row: walks it to its leaf, counts it there, and tries to split the
+	 * leaf if it has learned gracePeriod rows since the last try
+	 *
+	 * @param row - the row values in header order, including the class
+	 */
+	public void learn(ArrayList<String> row) {
+
+		lock.writeLock().lock();
+		try {
+			//short rows are padded with empty values
+			String[] rowValues = new String[header.length];
+			int[] rowCodes = new int[header.length];
+			for (int i = 0; i < header.length; i++) {
+				rowValues[i] = i < row.size() ? row.get(i) : "";
+				rowCodes[i] = code(i, rowValues[i]);
+			}
+			int classCode = rowCodes[classIndex];
+
+			//walk to the leaf; a value the split never saw gets a new leaf
+			DTNode node = root;
+			while (node.getType().contentEquals("internal")) {
+				int attr = splitAttributes.get(node);
+				DTNode child = node.children.get(rowValues[attr]);
+				if (child == null) {
+					child = newLeaf(node, childPath(node), rowValues[classIndex]);
+					node.addChildNode(rowValues[attr], child);
+				}
+				node = child;
+			}
+
+			LeafStatistics stats = leafStatistics.get(node);
+			stats.add(rowCodes, classCode);
+			node.setValue(values.get(classIndex).get(ID3.majorityClass(stats.classCounts)));
+			if (stats.total - stats.lastAttempt >= gracePeriod) {
+				stats.lastAttempt = stats.total;
+				attemptSplit(node);
+			}
+			numRows++;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+
+	/*
+	 * Learns every row of a dataset in order
+	 *
+	 * @param dataset - the 2d arraylist dataset, with the header as row 0 (skipped)
+	 */
+	public void learnAll(ArrayList<ArrayList<String>> dataset) {
+		for (int r = 1; r < dataset.size(); r++) {
+			learn(dataset.get(r));
+		}
+	}
+
+
+	/*
+	 * Predicts the class of a row with the tree as it is now
+	 *
+	 * @param row - the row values in header order (the class value is not used)
+	 * @return the predicted class value, or null if the row has a value the tree has no edge for
+	 */
+	public String predict(ArrayList<String> row) {
+
+		lock.readLock().lock();
+		try {
+			DTNode node = root;
+			while (node != null && node.getType().contentEquals("internal")) {
+				int attr = splitAttributes.get(node);
+				node = node.getChild(attr < row.size() ? row.get(attr) : "");
+			}
+			return node == null ? null : node.getValue();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+
+	/*
+	 * Scores the candidate attributes of a leaf and splits it on the best one if the
+	 * Hoeffding bound (or a tie) allows
+	 *
+	 * @param leaf - the leaf
+	 */
+	void attemptSplit(DTNode leaf) {
+
+		LeafStatistics stats = leafStatistics.get(leaf);
+		int majority = ID3.majorityClass(stats.classCounts);
+		if (stats.classCounts[majority] == stats.total) return; //one class, nothing to separate
+
+		//the best two gains, in header order so ties go to the first attribute;
+		//not splitting (gain 0) is always a candidate for the runner-up
+		int numClasses = values.get(classIndex).size();
+		int bestAttr = -1;
+		double best = 0;
+		double second = 0;
+		for (int attr = 0; attr < header.length; attr++) {
+			if (stats.counts[attr] == null) continue;
+			double gain = new ContingencyTable(stats.table(attr, numClasses), stats.counts[attr].length, numClasses).informationGain();
+			if (gain > best) {
+				second = best;
+				best = gain;
+				bestAttr = attr;
+			}
+			else if (gain > second) {
+				second = gain;
+			}
+		}
+		if (bestAttr < 0) return;
+
+		double epsilon = Math.sqrt(GAIN_RANGE * GAIN_RANGE * Math.log(1 / delta) / (2.0 * stats.total));
+		if (best - second > epsilon || epsilon < tieThreshold) {
+			split(leaf, bestAttr);
+		}
+	}
+
+
+	/*
+	 * Turns a leaf into an internal node on an attribute, with a new leaf for each value
+	 * it has seen; each new leaf starts as the majority class of that value's rows
+	 *
+	 * @param leaf - the leaf
+	 * @param attr - the split attribute
+	 */
+	void split(DTNode leaf, int attr) {
+
+		LeafStatistics stats = leafStatistics.remove(leaf);
+		leaf.setType("internal");
+		leaf.setValue(header[attr]);
+		splitAttributes.put(leaf, attr);
+		ArrayList<String> path = childPath(leaf);
+		int[][] valueCounts = stats.counts[attr];
+		for (int code = 0; code < valueCounts.length; code++) {
+			if (valueCounts[code] == null) continue;
+			DTNode child = newLeaf(leaf, path, values.get(classIndex).get(ID3.majorityClass(valueCounts[code])));
+			leaf.addChildNode(values.get(attr).get(code), child);
+		}
+	}
+
+
+	//helper function to create a leaf with empty statistics
+	DTNode newLeaf(DTNode parent, ArrayList<String> path, String classValue) {
+		DTNode leaf = new DTNode("leaf", classValue, path);
+		leaf.setParent(parent);
+		leafStatistics.put(leaf, new LeafStatistics(header.length, classIndex, path, header));
+		return leaf;
+	}
+
+	//helper function for the path of a node's children
+	ArrayList<String> childPath(DTNode node) {
+		ArrayList<String> path = new ArrayList<String>(node.getPath());
+		path.add(node.getValue());
+		return path;
+	}
+
+	//helper function to encode a value, adding it to the attribute's codes if it is new
+	int code(int attr, String value) {
+		Integer code = codes.get(attr).get(value);
+		if (code == null) {
+			code = codes.get(attr).size();
+			codes.get(attr).put(value, code);
+			values.get(attr).add(value);
+		}
+		return code;
+	}
+
+
+	//getter function for the root of the tree
+	public DTNode getRoot() {
+		return this.root;
+	}
+
+	//getter function for the number of rows learned
+	public long getNumRows() {
+		return this.numRows;
+	}
+
+
+	/*
+	 * The sufficient statistics of a leaf: the class counts and, for each candidate
+	 * attribute, the class counts of each of its values, grown as new values and classes appear
+	 */
+	static class LeafStatistics {
+
+		int[] classCounts = new int[0];
+		int total; //rows counted at the leaf
+		int lastAttempt; //total at the last split attempt
+		int[][][] counts; //counts[attribute][value code] = class counts; null for the class and attributes on the path
+
+		LeafStatistics(int numAttributes, int classIndex, ArrayList<String> path, String[] header) {
+			this.counts = new int[numAttributes][][];
+			for (int attr = 0; attr < numAttributes; attr++) {
+				if (attr != classIndex && !path.contains(header[attr])) {
+					counts[attr] = new int[0][];
+				}
+			}
+		}
+
+		//counts one row
+		void add(int[] rowCodes, int classCode) {
+			classCounts = grow(classCounts, classCode);
+			classCounts[classCode]++;
+			total++;
+			for (int attr = 0; attr < counts.length; attr++) {
+				if (counts[attr] == null) continue;
+				int code = rowCodes[attr];
+				if (code >= counts[attr].length) {
+					counts[attr] = Arrays.copyOf(counts[attr], code + 1);
+				}
+				counts[attr][code] = grow(counts[attr][code] == null ? new int[0] : counts[attr][code], classCode);
+				counts[attr][code][classCode]++;
+			}
+		}
+
+		//the value x class table of an attribute, counts[value * numClasses + class]
+		int[] table(int attr, int numClasses) {
+			int[][] valueCounts = counts[attr];
+			int[] table = new int[valueCounts.length * numClasses];
+			for (int code = 0; code < valueCounts.length; code++) {
+				if (valueCounts[code] == null) continue;
+				System.arraycopy(valueCounts[code], 0, table, code * numClasses, valueCounts[code].length);
+			}
+			return table;
+		}
+
+		//helper function to make room for a class code
+		static int[] grow(int[] classCounts, int classCode) {
+			return classCode < classCounts.length ? classCounts : Arrays.copyOf(classCounts, classCode + 1);
+		}
+	}
+
+}
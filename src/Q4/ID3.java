@@ -1,7 +1,16 @@
 package Q4;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /*
  * This class handles the creation of a decision tree using the 
@@ -20,7 +29,19 @@ public class ID3 {
 		String classAttr;
 		int classIndex;
 		ArrayList<ArrayList<String>> training_ds; //the full trianing dataset 	
+		Dataset dataset; //the encoded training dataset, when built from a Dataset
 		DTNode root; //holds root of decision tree
+		ForkJoinPool splitPool; //pool for scoring split attributes concurrently, null to score them sequentially
+		int minParallelSplitRows; //nodes with fewer rows are scored sequentially even with a pool
+		TreeListener listener; //receives build metrics, null for none
+		
+		//stopping rules (pre-pruning) for the encoded builds; the defaults never stop a split
+		int maxDepth = Integer.MAX_VALUE; //nodes at this depth are leaves (the root is at depth 0)
+		int minRows = 0; //nodes with fewer rows are leaves
+		double minGain = 0; //splits with less gain are not made (a split always needs a positive gain)
+		int maxNodes = Integer.MAX_VALUE; //splits that would take the tree past this many nodes are not made
+		int attributeSubset; //the candidates scored at each node are a random subset of this size, 0 to score them all
+		Random subsetRandom; //draws the random subsets
 		
 	
 		/*
@@ -54,6 +75,886 @@ public class ID3 {
 		}
 		
 		
+		/*
+		 * Constructor using the class Attribute and an encoded dataset for 
+		 * building the decision tree
+		 * 
+		 * @param  dataset  the encoded dataset being used to build the decision tree
+		 * @param  classAttribute   the String class attribute that the decision tree is classifying
+		 * @throws NoMatchingClassException
+		 */
+		public ID3(Dataset dataset, String classAttribute) 
+		throws NoMatchingClassException {
+			
+			this.classAttr = classAttribute;
+			this.dataset = dataset;
+			this.classIndex = dataset.getAttributeIndex(classAttribute);
+			if (this.classIndex < 0) throw new NoMatchingClassException("no class in dataset matches class attribute entered on the command line");
+		}
+		
+		
+		/*
+		 * This function counts the class values for a subset of rows of an encoded dataset
+		 * 
+		 * @param ds the encoded dataset
+		 * @param rows the indices of the rows being counted
+		 * @return an array of counts indexed by class value code
+		 */
+		public int[] getClassValCounts(Dataset ds, int[] rows) {
+			return getClassValCounts(ds, rows, 0, rows.length);
+		}
+		
+		
+		//overloaded function getClassValCounts() for the range rows[from, to) of a shared row index array
+		public int[] getClassValCounts(Dataset ds, int[] rows, int from, int to) {
+			
+			int[] classColumn = ds.getColumn(this.classIndex);
+			int[] counts = new int[ds.getCardinality(this.classIndex)];
+			for (int i = from; i < to; i++) {
+				counts[classColumn[rows[i]]]++;
+			}
+			if (listener != null) listener.rowsScanned(to - from);
+			return counts;
+		}
+		
+		
+		/*
+		 * This function calculates the entropy of a subset of rows of an encoded dataset
+		 * 
+		 * @param ds the encoded dataset
+		 * @param rows the indices of the rows
+		 * @return a double of the entropy value
+		 */
+		public double calculateEntropy(Dataset ds, int[] rows) {
+			int[] counts = getClassValCounts(ds, rows);
+			return ContingencyTable.entropy(counts, 0, counts.length, rows.length);
+		}
+		
+		
+		/*
+		 * This function splits a subset of rows of an encoded dataset on a given attribute.
+		 * 
+		 * @param attribute - the attribute being split on
+		 * @param ds - the encoded dataset
+		 * @param rows - the indices of the rows being split
+		 * @return the row indices for each attribute value, indexed by value code (null where a value does not occur)
+		 */
+		public int[][] splitDataset(String attribute, Dataset ds, int[] rows) {
+			
+			int attrIndex = ds.getAttributeIndex(attribute);
+			int[] column = ds.getColumn(attrIndex);
+			
+			//count first so each split array is allocated at its final size
+			int[] counts = new int[ds.getCardinality(attrIndex)];
+			for (int row : rows) {
+				counts[column[row]]++;
+			}
+			int[][] splits = new int[counts.length][];
+			for (int code = 0; code < counts.length; code++) {
+				if (counts[code] > 0) {
+					splits[code] = new int[counts[code]];
+					counts[code] = 0; //reused as the fill position
+				}
+			}
+			for (int row : rows) {
+				int code = column[row];
+				splits[code][counts[code]++] = row;
+			}
+			if (listener != null) {
+				int numParts = 0;
+				for (int[] split : splits) {
+					if (split != null) numParts++;
+				}
+				listener.splitAllocated(numParts, rows.length);
+			}
+			return splits;
+		}
+		
+		
+		/*
+		 * This function splits the range rows[from, to) of a shared row index array in place,
+		 * so that the rows for each value of the attribute are contiguous, in value code order.
+		 * Nothing is copied; each child only needs the offset and length of its part of the range.
+		 * 
+		 * @param attrIndex - the column index of the attribute being split on
+		 * @param ds - the encoded dataset
+		 * @param rows - the shared row index array
+		 * @param from - the first position of the range (inclusive)
+		 * @param to - the last position of the range (exclusive)
+		 * @return bounds - the rows for value code c are rows[bounds[c], bounds[c+1])
+		 */
+		public int[] partitionRows(int attrIndex, Dataset ds, int[] rows, int from, int to) {
+			
+			int[] column = ds.getColumn(attrIndex);
+			int cardinality = ds.getCardinality(attrIndex);
+			
+			int[] bounds = new int[cardinality + 1];
+			for (int i = from; i < to; i++) {
+				bounds[column[rows[i]] + 1]++;
+			}
+			bounds[0] = from;
+			for (int code = 0; code < cardinality; code++) {
+				bounds[code + 1] += bounds[code];
+			}
+			
+			//swap each row into the next free slot of its value's part of the range
+			//until every part only holds rows with its own value (american flag sort)
+			int[] next = new int[cardinality];
+			System.arraycopy(bounds, 0, next, 0, cardinality);
+			for (int code = 0; code < cardinality; code++) {
+				while (next[code] < bounds[code + 1]) {
+					int row = rows[next[code]];
+					int rowCode = column[row];
+					if (rowCode == code) {
+						next[code]++;
+					}
+					else {
+						rows[next[code]] = rows[next[rowCode]];
+						rows[next[rowCode]++] = row;
+					}
+				}
+			}
+			if (listener != null) listener.rowsScanned(to - from);
+			return bounds;
+		}
+		
+		
+		/*
+		 * This function splits the range rows[from, to) of a shared row index array in place on
+		 * a numeric threshold, with the rows whose value is <= threshold first
+		 * 
+		 * @param attrIndex - the column index of the numeric attribute
+		 * @param threshold - the split threshold
+		 * @param ds - the encoded dataset
+		 * @param rows - the shared row index array
+		 * @param from - the first position of the range (inclusive)
+		 * @param to - the last position of the range (exclusive)
+		 * @return the position of the first row above the threshold
+		 */
+		public int partitionThreshold(int attrIndex, double threshold, Dataset ds, int[] rows, int from, int to) {
+			
+			int[] column = ds.getColumn(attrIndex);
+			double[] values = ds.codeValues[attrIndex];
+			int lo = from;
+			int hi = to - 1;
+			while (lo <= hi) {
+				if (values[column[rows[lo]]] <= threshold) {
+					lo++;
+				}
+				else {
+					int row = rows[lo];
+					rows[lo] = rows[hi];
+					rows[hi--] = row;
+				}
+			}
+			if (listener != null) listener.rowsScanned(to - from);
+			return lo;
+		}
+		
+		
+		/*
+		 * calculates the information gain for a given attribute over a subset of rows of an encoded dataset
+		 * 
+		 * @param attribute is the attribute for calculating the information gain
+		 * @param ds is the encoded dataset
+		 * @param rows are the indices of the rows on which information gain is calculated
+		 * @return infoGain the calculated information gain based on entropy (of the best threshold for a numeric attribute)
+		 */
+		public double calculateInformationGain(String attribute, Dataset ds, int[] rows) {
+			return scoreAttribute(ds.getAttributeIndex(attribute), ds, rows, 0, rows.length, new ContingencyTable[ds.getNumAttributes()]).gain;
+		}
+		
+		
+		/*
+		 * Builds the attribute value x class count table for one attribute in a single scan
+		 * 
+		 * @param attrIndex is the column index of the attribute
+		 * @param ds is the encoded dataset
+		 * @param rows is the row index array
+		 * @param from is the first position of the rows being counted (inclusive)
+		 * @param to is the last position of the rows being counted (exclusive)
+		 * @return the filled count table
+		 */
+		public ContingencyTable countTable(int attrIndex, Dataset ds, int[] rows, int from, int to) {
+			if (listener != null) listener.rowsScanned(to - from);
+			return ContingencyTable.count(ds.getColumn(attrIndex), ds.getColumn(this.classIndex), rows, from, to,
+					ds.getCardinality(attrIndex), ds.getCardinality(this.classIndex));
+		}
+		
+		
+		/*
+		 * choose best split attribute for a subset of rows of an encoded dataset
+		 * 
+		 * @param ds - the encoded dataset
+		 * @param rows - the indices of the rows to find the best split for
+		 * @param path - the path up until the current node, used to avoid repeating splits
+		 * @return String maxAttribute - the attribute with the highest information gain, or "" if no attribute has a positive gain
+		 */
+		public String chooseBestSplit(Dataset ds, int[] rows, ArrayList<String> path) {
+			return chooseBestSplit(ds, rows, 0, rows.length, path);
+		}
+		
+		
+		//overloaded function chooseBestSplit() for the range rows[from, to) of a shared row index array
+		public String chooseBestSplit(Dataset ds, int[] rows, int from, int to, ArrayList<String> path) {
+			Split best = findBestSplit(ds, rows, from, to, path);
+			return best.attribute < 0 ? "" : ds.getAttributeName(best.attribute);
+		}
+		
+		
+		/*
+		 * Finds the best split for the range rows[from, to) of a shared row index array.
+		 * Categorical attributes already on the path are skipped; numeric attributes can be
+		 * split again below a threshold split on the same attribute.
+		 * 
+		 * @param ds - the encoded dataset
+		 * @param rows - the shared row index array
+		 * @param from - the first position of the node's rows (inclusive)
+		 * @param to - the last position of the node's rows (exclusive)
+		 * @param path - the path up until the current node
+		 * @return the split with the highest information gain; its attribute is -1 if no attribute has a positive gain
+		 */
+		public Split findBestSplit(Dataset ds, int[] rows, int from, int to, ArrayList<String> path) {
+			return findBestSplit(ds, rows, from, to, path, new ContingencyTable[ds.getNumAttributes()]);
+		}
+		
+		
+		/*
+		 * Overloaded function findBestSplit() that keeps the node's count tables: tables[attr] is
+		 * used if the caller already has it (e.g. derived from the parent's), and is otherwise
+		 * counted and stored there, for every categorical candidate
+		 */
+		Split findBestSplit(Dataset ds, int[] rows, int from, int to, ArrayList<String> path, ContingencyTable[] tables) {
+			
+			long start = System.nanoTime();
+			TreeEvents.ChooseSplit event = new TreeEvents.ChooseSplit();
+			event.begin();
+			
+			//the candidate attributes, in header order
+			int[] candidates = new int[ds.getNumAttributes()];
+			int numCandidates = 0;
+			for (int i = 0; i < ds.getNumAttributes(); i++) {
+				if (!(!ds.isNumeric(i) && path.contains(ds.getAttributeName(i))) && i != this.classIndex) {
+					candidates[numCandidates++] = i;
+				}
+			}
+			
+			//score a random subset of the candidates, still in header order, for the trees of a forest
+			if (this.attributeSubset > 0 && numCandidates > this.attributeSubset) {
+				for (int k = 0; k < this.attributeSubset; k++) {
+					int pick = k + this.subsetRandom.nextInt(numCandidates - k);
+					int swap = candidates[k];
+					candidates[k] = candidates[pick];
+					candidates[pick] = swap;
+				}
+				numCandidates = this.attributeSubset;
+				Arrays.sort(candidates, 0, numCandidates);
+			}
+			
+			Split[] splits = new Split[numCandidates];
+			if (this.splitPool != null && numCandidates > 1 && to - from >= this.minParallelSplitRows) {
+				AttributeGainTask task = new AttributeGainTask(ds, rows, from, to, candidates, splits, tables, 0, numCandidates);
+				if (ForkJoinTask.getPool() == this.splitPool) {
+					task.invoke(); //already running in the split pool, e.g. from a parallel build on it
+				}
+				else {
+					this.splitPool.invoke(task);
+				}
+			}
+			else {
+				for (int k = 0; k < numCandidates; k++) {
+					splits[k] = scoreAttribute(candidates[k], ds, rows, from, to, tables);
+				}
+			}
+			
+			//pick the max in header order so ties go to the first attribute, whichever way the gains were scored
+			Split best = new Split(-1, 0, Double.NaN);
+			for (int k = 0; k < numCandidates; k++) {
+				if (splits[k].gain > best.gain) {
+					best = splits[k];
+				}
+			}
+			
+			event.end();
+			if (event.shouldCommit()) {
+				event.depth = path.size();
+				event.rows = to - from;
+				event.candidates = numCandidates;
+				event.attribute = best.attribute < 0 ? null : ds.getAttributeName(best.attribute);
+				event.gain = best.gain;
+				event.commit();
+			}
+			if (listener != null) listener.splitChosen(path.size(), to - from, numCandidates, best, System.nanoTime() - start);
+			return best;
+		}
+		
+		
+		/*
+		 * Scores one candidate attribute for a node: the information gain of a branch per value
+		 * for a categorical attribute, or of the best threshold for a numeric one. A categorical
+		 * attribute's count table is taken from tables[attrIndex] if it is there, or else counted
+		 * and stored there.
+		 */
+		Split scoreAttribute(int attrIndex, Dataset ds, int[] rows, int from, int to, ContingencyTable[] tables) {
+			if (ds.isNumeric(attrIndex)) {
+				if (listener != null) listener.rowsScanned(to - from);
+				return ThresholdSearch.bestThreshold(ds, attrIndex, this.classIndex, rows, from, to);
+			}
+			if (tables[attrIndex] == null) {
+				tables[attrIndex] = countTable(attrIndex, ds, rows, from, to);
+			}
+			return new Split(attrIndex, tables[attrIndex].informationGain(), Double.NaN);
+		}
+		
+		
+		/*
+		 * Turns on scoring the candidate attributes of a node concurrently in chooseBestSplit.
+		 * Nodes with fewer rows than minRows are still scored sequentially, since the
+		 * task overhead is not worth it for them. Builds running in another pool (a Forest
+		 * or CrossValidation task, or the common pool) still score on this one.
+		 * 
+		 * @param pool - the pool to score attributes on, or null to always score sequentially
+		 * @param minRows - the smallest node (in rows) that is scored in parallel
+		 */
+		public void setParallelSplitEvaluation(ForkJoinPool pool, int minRows) {
+			this.splitPool = pool;
+			this.minParallelSplitRows = minRows;
+		}
+		
+		
+		/*
+		 * Makes each node choose its split from a random subset of the candidate attributes,
+		 * as the trees of a random forest do (see Forest). The subsets come from one Random, so
+		 * buildDecisionTree gives the same tree for the same seed, but buildDecisionTreeParallel
+		 * does not, and the level-wise builds score every candidate.
+		 * 
+		 * @param size - the number of candidates scored at each node, 0 to score them all
+		 * @param seed - the seed of the random subsets
+		 */
+		public void setRandomAttributeSubset(int size, long seed) {
+			this.attributeSubset = size;
+			this.subsetRandom = new Random(seed);
+		}
+		
+		
+		/*
+		 * Sets the stopping rules (pre-pruning) of the encoded builds, to bound the size and depth
+		 * of trees grown on noisy data. A node that breaks a rule becomes a leaf of its majority class.
+		 * 
+		 * maxNodes is applied in build order: depth-first for buildDecisionTree, level by level for
+		 * the level-wise builds, and in no fixed order for buildDecisionTreeParallel, so with it set
+		 * these builds can give different trees.
+		 * 
+		 * @param maxDepth - the depth at which nodes are no longer split (the root is at 0), Integer.MAX_VALUE for no limit
+		 * @param minRows - the fewest rows a node needs to be split, 0 for no limit
+		 * @param minGain - the least information gain a split needs, 0 for no limit
+		 * @param maxNodes - the most nodes in the tree, Integer.MAX_VALUE for no limit
+		 */
+		public void setStoppingRules(int maxDepth, int minRows, double minGain, int maxNodes) {
+			this.maxDepth = maxDepth;
+			this.minRows = minRows;
+			this.minGain = minGain;
+			this.maxNodes = Math.max(1, maxNodes);
+		}
+		
+		
+		/*
+		 * Fork/join task that scores the candidates[lo, hi) attributes of a node,
+		 * halving the range until only one attribute is left per task
+		 */
+		class AttributeGainTask extends RecursiveAction {
+			
+			private static final long serialVersionUID = 1L;
+			
+			Dataset ds;
+			int[] rows;
+			int from, to; //the node's range of the row index array
+			int[] candidates;
+			Split[] splits; //filled with the best split of candidates[k] at splits[k]
+			ContingencyTable[] tables; //the node's count tables; each task only touches its own attributes' slots
+			int lo, hi;
+			
+			AttributeGainTask(Dataset ds, int[] rows, int from, int to, int[] candidates, Split[] splits,
+					ContingencyTable[] tables, int lo, int hi) {
+				this.ds = ds;
+				this.rows = rows;
+				this.from = from;
+				this.to = to;
+				this.candidates = candidates;
+				this.splits = splits;
+				this.tables = tables;
+				this.lo = lo;
+				this.hi = hi;
+			}
+			
+			@Override
+			protected void compute() {
+				if (hi - lo == 1) {
+					splits[lo] = scoreAttribute(candidates[lo], ds, rows, from, to, tables);
+				}
+				else {
+					int mid = (lo + hi) >>> 1;
+					invokeAll(new AttributeGainTask(ds, rows, from, to, candidates, splits, tables, lo, mid),
+							new AttributeGainTask(ds, rows, from, to, candidates, splits, tables, mid, hi));
+				}
+			}
+		}
+		
+		
+		/*
+		 * Builds the decision tree for the whole encoded training dataset
+		 * 
+		 * @param ds - the encoded dataset
+		 * @return the root of the decision tree
+		 */
+		public DTNode buildDecisionTree(Dataset ds) {
+			
+			long start = System.nanoTime();
+			TreeEvents.Build event = startBuild("buildDecisionTree", ds.getNumRows());
+			int[] rows = new int[ds.getNumRows()];
+			for (int i = 0; i < rows.length; i++) {
+				rows[i] = i;
+			}
+			this.root = buildDecisionTree(new ArrayList<String>(), ds, rows, 0, rows.length);
+			finishBuild(event, start, this.root);
+			return this.root;
+		}
+		
+		
+		/*
+		 * Builds the decision tree for the whole encoded training dataset, building
+		 * independent subtrees concurrently on a fork/join pool. The tree is the same
+		 * as the one from buildDecisionTree(Dataset).
+		 * 
+		 * @param ds - the encoded dataset
+		 * @param pool - the pool the subtrees are built on
+		 * @param minForkRows - the smallest child (in rows) that is built as its own task;
+		 * 						smaller children are built in their parent's task
+		 * @return the root of the decision tree
+		 */
+		public DTNode buildDecisionTreeParallel(Dataset ds, ForkJoinPool pool, int minForkRows) {
+			
+			long start = System.nanoTime();
+			TreeEvents.Build event = startBuild("buildDecisionTreeParallel", ds.getNumRows());
+			int[] rows = new int[ds.getNumRows()];
+			for (int i = 0; i < rows.length; i++) {
+				rows[i] = i;
+			}
+			DTNode newRoot = pool.invoke(new SubtreeTask(new ArrayList<String>(), ds, rows, 0, rows.length, Math.max(1, minForkRows),
+					getClassValCounts(ds, rows, 0, rows.length), new AtomicInteger(1)));
+			this.root = newRoot;
+			finishBuild(event, start, newRoot);
+			return newRoot;
+		}
+		
+		
+		/*
+		 * Builds the decision tree breadth-first, one level at a time (see LevelWiseBuilder).
+		 * Each level is one sequential pass over the columns that routes every row to its node
+		 * and counts it, instead of a scan of each node's rows in turn. The tree is the same as
+		 * the one from buildDecisionTree(Dataset).
+		 * 
+		 * @param ds - the encoded dataset
+		 * @param memoryBudget - the bytes of count tables to hold at once; a level whose tables
+		 * 						 are larger is counted in more than one pass
+		 * @return the root of the decision tree
+		 */
+		public DTNode buildDecisionTreeLevelWise(Dataset ds, long memoryBudget) {
+			
+			long start = System.nanoTime();
+			TreeEvents.Build event = startBuild("buildDecisionTreeLevelWise", ds.getNumRows());
+			LevelWiseBuilder builder = new LevelWiseBuilder(new LevelWiseBuilder.DatasetRows(ds), this.classIndex, memoryBudget);
+			builder.listener = this.listener;
+			builder.setStoppingRules(this.maxDepth, this.minRows, this.minGain, this.maxNodes);
+			try {
+				this.root = builder.build();
+			} catch (IOException e) { //in-memory rows are never read from a file
+				throw new UncheckedIOException(e);
+			}
+			finishBuild(event, start, this.root);
+			return this.root;
+		}
+		
+		
+		//builds the decision tree level by level with the default count table budget
+		public DTNode buildDecisionTreeLevelWise(Dataset ds) {
+			return buildDecisionTreeLevelWise(ds, LevelWiseBuilder.DEFAULT_MEMORY_BUDGET);
+		}
+		
+		
+		/*
+		 * Builds the decision tree from a dataset kept on disk, level by level (see LevelWiseBuilder).
+		 * The heap holds one block of rows and count tables for as many nodes as fit the budget,
+		 * whatever the number of rows. The tree is the same as the one from buildDecisionTree(Dataset).
+		 * 
+		 * @param ds - the disk dataset; this ID3 should be created from its schema
+		 * @param memoryBudget - the bytes of heap for rows and count tables; a quarter goes to the row blocks
+		 * @return the root of the decision tree
+		 * @throws IOException if the column files cannot be read
+		 */
+		public DTNode buildDecisionTree(DiskDataset ds, long memoryBudget) throws IOException {
+			
+			long rowBytes = 4L * (ds.getSchema().getNumAttributes() + 1); //the columns and the assignment of a row
+			long blockSize = Math.max(1024, memoryBudget / 4 / rowBytes);
+			ds.setBlockSize((int)Math.min(blockSize, Math.max(1, ds.getNumRows())));
+			
+			long start = System.nanoTime();
+			TreeEvents.Build event = startBuild("buildDecisionTree(DiskDataset)", ds.getNumRows());
+			LevelWiseBuilder builder = new LevelWiseBuilder(ds, this.classIndex, memoryBudget - ds.getBlockSize() * rowBytes);
+			builder.listener = this.listener;
+			builder.setStoppingRules(this.maxDepth, this.minRows, this.minGain, this.maxNodes);
+			this.root = builder.build();
+			finishBuild(event, start, this.root);
+			return this.root;
+		}
+		
+		
+		/*
+		 * A recursive tree building algorithm over an encoded dataset. It follows
+		 * buildDecisionTree(ArrayList, ArrayList), with the node values and edges decoded 
+		 * back to Strings so the tree can be printed and tested the same way.
+		 * 
+		 * All calls share one row index array. A split partitions the node's range of it
+		 * in place, and each child is built from its own part of the range, so memory stays
+		 * O(rows) for the whole build. The order of the array is changed by the build.
+		 * 
+		 * A node becomes a leaf when it has one class, or when no remaining attribute
+		 * has a positive information gain (it then takes the majority class). The stopping
+		 * rules (see setStoppingRules) can make it a majority leaf sooner.
+		 * 
+		 * @param path - the path of split attributes up to the current recursive call
+		 * @param ds - the encoded dataset
+		 * @param rows - the shared row index array
+		 * @param from - the first position of this node's rows (inclusive)
+		 * @param to - the last position of this node's rows (exclusive)
+		 * @return the node for these rows
+		 */
+		public DTNode buildDecisionTree(ArrayList<String> path, Dataset ds, int[] rows, int from, int to) {
+			return buildSubtree(path, ds, rows, from, to, Integer.MAX_VALUE, getClassValCounts(ds, rows, from, to), null, new AtomicInteger(1));
+		}
+		
+		
+		/*
+		 * The recursive step shared by the sequential and parallel builds. Children with at least
+		 * minForkRows rows are forked as SubtreeTasks (only when running in a fork/join pool), and
+		 * are added to the node in value code order once joined, so the tree does not depend on
+		 * which tasks finish first. Only the method arguments are written, never the ID3 fields.
+		 * 
+		 * The node's class counts, and possibly count tables, were already worked out by its parent.
+		 * The children's class counts are read off the table of the split attribute instead of being
+		 * counted again, and the largest child built here (not forked) gets its count tables by
+		 * subtraction (see subtractedChild).
+		 * 
+		 * @param classCounts - the class counts of rows[from, to)
+		 * @param tables - the count tables of the node's categorical candidates, indexed by attribute;
+		 * 				   the ones missing are counted and stored in it (null to use a new array)
+		 * @param nodes - the number of nodes in the tree so far, for the maxNodes rule
+		 */
+		DTNode buildSubtree(ArrayList<String> path, Dataset ds, int[] rows, int from, int to, int minForkRows,
+				int[] classCounts, ContingencyTable[] tables, AtomicInteger nodes) {
+			
+			int majorityClass = majorityClass(classCounts);
+			String majority = ds.getValue(this.classIndex, majorityClass);
+			
+			//one class, make it a leaf node with that class value
+			if (classCounts[majorityClass] == to - from) {
+				return newNode("leaf", majority, majority, path, from, to);
+			}
+			
+			//too deep or too few rows to split, make it the majority class
+			if (path.size() >= this.maxDepth || to - from < this.minRows) {
+				return newNode("leaf", majority, majority, path, from, to);
+			}
+			
+			//no split separates the classes enough, make it the majority class
+			if (tables == null) {
+				tables = new ContingencyTable[ds.getNumAttributes()];
+			}
+			Split best = findBestSplit(ds, rows, from, to, path, tables);
+			if (best.attribute < 0 || best.gain < this.minGain) {
+				return newNode("leaf", majority, majority, path, from, to);
+			}
+			
+			//the children would take the tree past maxNodes, make it the majority class
+			int numChildren = 2;
+			if (!best.isThreshold()) {
+				numChildren = 0;
+				for (int code = 0; code < tables[best.attribute].getNumValues(); code++) {
+					if (tables[best.attribute].getValueTotal(code) > 0) numChildren++;
+				}
+			}
+			if (this.maxNodes < Integer.MAX_VALUE && nodes.addAndGet(numChildren) > this.maxNodes) {
+				nodes.addAndGet(-numChildren);
+				return newNode("leaf", majority, majority, path, from, to);
+			}
+			
+			String bestAttribute = ds.getAttributeName(best.attribute);
+			DTNode thisNode = newNode("internal", bestAttribute, majority, path, from, to);
+			ArrayList<String> childPath = new ArrayList<String>(path);
+			childPath.add(bestAttribute);
+			
+			//split the rows in place: two parts for a threshold, one per value code otherwise
+			int[] bounds;
+			String[] edges;
+			if (best.isThreshold()) {
+				thisNode.setThreshold(best.threshold);
+				bounds = new int[] {from, partitionThreshold(best.attribute, best.threshold, ds, rows, from, to), to};
+				edges = new String[] {DTNode.lowEdge(best.threshold), DTNode.highEdge(best.threshold)};
+			}
+			else {
+				bounds = partitionRows(best.attribute, ds, rows, from, to);
+				edges = new String[bounds.length - 1];
+				for (int code = 0; code < edges.length; code++) {
+					edges[code] = ds.getValue(best.attribute, code);
+				}
+			}
+			int cardinality = bounds.length - 1;
+			
+			//the children's class counts: the rows of the split table, or the two sides of a threshold
+			int[][] childClassCounts = new int[cardinality][];
+			if (best.isThreshold()) {
+				int small = bounds[1] - bounds[0] <= bounds[2] - bounds[1] ? 0 : 1;
+				childClassCounts[small] = getClassValCounts(ds, rows, bounds[small], bounds[small + 1]);
+				childClassCounts[1 - small] = classCounts.clone();
+				for (int c = 0; c < classCounts.length; c++) {
+					childClassCounts[1 - small][c] -= childClassCounts[small][c];
+				}
+			}
+			else {
+				int[] splitCounts = tables[best.attribute].counts;
+				for (int code = 0; code < cardinality; code++) {
+					childClassCounts[code] = Arrays.copyOfRange(splitCounts, code * classCounts.length, (code + 1) * classCounts.length);
+				}
+			}
+			
+			//fork the large children first so they run while the small ones are built here
+			boolean fork = ForkJoinTask.inForkJoinPool();
+			boolean forked = false;
+			SubtreeTask[] tasks = new SubtreeTask[cardinality];
+			for (int code = 0; code < cardinality; code++) {
+				if (fork && bounds[code + 1] - bounds[code] >= minForkRows) {
+					tasks[code] = new SubtreeTask(childPath, ds, rows, bounds[code], bounds[code + 1], minForkRows, childClassCounts[code], nodes);
+					tasks[code].fork();
+					forked = true;
+				}
+			}
+			
+			//build the children here, the largest last: the others keep the tables they count
+			//for their own splits, and the largest gets the parent's tables less theirs
+			int largest = forked ? -1 : subtractedChild(bounds, childClassCounts);
+			ContingencyTable[][] childTables = new ContingencyTable[cardinality][];
+			DTNode[] children = new DTNode[cardinality];
+			for (int code = 0; code < cardinality; code++) {
+				if (tasks[code] == null && code != largest && bounds[code + 1] > bounds[code]) {
+					childTables[code] = largest < 0 ? null : new ContingencyTable[tables.length];
+					children[code] = buildSubtree(childPath, ds, rows, bounds[code], bounds[code + 1], minForkRows,
+							childClassCounts[code], childTables[code], nodes);
+				}
+			}
+			if (largest >= 0) {
+				ContingencyTable[] largestTables = subtractTables(ds, rows, bounds, childTables, tables, best.attribute, largest);
+				children[largest] = buildSubtree(childPath, ds, rows, bounds[largest], bounds[largest + 1], minForkRows,
+						childClassCounts[largest], largestTables, nodes);
+			}
+			for (int code = 0; code < cardinality; code++) {
+				if (tasks[code] != null) {
+					children[code] = tasks[code].join();
+				}
+				if (children[code] != null) {
+					children[code].setParent(thisNode);
+					thisNode.addChildNode(edges[code], children[code]);
+				}
+			}
+			return thisNode;
+		}
+		
+		
+		/*
+		 * Picks the child whose count tables are derived by subtraction instead of counted: the
+		 * largest, as long as it has more rows than its single-class siblings. Those would need
+		 * no tables of their own, so they are only counted to take them away from the parent's.
+		 * 
+		 * @param bounds - the children's ranges, rows[bounds[c], bounds[c+1])
+		 * @param childClassCounts - the class counts of each child
+		 * @return the child, or -1 if it is cheaper for every child to count its own tables
+		 */
+		static int subtractedChild(int[] bounds, int[][] childClassCounts) {
+			
+			int cardinality = bounds.length - 1;
+			int largest = 0;
+			for (int code = 1; code < cardinality; code++) {
+				if (bounds[code + 1] - bounds[code] > bounds[largest + 1] - bounds[largest]) {
+					largest = code;
+				}
+			}
+			int largestRows = bounds[largest + 1] - bounds[largest];
+			if (isPure(childClassCounts[largest], largestRows)) return -1;
+			long pureRows = 0;
+			for (int code = 0; code < cardinality; code++) {
+				int n = bounds[code + 1] - bounds[code];
+				if (code != largest && isPure(childClassCounts[code], n)) {
+					pureRows += n;
+				}
+			}
+			return pureRows < largestRows ? largest : -1;
+		}
+		
+		
+		/*
+		 * Derives one child's count tables as the parent's less its siblings'. The siblings have
+		 * already been built and kept the tables they counted for their own splits; tables they
+		 * did not count (e.g. single-class children) are counted here.
+		 * 
+		 * @param ds - the encoded dataset
+		 * @param rows - the shared row index array, partitioned for the split
+		 * @param bounds - the children's ranges, rows[bounds[c], bounds[c+1])
+		 * @param childTables - the siblings' tables indexed by attribute, null for empty children
+		 * @param tables - the parent's count tables, indexed by attribute
+		 * @param splitAttr - the split attribute, which the children do not score again if it is categorical
+		 * @param child - the child to derive the tables of
+		 * @return the child's tables, indexed by attribute
+		 */
+		ContingencyTable[] subtractTables(Dataset ds, int[] rows, int[] bounds, ContingencyTable[][] childTables,
+				ContingencyTable[] tables, int splitAttr, int child) {
+			
+			ContingencyTable[] derived = new ContingencyTable[tables.length];
+			ContingencyTable[] siblings = new ContingencyTable[bounds.length - 1];
+			for (int attr = 0; attr < tables.length; attr++) {
+				if (tables[attr] == null || attr == splitAttr) continue;
+				for (int code = 0; code < siblings.length; code++) {
+					siblings[code] = null;
+					if (childTables[code] == null) continue;
+					if (childTables[code][attr] == null) {
+						childTables[code][attr] = countTable(attr, ds, rows, bounds[code], bounds[code + 1]);
+					}
+					siblings[code] = childTables[code][attr];
+				}
+				derived[attr] = tables[attr].subtract(siblings);
+			}
+			return derived;
+		}
+		
+		
+		//helper function for whether a node's rows all have one class
+		static boolean isPure(int[] classCounts, int numRows) {
+			return numRows == 0 || classCounts[majorityClass(classCounts)] == numRows;
+		}
+		
+		
+		/*
+		 * Fork/join task that builds the subtree for one range of the shared row index array.
+		 * Sibling tasks work on disjoint ranges, so they never touch the same part of the array.
+		 */
+		class SubtreeTask extends RecursiveTask<DTNode> {
+			
+			private static final long serialVersionUID = 1L;
+			
+			ArrayList<String> path;
+			Dataset ds;
+			int[] rows;
+			int from, to;
+			int minForkRows;
+			int[] classCounts; //the class counts of the range
+			AtomicInteger nodes; //the nodes in the tree so far, shared by the whole build
+			
+			SubtreeTask(ArrayList<String> path, Dataset ds, int[] rows, int from, int to, int minForkRows,
+					int[] classCounts, AtomicInteger nodes) {
+				this.path = path;
+				this.ds = ds;
+				this.rows = rows;
+				this.from = from;
+				this.to = to;
+				this.minForkRows = minForkRows;
+				this.classCounts = classCounts;
+				this.nodes = nodes;
+			}
+			
+			@Override
+			protected DTNode compute() {
+				return buildSubtree(path, ds, rows, from, to, minForkRows, classCounts, null, nodes);
+			}
+		}
+		
+		
+		//helper function to start the JFR event and listener callback of a build
+		TreeEvents.Build startBuild(String method, int numRows) {
+			TreeEvents.Build event = new TreeEvents.Build();
+			event.begin();
+			event.method = method;
+			event.rows = numRows;
+			if (listener != null) listener.buildStarted(numRows);
+			return event;
+		}
+		
+		
+		//helper function to end the JFR event and listener callback of a build
+		void finishBuild(TreeEvents.Build event, long start, DTNode builtRoot) {
+			event.end();
+			if (event.shouldCommit()) {
+				event.nodes = countNodes(builtRoot);
+				event.depth = treeDepth(builtRoot);
+				event.commit();
+			}
+			if (listener != null) listener.buildFinished(builtRoot, System.nanoTime() - start);
+		}
+		
+		
+		//helper function for the number of nodes in a tree
+		static int countNodes(DTNode node) {
+			int count = 1;
+			for (DTNode child : node.children.values()) {
+				count += countNodes(child);
+			}
+			return count;
+		}
+		
+		
+		//helper function for the depth of a tree, 0 for a single leaf
+		static int treeDepth(DTNode node) {
+			int depth = 0;
+			for (DTNode child : node.children.values()) {
+				depth = Math.max(depth, treeDepth(child) + 1);
+			}
+			return depth;
+		}
+		
+		
+		/*
+		 * Sets the listener that receives the metrics of later builds (see TreeMetrics). It is
+		 * called from several threads at once by the parallel builds.
+		 * 
+		 * @param listener - the listener, or null for none
+		 */
+		public void setTreeListener(TreeListener listener) {
+			this.listener = listener;
+		}
+		
+		
+		//helper function to create a node that records its majority class and its range of the shared row index array
+		DTNode newNode(String type, String value, String majority, ArrayList<String> path, int from, int to) {
+			DTNode node = new DTNode(type, value, path);
+			node.setMajorityClass(majority);
+			node.setRowRange(from, to - from);
+			if (listener != null) listener.nodeCreated(node, path.size());
+			return node;
+		}
+		
+		
+		/*
+		 * Helper function to find the majority class code from class counts;
+		 * ties go to the lowest code (the value seen first in the dataset)
+		 */
+		static int majorityClass(int[] classCounts) {
+			int maxClass = 0;
+			for (int code = 1; code < classCounts.length; code++) {
+				if (classCounts[code] > classCounts[maxClass]) {
+					maxClass = code;
+				}
+			}
+			return maxClass;
+		}
+		
+		
 		/*
 		 * This function calculates the class values and their counts for a given dataset
 		 * 
@@ -157,6 +1058,7 @@ public class ID3 {
 					}
 				}
 			}			 				
+			if (listener != null) listener.splitAllocated(splitDatasets.size(), dataset.size() - 1);
 			return splitDatasets;
 		}				
 		
@@ -173,27 +1075,59 @@ public class ID3 {
 						
 			//get total size for proportions in calculations of gain
 			int parentCount = dataset.size()-1; //-1 to not count header 
-			double infoGain = 0; //the accumulator for the information gain,
-			int splitCount = 0 ; //will hold the count for each split
-			double proportion = 0; //will hold the split to parent proportion for infoGain calculations
+			int attrIndex = getAttributeIndex(attribute);
+			
+			//count classes for the whole dataset and for each attribute value in one scan,
+			//instead of splitting the dataset and recounting each split
+			HashMap<String, Integer> parentCounts = new HashMap<String, Integer>();
+			HashMap<String, HashMap<String, Integer>> splitCounts = new HashMap<String, HashMap<String, Integer>>();
+			for (ArrayList<String> row : dataset) {
+				if(!(row == dataset.get(0))) { //skip first row
+					String classKey = row.get(this.classIndex);
+					String attrVal = row.get(attrIndex);
+					parentCounts.merge(classKey, 1, Integer::sum);
+					HashMap<String, Integer> valueCounts = splitCounts.get(attrVal);
+					if (valueCounts == null) {
+						valueCounts = new HashMap<String, Integer>();
+						splitCounts.put(attrVal, valueCounts);
+					}
+					valueCounts.merge(classKey, 1, Integer::sum);
+				}
+			}
 			
 			//initialize infoGain as the entropy of parent ds as child entropy values will be subtracted
-			infoGain = calculateEntropy(dataset);
-			
-			//create collection to hold the split datasets; split dataset based on attribute
-			HashMap<String, ArrayList<ArrayList<String>>> splits = splitDataset(attribute, dataset);
-			
-			//calculate entropy for each split dataset 
-		    //calculate the information gain using total # rows in each dataset/parent dataset * its entropy
-			for(String splitVal : splits.keySet()) {
-				//get dataset and calculate count and entropy, subtract product of proportion and entropy from infogain
-				ArrayList<ArrayList<String>> splitDS = splits.get(splitVal);
-				splitCount = splitDS.size() -1; //-1 don't include header
-				proportion = (double)splitCount/parentCount;
-				infoGain -= proportion * (calculateEntropy(splitDS));
+			double infoGain = entropyOfCounts(parentCounts, parentCount);
+			
+			//calculate the information gain using total # rows in each split/parent dataset * its entropy
+			for (HashMap<String, Integer> valueCounts : splitCounts.values()) {
+				int splitCount = 0;
+				for (int count : valueCounts.values()) {
+					splitCount += count;
+				}
+				double proportion = (double)splitCount/parentCount;
+				infoGain -= proportion * entropyOfCounts(valueCounts, splitCount);
 			}			
 			return infoGain;
 		}
+		
+		
+		/*
+		 * Helper function to calculate entropy from class counts, as in calculateEntropy
+		 * 
+		 * @param classValCount the class values and their counts
+		 * @param total the number of rows counted
+		 * @return the entropy
+		 */
+		double entropyOfCounts(HashMap<String, Integer> classValCount, int total) {
+			double entropy = 0;
+			for (int count : classValCount.values()) {
+				double part = ((double)count/(double)total);
+				if (!(part == 0 || part == 1)) {
+					entropy = entropy - (part * logk(part, classValCount.size()));
+				}
+			}
+			return entropy;
+		}
 			
 		
 		
@@ -329,8 +1263,11 @@ public class ID3 {
 				newNode = thisNode;				
 			}
 			
-			//set node to root (the last recursive call should be the root)
-			this.root = newNode;
+			//set node to root; only the outermost call has an empty path, so recursive
+			//calls (including any made concurrently) never write the root
+			if (path.isEmpty()) {
+				this.root = newNode;
+			}
 			return newNode;
 		}
 		
@@ -362,7 +1299,7 @@ public class ID3 {
 						
 						//follow edges given the values for each node in the row					
 						String edgeValue = row.get(currentIndex);					
-						currentNode = currentNode.children.get(edgeValue);
+						currentNode = currentNode.getChild(edgeValue);
 												
 						if(currentNode.getType().contentEquals("internal")) {
 							currentIndex = getAttributeIndex(currentNode.getValue(), header);						
@@ -389,6 +1326,69 @@ public class ID3 {
 		} 
 		
 		
+		/*
+		 * This function tests if the decision tree provides a complete solution
+		 * for the given encoded dataset
+		 * 
+		 * @param ds is the encoded dataset used to test if there is a solution
+		 * @return boolean - true if there is a complete solution, false otherwise
+		 */
+		public Boolean testSolution(Dataset ds) {
+			
+			Boolean solution = false;
+			CompiledTree compiled = compile();
+			int[] predictions = new int[ds.getNumRows()];
+			compiled.predictBatch(ds, predictions);
+			
+			//translate the dataset's class codes to the tree's once, instead of comparing Strings per row
+			int testClassIndex = ds.getAttributeIndex(this.classAttr);
+			int[] classCodes = new int[ds.getCardinality(testClassIndex)];
+			for (int code = 0; code < classCodes.length; code++) {
+				classCodes[code] = compiled.getClassCode(ds.getValue(testClassIndex, code));
+			}
+			
+			//a value not seen in training has no edge (prediction -1), so it counts as incorrect
+			int[] classColumn = ds.getColumn(testClassIndex);
+			int correctCount = 0;
+			for (int row = 0; row < predictions.length; row++) {
+				if (predictions[row] >= 0 && predictions[row] == classCodes[classColumn[row]]) {
+					correctCount++;
+				}
+			}
+			
+			System.out.println("\n\nCorrect classifications: " + correctCount);
+			System.out.println("Number of rows: " + ds.getNumRows());
+			if (correctCount == ds.getNumRows()) {
+				solution = true;
+				System.out.println("There is a solution where all dataset entries match the decision tree classification");
+			}
+			return solution;
+		}
+		
+		
+		/*
+		 * Prunes the built decision tree against holdout rows (see Pruning.reducedError)
+		 * 
+		 * @param holdout - the encoded dataset holding the holdout rows
+		 * @param rows - the row indices of the holdout rows; they are reordered
+		 * @return the number of nodes removed
+		 */
+		public int prune(Dataset holdout, int[] rows) {
+			return Pruning.reducedError(this.root, holdout, this.classAttr, rows, 0, rows.length);
+		}
+		
+		
+		/*
+		 * Flattens the built decision tree into a CompiledTree for fast prediction
+		 * 
+		 * @return the compiled tree, using the training dataset's dictionaries
+		 */
+		public CompiledTree compile() {
+			Dataset schema = this.dataset != null ? this.dataset : Dataset.fromRows(this.training_ds);
+			return new CompiledTree(this.root, schema, this.classAttr);
+		}
+		
+		
 		/*
 		 * This function recursively prints a completed decision tree using
 		 * a pre-order traversal. It prints the tree horizontally
@@ -451,6 +1451,10 @@ public class ID3 {
 		public int getAttributeIndex(String attribute) {
 			int index = 0 ; //index counter
 			Boolean match = false;
+			if (this.training_ds == null) { //built from an encoded dataset
+				int encodedIndex = this.dataset.getAttributeIndex(attribute);
+				return encodedIndex < 0 ? this.dataset.getNumAttributes() : encodedIndex;
+			}
 			ArrayList<String> header = this.training_ds.get(0);
 			while( !match && index < header.size()) {		
 				if(header.get(index).equals(attribute)) {
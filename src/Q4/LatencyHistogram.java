@@ -0,0 +1,73 @@
+package Q4;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * A lock-free histogram of latencies in nanoseconds, for percentiles such as p50
+ * and p99 under many concurrent recorders.
+ *
+ * Buckets are log-linear: each power of two is split into 16 equal buckets, so a
+ * recorded value is known to within about 6%, with a fixed 960 buckets for any
+ * value up to Long.MAX_VALUE.
+ */
+public class LatencyHistogram {
+
+	static final int SUB_BITS = 4;
+	static final int SUB_BUCKETS = 1 << SUB_BITS; //buckets per power of two
+	static final int NUM_BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+	AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+
+
+	//records one latency
+	public void record(long nanos) {
+		counts.incrementAndGet(bucket(Math.max(0, nanos)));
+	}
+
+
+	/*
+	 * Gets a percentile of the recorded latencies
+	 *
+	 * @param percentile - the percentile, e.g. 50 or 99
+	 * @return the lower bound of the bucket holding the percentile, in nanoseconds, or 0 if nothing was recorded
+	 */
+	public long getPercentile(double percentile) {
+		long total = getCount();
+		if (total == 0) return 0;
+		long target = Math.max(1, (long)Math.ceil(percentile / 100 * total));
+		long seen = 0;
+		for (int b = 0; b < NUM_BUCKETS; b++) {
+			seen += counts.get(b);
+			if (seen >= target) return lowerBound(b);
+		}
+		return lowerBound(NUM_BUCKETS - 1);
+	}
+
+
+	//getter function for the number of recorded latencies
+	public long getCount() {
+		long total = 0;
+		for (int b = 0; b < NUM_BUCKETS; b++) {
+			total += counts.get(b);
+		}
+		return total;
+	}
+
+
+	//helper function for the bucket of a value
+	static int bucket(long value) {
+		if (value < SUB_BUCKETS) return (int)value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int)((value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1));
+		return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	//helper function for the smallest value of a bucket
+	static long lowerBound(int bucket) {
+		if (bucket < SUB_BUCKETS) return bucket;
+		int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+		long sub = bucket % SUB_BUCKETS;
+		return (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+	}
+
+}
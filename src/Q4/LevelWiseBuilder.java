@@ -0,0 +1,522 @@
+package Q4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/*
+ * Grows a decision tree breadth-first, one level at a time, from rows that are
+ * only ever read in sequential blocks.
+ *
+ * Each row has an assignment: the frontier node (slot) it belongs to, or -1 once
+ * its node is a leaf. For each level one pass over the rows routes every row
+ * from its parent's slot to its child's slot (using the splits chosen at the end
+ * of the last level) and, in the same pass, counts it into its new node's
+ * attribute x class tables. Every node of the level is then split (or made a leaf)
+ * from its tables alone, with the same rules as ID3.buildDecisionTree, so the
+ * trees are the same.
+ *
+ * The count tables of a whole level may not fit the memory budget. The level is
+ * then counted in batches of nodes, one pass per batch; only the first pass routes.
+ * A single node whose tables are larger than the budget is still counted on its own.
+ *
+ * The rows come from a RowSource: DatasetRows for an in-memory Dataset (one block,
+ * read in place) or a DiskDataset (column files read block by block).
+ */
+public class LevelWiseBuilder {
+
+	/*
+	 * The rows to train on: an encoded dataset read in blocks, together with each
+	 * row's assignment (frontier slot), which the builder rewrites every level
+	 */
+	public interface RowSource {
+
+		//getter function for the dataset schema: header, dictionaries and numeric settings (it may hold no rows)
+		Dataset getSchema();
+
+		//getter function for the number of rows
+		int getNumRows();
+
+		//getter function for the number of rows read at a time
+		int getBlockSize();
+
+		/*
+		 * Reads the rows [block.start, block.start + block.length), setting block.columns,
+		 * block.assignments and block.offset (the array index of row block.start)
+		 */
+		void readBlock(Block block) throws IOException;
+
+		//stores the assignments of a block after the builder changed them
+		void writeAssignments(Block block) throws IOException;
+	}
+
+
+	/*
+	 * A block of rows and their assignments
+	 */
+	public static class Block {
+		public int start; //the first row of the block
+		public int length; //the number of rows
+		public int offset; //the array index of the first row, in columns and assignments
+		public int[][] columns; //columns[attribute][offset + i] = code of row start + i
+		public int[] assignments; //assignments[offset + i] = slot of row start + i, -1 if it is in a leaf
+	}
+
+
+	/*
+	 * A frontier node waiting for its counts, and once they are in, for its split
+	 */
+	static class Slot {
+		DTNode parent; //null for the root
+		String edge; //the parent's edge to this node
+		ArrayList<String> path; //the split attributes above this node
+		int[] counts; //the class counts, then each attribute's value (or rank) x class counts at tableOffset[attribute]
+		int routeAttribute = -1; //the split attribute, -1 if the node became a leaf
+		int[] route; //route[code of routeAttribute] = slot of the child in the next level
+
+		Slot(DTNode parent, String edge, ArrayList<String> path) {
+			this.parent = parent;
+			this.edge = edge;
+			this.path = path;
+		}
+	}
+
+
+	/*
+	 * RowSource over an in-memory dataset: the whole dataset is one block, and the
+	 * columns are used in place rather than copied
+	 */
+	public static class DatasetRows implements RowSource {
+
+		Dataset ds;
+		int[] assignments;
+
+		public DatasetRows(Dataset ds) {
+			this.ds = ds;
+			this.assignments = new int[ds.getNumRows()];
+		}
+
+		@Override
+		public Dataset getSchema() {
+			return ds;
+		}
+
+		@Override
+		public int getNumRows() {
+			return ds.getNumRows();
+		}
+
+		@Override
+		public int getBlockSize() {
+			return Math.max(1, ds.getNumRows());
+		}
+
+		@Override
+		public void readBlock(Block block) {
+			block.columns = ds.columns;
+			block.assignments = assignments;
+			block.offset = block.start;
+		}
+
+		@Override
+		public void writeAssignments(Block block) {
+			//the block is the assignments array itself
+		}
+	}
+
+
+	static final long DEFAULT_MEMORY_BUDGET = 64L << 20; //bytes of count tables when no budget is given
+
+	RowSource source;
+	Dataset schema;
+	int classIndex;
+	int numClasses;
+	long memoryBudget; //bytes of count tables held at once
+	int[] tableOffset; //tableOffset[attribute] = start of the attribute's table in a slot's counts, -1 for the class
+	int slotInts; //the size of a slot's counts
+	int passes; //number of passes over the rows in the last build
+	TreeListener listener; //receives build metrics, null for none
+	int maxDepth = Integer.MAX_VALUE; //stopping rules, as ID3.setStoppingRules
+	int minRows = 0;
+	double minGain = 0;
+	int maxNodes = Integer.MAX_VALUE;
+	int nodes; //nodes in the tree so far, counting children not yet built
+
+
+	/*
+	 * Constructor for a builder
+	 *
+	 * @param source - the rows to train on
+	 * @param classIndex - the column index of the class attribute
+	 * @param memoryBudget - the most bytes of count tables to hold at once
+	 */
+	public LevelWiseBuilder(RowSource source, int classIndex, long memoryBudget) {
+		this(source.getSchema(), classIndex, memoryBudget);
+		this.source = source;
+	}
+
+
+	/*
+	 * Constructor for a builder whose rows are counted elsewhere, by a subclass that
+	 * overrides pass() (see TrainingCoordinator)
+	 *
+	 * @param schema - the dataset schema
+	 * @param classIndex - the column index of the class attribute
+	 * @param memoryBudget - the most bytes of count tables to hold at once
+	 */
+	LevelWiseBuilder(Dataset schema, int classIndex, long memoryBudget) {
+		this.schema = schema;
+		this.classIndex = classIndex;
+		this.numClasses = schema.getCardinality(classIndex);
+		this.memoryBudget = memoryBudget;
+
+		//one flat array per slot, so the counts of a row all land close together
+		this.tableOffset = new int[schema.getNumAttributes()];
+		this.slotInts = numClasses;
+		for (int attr = 0; attr < tableOffset.length; attr++) {
+			if (attr == classIndex) {
+				tableOffset[attr] = -1;
+			}
+			else {
+				tableOffset[attr] = slotInts;
+				slotInts += tableWidth(attr) * numClasses;
+			}
+		}
+	}
+
+
+	/*
+	 * Sets the stopping rules (pre-pruning); see ID3.setStoppingRules. maxNodes is
+	 * applied in level order, so the tree keeps its shallowest splits.
+	 *
+	 * @param maxDepth - the depth at which nodes are no longer split (the root is at 0)
+	 * @param minRows - the fewest rows a node needs to be split
+	 * @param minGain - the least information gain a split needs
+	 * @param maxNodes - the most nodes in the tree
+	 */
+	public void setStoppingRules(int maxDepth, int minRows, double minGain, int maxNodes) {
+		this.maxDepth = maxDepth;
+		this.minRows = minRows;
+		this.minGain = minGain;
+		this.maxNodes = Math.max(1, maxNodes);
+	}
+
+
+	/*
+	 * Builds the tree
+	 *
+	 * @return the root of the decision tree
+	 * @throws IOException if the rows cannot be read or the assignments written
+	 */
+	public DTNode build() throws IOException {
+
+		DTNode root = null;
+		passes = 0;
+		nodes = 1;
+		ArrayList<Slot> frontier = new ArrayList<Slot>();
+		frontier.add(new Slot(null, null, new ArrayList<String>()));
+		ArrayList<Slot> previous = null; //the last level, whose routes move rows into this one
+		boolean initial = true; //the root level, every row starts in slot 0
+		long slotBytes = 4L * slotInts;
+		int depth = 0;
+
+		while (!frontier.isEmpty()) {
+			long levelStart = System.nanoTime();
+			ArrayList<Slot> next = new ArrayList<Slot>();
+			int lo = 0;
+			while (lo < frontier.size()) {
+				//as many nodes as fit the budget, and at least one
+				int hi = lo + 1;
+				while (hi < frontier.size() && (hi - lo + 1) * slotBytes <= memoryBudget) {
+					hi++;
+				}
+				for (int s = lo; s < hi; s++) {
+					frontier.get(s).counts = new int[slotInts];
+				}
+				pass(previous, initial, frontier, lo, hi);
+				previous = null; //routed, later batches of this level only count
+				initial = false;
+				for (int s = lo; s < hi; s++) {
+					DTNode node = split(frontier.get(s), next);
+					if (frontier.get(s).parent == null) {
+						root = node;
+					}
+				}
+				lo = hi;
+			}
+			if (listener != null) listener.levelFinished(depth, frontier.size(), System.nanoTime() - levelStart);
+			depth++;
+			previous = frontier;
+			frontier = next;
+		}
+		return root;
+	}
+
+
+	/*
+	 * One pass over the rows: routes each row into the current level (when previous is
+	 * not null, or for the root level) and counts the rows of slots [lo, hi)
+	 *
+	 * @param previous - the last level, or null if the rows are already routed
+	 * @param initial - true for the root level, which assigns every row to slot 0
+	 * @param frontier - the current level
+	 * @param lo - the first slot to count
+	 * @param hi - the slot after the last one to count
+	 */
+	void pass(ArrayList<Slot> previous, boolean initial, ArrayList<Slot> frontier, int lo, int hi) throws IOException {
+
+		passes++;
+		boolean routing = initial || previous != null;
+		int[][] routeColumns = null;
+		int[][] routes = null;
+		if (previous != null) {
+			routes = new int[previous.size()][];
+			routeColumns = new int[previous.size()][];
+		}
+
+		int numRows = source.getNumRows();
+		int blockSize = Math.max(1, source.getBlockSize());
+		int[][] counts = new int[hi - lo][]; //the counted slots' counts
+		for (int s = lo; s < hi; s++) {
+			counts[s - lo] = frontier.get(s).counts;
+		}
+		//the attributes to count, with their table offsets and rank arrays (null for a categorical attribute)
+		int numAttributes = schema.getNumAttributes() - 1;
+		int[] attributes = new int[numAttributes];
+		int[] offsets = new int[numAttributes];
+		int[][] ranks = new int[numAttributes][];
+		for (int attr = 0, k = 0; attr < schema.getNumAttributes(); attr++) {
+			if (attr != classIndex) {
+				attributes[k] = attr;
+				offsets[k] = tableOffset[attr];
+				ranks[k++] = schema.isNumeric(attr) ? schema.codeRanks[attr] : null;
+			}
+		}
+		int[][] columns = new int[numAttributes][];
+		int width = hi - lo;
+		Block block = new Block();
+		for (int start = 0; start < numRows; start += blockSize) {
+			block.start = start;
+			block.length = Math.min(blockSize, numRows - start);
+			source.readBlock(block);
+			int off = block.offset;
+			int end = off + block.length;
+			int[] assignments = block.assignments;
+
+			if (routing) {
+				if (initial) {
+					for (int i = off; i < end; i++) {
+						assignments[i] = 0;
+					}
+				}
+				else {
+					for (int s = 0; s < routes.length; s++) {
+						Slot parent = previous.get(s);
+						routes[s] = parent.route;
+						routeColumns[s] = parent.routeAttribute < 0 ? null : block.columns[parent.routeAttribute];
+					}
+					for (int i = off; i < end; i++) {
+						int s = assignments[i];
+						if (s >= 0) {
+							assignments[i] = routes[s] == null ? -1 : routes[s][routeColumns[s][i]];
+						}
+					}
+				}
+				source.writeAssignments(block);
+			}
+
+			int[] classColumn = block.columns[classIndex];
+			for (int k = 0; k < numAttributes; k++) {
+				columns[k] = block.columns[attributes[k]];
+			}
+			for (int i = off; i < end; i++) {
+				int s = assignments[i] - lo;
+				if (s < 0 || s >= width) continue;
+				int[] slotCounts = counts[s];
+				int classCode = classColumn[i];
+				slotCounts[classCode]++;
+				for (int k = 0; k < numAttributes; k++) {
+					int code = columns[k][i];
+					int value = ranks[k] == null ? code : ranks[k][code];
+					slotCounts[offsets[k] + value * numClasses + classCode]++;
+				}
+			}
+		}
+		if (listener != null) listener.rowsScanned(numRows);
+	}
+
+
+	/*
+	 * Makes a counted slot into a node: a leaf if it has one class or no split with a
+	 * positive gain, or else an internal node whose children are added to the next level
+	 *
+	 * @param slot - the counted slot; its tables are released
+	 * @param next - the next level
+	 * @return the node
+	 */
+	DTNode split(Slot slot, ArrayList<Slot> next) {
+
+		int[] classCounts = Arrays.copyOf(slot.counts, numClasses);
+		int total = 0;
+		for (int count : classCounts) {
+			total += count;
+		}
+		int majorityClass = ID3.majorityClass(classCounts);
+
+		Split best = new Split(-1, 0, Double.NaN);
+		if (classCounts[majorityClass] != total && slot.path.size() < maxDepth && total >= minRows) {
+			long start = System.nanoTime();
+			TreeEvents.ChooseSplit event = new TreeEvents.ChooseSplit();
+			event.begin();
+			best = findBestSplit(slot);
+			event.end();
+			if (event.shouldCommit()) {
+				event.depth = slot.path.size();
+				event.rows = total;
+				event.candidates = numCandidates(slot);
+				event.attribute = best.attribute < 0 ? null : schema.getAttributeName(best.attribute);
+				event.gain = best.gain;
+				event.commit();
+			}
+			if (listener != null) listener.splitChosen(slot.path.size(), total, numCandidates(slot), best, System.nanoTime() - start);
+			if (best.attribute >= 0 && (best.gain < minGain || !reserveChildren(slot, best))) {
+				best = new Split(-1, 0, Double.NaN);
+			}
+		}
+
+		String majority = schema.getValue(classIndex, majorityClass);
+		DTNode node;
+		if (best.attribute < 0) {
+			node = new DTNode("leaf", majority, slot.path);
+		}
+		else {
+			String attribute = schema.getAttributeName(best.attribute);
+			node = new DTNode("internal", attribute, slot.path);
+			ArrayList<String> childPath = new ArrayList<String>(slot.path);
+			childPath.add(attribute);
+			int[] table = table(slot, best.attribute);
+			int[] route = new int[schema.getCardinality(best.attribute)];
+
+			if (best.isThreshold()) {
+				node.setThreshold(best.threshold);
+				int low = next.size();
+				next.add(new Slot(node, DTNode.lowEdge(best.threshold), childPath));
+				next.add(new Slot(node, DTNode.highEdge(best.threshold), childPath));
+				for (int code = 0; code < route.length; code++) {
+					route[code] = schema.getNumericValue(best.attribute, code) <= best.threshold ? low : low + 1;
+				}
+			}
+			else {
+				//a child for each value with rows, as partitionRows gives
+				for (int code = 0; code < route.length; code++) {
+					int valueTotal = 0;
+					for (int c = 0; c < numClasses; c++) {
+						valueTotal += table[code * numClasses + c];
+					}
+					if (valueTotal > 0) {
+						route[code] = next.size();
+						next.add(new Slot(node, schema.getValue(best.attribute, code), childPath));
+					}
+					else {
+						route[code] = -1;
+					}
+				}
+			}
+			slot.routeAttribute = best.attribute;
+			slot.route = route;
+		}
+
+		node.setMajorityClass(majority);
+		node.setRowRange(-1, total); //no shared row index array in a level-wise build
+		if (listener != null) listener.nodeCreated(node, slot.path.size());
+		if (slot.parent != null) {
+			node.setParent(slot.parent);
+			slot.parent.addChildNode(slot.edge, node);
+		}
+		slot.counts = null;
+		return node;
+	}
+
+
+	//helper function to count a split's children towards maxNodes, false if they would not fit
+	boolean reserveChildren(Slot slot, Split best) {
+		int numChildren = 2;
+		if (!best.isThreshold()) {
+			int[] table = table(slot, best.attribute);
+			numChildren = 0;
+			for (int code = 0; code < schema.getCardinality(best.attribute); code++) {
+				int valueTotal = 0;
+				for (int c = 0; c < numClasses; c++) {
+					valueTotal += table[code * numClasses + c];
+				}
+				if (valueTotal > 0) numChildren++;
+			}
+		}
+		if (nodes + numChildren > maxNodes) {
+			return false;
+		}
+		nodes += numChildren;
+		return true;
+	}
+
+
+	//helper function for the number of attributes scored for a slot
+	int numCandidates(Slot slot) {
+		int count = 0;
+		for (int attr = 0; attr < schema.getNumAttributes(); attr++) {
+			if (attr != classIndex && (schema.isNumeric(attr) || !slot.path.contains(schema.getAttributeName(attr)))) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+
+	/*
+	 * Finds the best split of a counted slot, as ID3.findBestSplit does from the rows
+	 *
+	 * @param slot - the counted slot
+	 * @return the best split; its attribute is -1 if no split has a positive gain
+	 */
+	Split findBestSplit(Slot slot) {
+
+		Split best = new Split(-1, 0, Double.NaN);
+		for (int attr = 0; attr < schema.getNumAttributes(); attr++) {
+			if (attr == classIndex) continue;
+			Split split;
+			if (schema.isNumeric(attr)) {
+				split = ThresholdSearch.sweep(table(slot, attr), schema.rankValues[attr], numClasses, attr);
+			}
+			else if (!slot.path.contains(schema.getAttributeName(attr))) {
+				ContingencyTable table = new ContingencyTable(table(slot, attr), schema.getCardinality(attr), numClasses);
+				split = new Split(attr, table.informationGain(), Double.NaN);
+			}
+			else {
+				continue;
+			}
+			//strict > in header order, so ties go to the first attribute
+			if (split.gain > best.gain) {
+				best = split;
+			}
+		}
+		return best;
+	}
+
+
+	//helper function for a copy of one attribute's count table of a slot
+	int[] table(Slot slot, int attr) {
+		return Arrays.copyOfRange(slot.counts, tableOffset[attr], tableOffset[attr] + tableWidth(attr) * numClasses);
+	}
+
+	//helper function for the number of rows of an attribute's count table: ranks for a numeric attribute, codes otherwise
+	int tableWidth(int attr) {
+		return schema.isNumeric(attr) ? schema.rankValues[attr].length : schema.getCardinality(attr);
+	}
+
+
+	//getter function for the number of passes over the rows in the last build
+	public int getPasses() {
+		return this.passes;
+	}
+
+}
@@ -0,0 +1,95 @@
+package Q4;
+
+import java.nio.IntBuffer;
+
+/*
+ * A compiled decision tree loaded by ModelFile.load. It predicts the same way as
+ * CompiledTree, but reads the node arrays from the memory-mapped model file
+ * instead of from heap arrays.
+ */
+public class MappedModel extends CompiledTree {
+
+	IntBuffer mappedNodes; //the nodes array, as laid out in CompiledTree
+	IntBuffer mappedChildTable; //the child table, as laid out in CompiledTree
+
+
+	//constructor used by ModelFile.load, which fills in the fields
+	MappedModel() {
+	}
+
+
+	@Override
+	public int predict(int[] row) {
+
+		IntBuffer nodes = this.mappedNodes;
+		IntBuffer childTable = this.mappedChildTable;
+		int n = 0;
+		int attr;
+		while ((attr = nodes.get(2 * n)) != -1) {
+			int offset = nodes.get(2 * n + 1);
+			if (attr >= 0) {
+				int code = row[attr];
+				if (code < 0 || code >= cardinality[attr]) return -1;
+				n = childTable.get(offset + code);
+			}
+			else { //threshold split
+				int code = row[-attr - 2];
+				if (code < 0) return -1;
+				n = childTable.get(code <= childTable.get(offset) ? offset + 1 : offset + 2);
+			}
+			if (n < 0) return -1;
+		}
+		return nodes.get(2 * n + 1);
+	}
+
+
+	@Override
+	void walk(int[][] columns, int[][] translations, int[] rows, int from, int to, int[] out, int outOffset) {
+
+		IntBuffer nodes = this.mappedNodes;
+		IntBuffer childTable = this.mappedChildTable;
+
+		for (int i = from; i < to; i++) {
+			int row = rows == null ? i : rows[i];
+			int n = 0;
+			int attr;
+			while ((attr = nodes.get(2 * n)) != -1) {
+				int offset = nodes.get(2 * n + 1);
+				if (attr >= 0) {
+					int code = translations[attr][columns[attr][row]];
+					n = code < 0 ? -1 : childTable.get(offset + code);
+				}
+				else { //threshold split
+					int a = -attr - 2;
+					int code = translations[a][columns[a][row]];
+					n = code < 0 ? -1 : childTable.get(code <= childTable.get(offset) ? offset + 1 : offset + 2);
+				}
+				if (n < 0) break;
+			}
+			out[outOffset + i - from] = n < 0 ? -1 : nodes.get(2 * n + 1);
+		}
+	}
+
+
+	@Override
+	int nodeAttribute(int n) {
+		return mappedNodes.get(2 * n);
+	}
+
+
+	@Override
+	int[] nodeArray() {
+		int[] copy = new int[numNodes * 2];
+		mappedNodes.duplicate().get(copy);
+		return copy;
+	}
+
+
+	@Override
+	int[] childArray() {
+		int[] copy = new int[childTableSize];
+		mappedChildTable.duplicate().get(copy);
+		return copy;
+	}
+
+}
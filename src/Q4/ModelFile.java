@@ -0,0 +1,231 @@
+package Q4;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/*
+ * Saves a compiled decision tree to a compact binary file and loads it back
+ * as a MappedModel that predicts straight from the memory-mapped file.
+ *
+ * File layout (big-endian):
+ *   int     magic ("ID3M")
+ *   int     format version
+ *   int     number of attributes
+ *   int     class attribute index
+ *   for each attribute: string name, int cardinality, cardinality x string value,
+ *                       int number of cuts (-1 for a categorical attribute), cuts x double cut (version 2),
+ *                       int number of aliases, aliases x (string value, int code) (version 3)
+ *   padding to a multiple of 4 bytes
+ *   int     number of nodes
+ *   int     child table size
+ *   int[]   nodes (2 per node, as in CompiledTree)
+ *   int[]   child table
+ * where a string is an int byte length followed by the UTF-8 bytes.
+ * Aliases are values looked up to a code other than their own, such as the original
+ * values of a binned attribute (see Binning).
+ * Version 1 and 2 files (written before numeric attributes and binning) are still loaded.
+ */
+public class ModelFile {
+
+	static final int MAGIC = 0x4944334D; //"ID3M"
+	static final int VERSION = 3;
+
+
+	/*
+	 * Writes a compiled tree to a file
+	 *
+	 * @param tree - the compiled tree
+	 * @param path - the filepath of the model file
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void save(CompiledTree tree, String path) throws IOException {
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(tree.header.length);
+			out.writeInt(tree.classIndex);
+			for (int i = 0; i < tree.header.length; i++) {
+				writeString(out, tree.header[i]);
+				ArrayList<String> dictionary = tree.dictionaries.get(i);
+				out.writeInt(dictionary.size());
+				for (String value : dictionary) {
+					writeString(out, value);
+				}
+				double[] cuts = tree.cuts[i];
+				out.writeInt(cuts == null ? -1 : cuts.length);
+				if (cuts != null) {
+					for (double cut : cuts) {
+						out.writeDouble(cut);
+					}
+				}
+				ArrayList<String> aliases = new ArrayList<String>();
+				for (String value : tree.lookups.get(i).keySet()) {
+					int code = tree.lookups.get(i).get(value);
+					if (!dictionary.get(code).equals(value)) {
+						aliases.add(value);
+					}
+				}
+				out.writeInt(aliases.size());
+				for (String value : aliases) {
+					writeString(out, value);
+					out.writeInt(tree.lookups.get(i).get(value));
+				}
+			}
+			while (out.size() % 4 != 0) { //align the int arrays
+				out.writeByte(0);
+			}
+			int[] nodes = tree.nodeArray();
+			int[] childTable = tree.childArray();
+			out.writeInt(tree.numNodes);
+			out.writeInt(childTable.length);
+			for (int i = 0; i < tree.numNodes * 2; i++) {
+				out.writeInt(nodes[i]);
+			}
+			for (int child : childTable) {
+				out.writeInt(child);
+			}
+		}
+	}
+
+
+	/*
+	 * Maps a model file and reads its header and dictionaries. The node arrays are not
+	 * copied; predictions read them from the mapped file, so processes that load the
+	 * same model share its pages.
+	 *
+	 * @param path - the filepath of the model file
+	 * @return the mapped model
+	 * @throws IOException if the file cannot be read, is truncated or corrupt, or is not a model file of a supported version
+	 */
+	public static MappedModel load(String path) throws IOException {
+
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+			throw new IOException(path + " is not a decision tree model file");
+		}
+		int version = buffer.getInt();
+		if (version < 1 || version > VERSION) {
+			throw new IOException("unsupported model file version " + version);
+		}
+		try {
+			return read(buffer, version, path);
+		} catch (BufferUnderflowException e) {
+			throw new IOException(path + " is truncated");
+		}
+	}
+
+
+	/*
+	 * Reads the header, dictionaries and node arrays of a model file after its version.
+	 * Every count and string length is checked against the bytes left, so a damaged file
+	 * underflows rather than allocating from a bad count.
+	 *
+	 * @param buffer - the mapped file, positioned after the version
+	 * @return the mapped model
+	 * @throws IOException if the class index is not an attribute's or the node arrays run past the end of the file
+	 */
+	static MappedModel read(MappedByteBuffer buffer, int version, String path) throws IOException {
+
+		MappedModel model = new MappedModel();
+		int numAttributes = readCount(buffer, 8); //at least a name length and a cardinality each
+		model.classIndex = buffer.getInt();
+		if (model.classIndex < 0 || model.classIndex >= numAttributes) {
+			throw new IOException(path + " has class attribute index " + model.classIndex + " of " + numAttributes + " attributes");
+		}
+		model.header = new String[numAttributes];
+		model.cardinality = new int[numAttributes];
+		model.cuts = new double[numAttributes][];
+		model.dictionaries = new ArrayList<ArrayList<String>>();
+		for (int i = 0; i < numAttributes; i++) {
+			model.header[i] = readString(buffer);
+			int cardinality = readCount(buffer, 4);
+			ArrayList<String> dictionary = new ArrayList<String>(cardinality);
+			HashMap<String, Integer> lookup = new HashMap<String, Integer>();
+			for (int code = 0; code < cardinality; code++) {
+				String value = readString(buffer);
+				dictionary.add(value);
+				lookup.put(value, code);
+			}
+			model.cardinality[i] = cardinality;
+			int numCuts = version >= 2 ? buffer.getInt() : -1;
+			if (numCuts < -1 || numCuts * 8L > buffer.remaining()) {
+				throw new BufferUnderflowException();
+			}
+			if (numCuts >= 0) {
+				model.cuts[i] = new double[numCuts];
+				for (int j = 0; j < numCuts; j++) {
+					model.cuts[i][j] = buffer.getDouble();
+				}
+				model.cardinality[i] = numCuts + 1;
+			}
+			int numAliases = version >= 3 ? readCount(buffer, 8) : 0;
+			for (int j = 0; j < numAliases; j++) {
+				String value = readString(buffer);
+				lookup.put(value, buffer.getInt());
+			}
+			model.dictionaries.add(dictionary);
+			model.lookups.add(lookup);
+		}
+		int aligned = (buffer.position() + 3) & ~3;
+		if (aligned > buffer.limit()) {
+			throw new BufferUnderflowException();
+		}
+		buffer.position(aligned);
+
+		model.numNodes = buffer.getInt();
+		int childTableSize = buffer.getInt();
+		if (model.numNodes < 0 || (long)model.numNodes * 8 > buffer.remaining()) {
+			throw new IOException(path + " is truncated");
+		}
+		model.mappedNodes = buffer.slice().asIntBuffer();
+		buffer.position(buffer.position() + model.numNodes * 8);
+		model.mappedChildTable = buffer.slice().asIntBuffer();
+		if (childTableSize < 0 || model.mappedChildTable.remaining() < childTableSize) {
+			throw new IOException(path + " is truncated");
+		}
+		model.childTableSize = childTableSize;
+		return model;
+	}
+
+
+	//helper function to write a length-prefixed UTF-8 string
+	static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	//helper function to read a length-prefixed UTF-8 string; a length past the end of the buffer underflows
+	static String readString(ByteBuffer buffer) {
+		int length = readCount(buffer, 1);
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	//helper function to read a count of elements of at least elementBytes each; a count that is negative or past the end of the buffer underflows
+	static int readCount(ByteBuffer buffer, int elementBytes) {
+		int count = buffer.getInt();
+		if (count < 0 || (long)count * elementBytes > buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		return count;
+	}
+
+}
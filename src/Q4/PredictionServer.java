@@ -0,0 +1,355 @@
+package Q4;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * A scoring server that loads a trained tree once and predicts rows sent to it over
+ * plain TCP.
+ *
+ * Protocol (UTF-8 lines): each request is one csv row in the training dataset's
+ * column order (the class value may be left empty) and is answered with one line
+ * holding the predicted class, or "?" if the tree has no edge for one of its values.
+ * The line STATS is answered with the request count, throughput, p50/p99 latency and
+ * batch sizes since the server started.
+ *
+ * Each connection is handled on its own thread: a virtual thread when the JVM has
+ * them (Java 21+), or else a thread of a platform thread pool. Connection threads
+ * only parse and encode rows; the encoded rows are queued to one batching thread
+ * that takes every row waiting (up to maxBatch, optionally waiting maxDelay for more)
+ * and walks them through the tree together, so the model's arrays stay in one core's
+ * cache under many concurrent requests. Latency is measured from reading a request
+ * to writing its answer.
+ *
+ * Run with:  java Q4.PredictionServer <model file> <port> [max batch] [max delay in microseconds]
+ */
+public class PredictionServer implements Closeable {
+
+	static final String STATS = "STATS";
+	static final String UNKNOWN = "?"; //answer when the tree cannot classify a row
+	static final int DEFAULT_MAX_BATCH = 256;
+	static final int BACKLOG = 4096; //pending connections, for thousands of clients connecting at once
+
+	CompiledTree model;
+	int maxBatch; //the most rows walked in one batch
+	long maxDelayNanos; //how long a batch waits for more rows, 0 to take only those already waiting
+	ServerSocket server;
+	ExecutorService connections;
+	Set<Socket> clients = ConcurrentHashMap.newKeySet(); //the open connections, closed by close()
+	Thread acceptor;
+	Thread batcher;
+	LinkedBlockingQueue<Request> queue = new LinkedBlockingQueue<Request>();
+	volatile boolean running;
+
+	//counters since start
+	long startNanos;
+	AtomicLong requests = new AtomicLong();
+	AtomicLong batches = new AtomicLong();
+	LatencyHistogram latencies = new LatencyHistogram();
+
+
+	/*
+	 * Constructor for a server on a loopback port; start() begins serving
+	 *
+	 * @param model - the trained tree
+	 * @param port - the port, or 0 for any free port
+	 * @param maxBatch - the most rows walked through the tree in one batch
+	 * @param maxDelayMicros - how long a batch waits for more rows, 0 to take only the rows already waiting
+	 * @throws IOException if the port cannot be bound
+	 */
+	public PredictionServer(CompiledTree model, int port, int maxBatch, long maxDelayMicros) throws IOException {
+		this.model = model;
+		this.maxBatch = Math.max(1, maxBatch);
+		this.maxDelayNanos = Math.max(0, maxDelayMicros) * 1000;
+		this.server = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress());
+	}
+
+
+	/*
+	 * Starts the accepting and batching threads
+	 */
+	public void start() {
+
+		running = true;
+		startNanos = System.nanoTime();
+		connections = newThreadPerTaskExecutor();
+		batcher = new Thread(this::batchLoop, "prediction-batcher");
+		batcher.setDaemon(true);
+		batcher.start();
+		acceptor = new Thread(this::acceptLoop, "prediction-acceptor"); //keeps the JVM alive until close()
+		acceptor.start();
+	}
+
+
+	/*
+	 * Makes an executor that runs each task on a new virtual thread if the JVM has them
+	 * (looked up by reflection, so the code still compiles and runs on older JVMs), or
+	 * else on a cached pool of daemon platform threads
+	 *
+	 * @return the executor
+	 */
+	public static ExecutorService newThreadPerTaskExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool(task -> {
+				Thread thread = new Thread(task);
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+
+	//accepts connections until the server is closed
+	void acceptLoop() {
+		while (running) {
+			try {
+				Socket socket = server.accept();
+				clients.add(socket);
+				if (!running) {
+					//close() may have missed it
+					socket.close();
+					break;
+				}
+				connections.execute(() -> serve(socket));
+			} catch (IOException e) {
+				if (running) e.printStackTrace();
+			}
+		}
+	}
+
+
+	/*
+	 * Answers the requests of one connection until the client closes it or the server
+	 * is closed
+	 *
+	 * @param socket - the client connection
+	 */
+	void serve(Socket socket) {
+
+		int[] row = new int[model.getNumAttributes()];
+		Request request = new Request(row);
+		try (Socket s = socket) {
+			s.setTcpNoDelay(true);
+			BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+			Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8));
+			String line;
+			while (running && (line = in.readLine()) != null) {
+				long received = System.nanoTime();
+				if (line.equals(STATS)) {
+					out.write(getStats());
+					out.write('\n');
+					out.flush();
+					continue;
+				}
+				model.encode(parseRow(line), row);
+				int classCode = request.submit(queue);
+				String label = model.getClassLabel(classCode);
+				out.write(label == null ? UNKNOWN : label);
+				out.write('\n');
+				out.flush();
+				requests.incrementAndGet();
+				latencies.record(System.nanoTime() - received);
+			}
+		} catch (SocketException e) {
+			//the client went away
+		} catch (IOException e) {
+			if (running) e.printStackTrace();
+		} finally {
+			clients.remove(socket);
+		}
+	}
+
+
+	//takes the waiting requests in batches and predicts them, until the server is closed
+	void batchLoop() {
+
+		ArrayList<Request> batch = new ArrayList<Request>(maxBatch);
+		while (running) {
+			try {
+				Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null) continue;
+				batch.add(first);
+				queue.drainTo(batch, maxBatch - 1);
+				if (maxDelayNanos > 0) {
+					long deadline = System.nanoTime() + maxDelayNanos;
+					while (batch.size() < maxBatch) {
+						Request next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+						if (next == null) break;
+						batch.add(next);
+						queue.drainTo(batch, maxBatch - batch.size());
+					}
+				}
+			} catch (InterruptedException e) {
+				break;
+			}
+
+			//walk the whole batch, then wake its waiters
+			long start = System.nanoTime();
+			TreeEvents.Prediction event = new TreeEvents.Prediction();
+			event.begin();
+			for (Request request : batch) {
+				request.result = model.predict(request.row);
+			}
+			model.predicted(event, batch.size(), start);
+			for (Request request : batch) {
+				request.complete();
+			}
+			batches.incrementAndGet();
+			batch.clear();
+		}
+	}
+
+
+	/*
+	 * Splits a csv line into its fields; a field may be quoted, with "" for a quote inside it
+	 *
+	 * @param line - the line
+	 * @return the fields
+	 */
+	static ArrayList<String> parseRow(String line) {
+
+		ArrayList<String> fields = new ArrayList<String>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (quoted) {
+				if (c != '"') {
+					field.append(c);
+				}
+				else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					field.append('"');
+					i++;
+				}
+				else {
+					quoted = false;
+				}
+			}
+			else if (c == '"') {
+				quoted = true;
+			}
+			else if (c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+			}
+			else if (c != '\r') {
+				field.append(c);
+			}
+		}
+		fields.add(field.toString());
+		return fields;
+	}
+
+
+	/*
+	 * Gets the counters since the server started, as one line
+	 *
+	 * @return the request count, throughput (requests/s), p50 and p99 latency (microseconds) and mean batch size
+	 */
+	public String getStats() {
+		long count = requests.get();
+		double seconds = (System.nanoTime() - startNanos) / 1e9;
+		long numBatches = batches.get();
+		return String.format("requests=%d throughput=%.0f/s p50=%.1fus p99=%.1fus batches=%d meanBatch=%.2f",
+				count, count / seconds, latencies.getPercentile(50) / 1e3, latencies.getPercentile(99) / 1e3,
+				numBatches, numBatches == 0 ? 0.0 : (double)count / numBatches);
+	}
+
+	//getter function for the port the server listens on
+	public int getPort() {
+		return server.getLocalPort();
+	}
+
+
+	//stops accepting and batching, and closes the open connections
+	@Override
+	public void close() throws IOException {
+		running = false;
+		server.close();
+		//a blocked socket read ignores interrupts, so each connection is closed to end its thread
+		for (Socket socket : clients) {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				//already closed
+			}
+		}
+		clients.clear();
+		if (connections != null) connections.shutdownNow();
+		if (batcher != null) batcher.interrupt();
+	}
+
+
+	/*
+	 * Loads a model file and serves it until the process is stopped
+	 */
+	public static void main(String[] args) throws IOException {
+
+		if (args.length < 2) {
+			System.err.println("usage: java Q4.PredictionServer <model file> <port> [max batch] [max delay in microseconds]");
+			return;
+		}
+		CompiledTree model = ModelFile.load(args[0]);
+		int maxBatch = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MAX_BATCH;
+		long maxDelayMicros = args.length > 3 ? Long.parseLong(args[3]) : 0;
+		PredictionServer server = new PredictionServer(model, Integer.parseInt(args[1]), maxBatch, maxDelayMicros);
+		server.start();
+		System.out.println("serving " + args[0] + " (" + model.getNumNodes() + " nodes) on port " + server.getPort());
+	}
+
+
+	/*
+	 * One connection's pending prediction. A connection has at most one request in the
+	 * queue at a time, so its Request (and row array) is reused for every line.
+	 */
+	static class Request {
+
+		int[] row;
+		volatile int result;
+		volatile boolean done;
+		Thread waiter;
+
+		Request(int[] row) {
+			this.row = row;
+		}
+
+		//queues the request and parks until the batching thread has predicted it
+		int submit(LinkedBlockingQueue<Request> queue) {
+			done = false;
+			waiter = Thread.currentThread();
+			queue.add(this);
+			while (!done) {
+				LockSupport.park(this);
+				if (Thread.currentThread().isInterrupted()) return -1; //the server is closing
+			}
+			return result;
+		}
+
+		void complete() {
+			done = true;
+			LockSupport.unpark(waiter);
+		}
+	}
+
+}
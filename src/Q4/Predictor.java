@@ -0,0 +1,27 @@
+package Q4;
+
+/*
+ * Predicts classes from encoded rows. Both the interpreted CompiledTree and the
+ * classes TreeCodegen generates from one are Predictors, and give the same class
+ * for every row, so either can be used wherever rows are scored.
+ */
+public interface Predictor {
+
+	/*
+	 * Predicts the class of one encoded row
+	 *
+	 * @param row - the code of each attribute, as CompiledTree.encode gives them
+	 *              (interval codes for numeric attributes, -1 for unseen values)
+	 * @return the class code, or -1 if the row reaches a value with no edge
+	 */
+	int predict(int[] row);
+
+	/*
+	 * Predicts the class of each encoded row
+	 *
+	 * @param rows - the encoded rows, as for predict(int[])
+	 * @param out - filled with the class code (or -1) of each row
+	 */
+	void predictBatch(int[][] rows, int[] out);
+
+}
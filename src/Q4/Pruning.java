@@ -0,0 +1,132 @@
+package Q4;
+
+import java.util.ArrayList;
+
+/*
+ * Reduced-error post-pruning of a built decision tree against a holdout set: rows
+ * that were not used to build the tree.
+ *
+ * Working bottom-up, each internal node is replaced by a leaf of its majority class
+ * (DTNode.getMajorityClass) when that leaf gets no more holdout rows wrong than the
+ * node's subtree does. Subtrees that only fit noise in the training rows are cut
+ * back this way, and the holdout accuracy never goes down.
+ *
+ * Only nodes that know their majority class are pruned, i.e. those of the encoded
+ * builds (ID3.buildDecisionTree(Dataset) and the parallel and level-wise builds).
+ */
+public class Pruning {
+
+
+	/*
+	 * Prunes a tree against every row of a holdout dataset
+	 *
+	 * @param root - the root of the tree, pruned in place
+	 * @param holdout - the holdout rows; its columns are matched to the tree by attribute name
+	 * @param classAttribute - the class attribute
+	 * @return the number of nodes removed
+	 */
+	public static int reducedError(DTNode root, Dataset holdout, String classAttribute) {
+		int[] rows = new int[holdout.getNumRows()];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = i;
+		}
+		return reducedError(root, holdout, classAttribute, rows, 0, rows.length);
+	}
+
+
+	/*
+	 * Overloaded function reducedError() for a range of row indices, e.g. the rows of a
+	 * dataset held out from training
+	 *
+	 * @param rows - the row indices; rows[from, to) are reordered
+	 * @param from - the first position in rows (inclusive)
+	 * @param to - the last position in rows (exclusive)
+	 * @return the number of nodes removed
+	 */
+	public static int reducedError(DTNode root, Dataset holdout, String classAttribute, int[] rows, int from, int to) {
+		int classIndex = holdout.getAttributeIndex(classAttribute);
+		if (classIndex < 0) {
+			throw new IllegalArgumentException("no class attribute " + classAttribute + " in the holdout set");
+		}
+		int[] removed = new int[1];
+		prune(root, holdout, classIndex, rows, from, to, new int[to - from], removed);
+		return removed[0];
+	}
+
+
+	/*
+	 * The recursive step: prunes the children first, then the node itself
+	 *
+	 * @param node - the node
+	 * @param holdout - the holdout dataset
+	 * @param classIndex - the column index of the class attribute in the holdout set
+	 * @param rows - the row indices; rows[from, to) are the holdout rows that reach the node
+	 * @param scratch - a work array of at least to - from ints
+	 * @param removed - removed[0] is added the number of nodes removed
+	 * @return the holdout rows the (pruned) node gets wrong
+	 */
+	static int prune(DTNode node, Dataset holdout, int classIndex, int[] rows, int from, int to, int[] scratch, int[] removed) {
+
+		if (node.getType().contentEquals("leaf")) {
+			return errors(node.getValue(), holdout, classIndex, rows, from, to);
+		}
+
+		//route each row to a child, one lookup per value code instead of per row
+		int attr = holdout.getAttributeIndex(node.getValue());
+		ArrayList<DTNode> children = new ArrayList<DTNode>(node.children.values());
+		int numChildren = children.size();
+		int[] route = new int[attr < 0 ? 0 : holdout.getCardinality(attr)];
+		for (int code = 0; code < route.length; code++) {
+			route[code] = children.indexOf(node.getChild(holdout.getValue(attr, code)));
+			if (route[code] < 0) route[code] = numChildren; //no edge for the value
+		}
+
+		//counting sort of the rows by child, the rows with no edge last: child c gets rows[bounds[c], bounds[c + 1])
+		int[] column = attr < 0 ? null : holdout.getColumn(attr);
+		int[] bounds = new int[numChildren + 2];
+		for (int i = from; i < to; i++) {
+			bounds[(column == null ? numChildren : route[column[rows[i]]]) + 1]++;
+		}
+		bounds[0] = from;
+		for (int child = 1; child < bounds.length; child++) {
+			bounds[child] += bounds[child - 1];
+		}
+		int[] next = bounds.clone();
+		for (int i = from; i < to; i++) {
+			int child = column == null ? numChildren : route[column[rows[i]]];
+			scratch[next[child]++ - from] = rows[i];
+		}
+		System.arraycopy(scratch, 0, rows, from, to - from);
+
+		//rows that no edge fits are wrong, as they are when predicting
+		int subtreeErrors = to - bounds[numChildren];
+		for (int child = 0; child < numChildren; child++) {
+			subtreeErrors += prune(children.get(child), holdout, classIndex, rows, bounds[child], bounds[child + 1], scratch, removed);
+		}
+
+		String majority = node.getMajorityClass();
+		if (majority == null) {
+			return subtreeErrors;
+		}
+		int leafErrors = errors(majority, holdout, classIndex, rows, from, to);
+		if (leafErrors <= subtreeErrors) {
+			removed[0] += ID3.countNodes(node) - 1;
+			node.makeLeaf(majority);
+			return leafErrors;
+		}
+		return subtreeErrors;
+	}
+
+
+	//helper function to count the rows in a range whose class is not the given one
+	static int errors(String classValue, Dataset holdout, int classIndex, int[] rows, int from, int to) {
+		int classCode = holdout.encode(classIndex, classValue); //-1 if no holdout row has the class
+		int[] classColumn = holdout.getColumn(classIndex);
+		int errors = 0;
+		for (int i = from; i < to; i++) {
+			if (classColumn[rows[i]] != classCode) errors++;
+		}
+		return errors;
+	}
+
+}
@@ -0,0 +1,309 @@
+package Q4;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/*
+ * A dataset of wide, mostly zero rows (one-hot or indicator features) held in
+ * compressed sparse row (CSR) form: only the non-zero entries are stored, so memory
+ * grows with the non-zeros instead of rows x features.
+ *
+ * The entries of row r are positions rowStart[r] to rowStart[r + 1] of the features
+ * and codes arrays, in ascending feature order. Each feature is categorical: code 0
+ * is the default value "0" (an entry not stored), and codes 1.. are its distinct
+ * non-zero values in the order first seen. Class values are coded in the same way
+ * as a Dataset's, in the order first seen.
+ *
+ * Sparse datasets are built with SparseTreeBuilder.
+ */
+public class SparseDataset {
+
+	static final String DEFAULT_VALUE = "0"; //the value of every entry not stored
+
+	int numRows;
+	int numFeatures;
+	int[] rowStart; //rowStart[r] = position of row r's first entry, rowStart[numRows] = the number of entries
+	int[] features; //the feature of each entry
+	int[] codes; //the value code (1 or more) of each entry
+	String[][] values; //values[feature][code - 1] = a non-zero value of the feature, null for features with none
+	int[] labels; //the class code of each row
+	ArrayList<String> classValues; //classValues[class code] = the class value
+
+
+	//constructor for a dataset filled in by a loader
+	SparseDataset(int numRows, int numFeatures, int[] rowStart, int[] features, int[] codes, String[][] values,
+			int[] labels, ArrayList<String> classValues) {
+		this.numRows = numRows;
+		this.numFeatures = numFeatures;
+		this.rowStart = rowStart;
+		this.features = features;
+		this.codes = codes;
+		this.values = values;
+		this.labels = labels;
+		this.classValues = classValues;
+	}
+
+
+	/*
+	 * Loads a file in LIBSVM format: one row per line, the class label then the row's
+	 * non-zero entries as feature:value pairs separated by spaces, e.g.
+	 *   +1 3:1 17:1 204:0.5
+	 * Feature numbers are used as they are, so with the usual 1-based numbering feature 0
+	 * is always zero. Entries whose value is zero, and tokens that are not feature:value
+	 * pairs (e.g. qid:), are skipped; everything after a # is a comment.
+	 *
+	 * @param path - the filepath to the LIBSVM file
+	 * @return the sparse dataset
+	 * @throws IOException if the file cannot be read or a feature number is not a number
+	 */
+	public static SparseDataset loadLibsvm(String path) throws IOException {
+		try (InputStream in = new BufferedInputStream(new FileInputStream(path), 1 << 16)) {
+			return loadLibsvm(in);
+		}
+	}
+
+
+	/*
+	 * Overloaded function loadLibsvm() for a stream, which is read to its end
+	 */
+	public static SparseDataset loadLibsvm(InputStream in) throws IOException {
+
+		LibsvmHandler handler = new LibsvmHandler();
+		byte[] chunk = new byte[1 << 16];
+		byte[] token = new byte[64];
+		int tokenLen = 0;
+		boolean comment = false;
+		int n;
+		while ((n = in.read(chunk)) > 0) {
+			for (int i = 0; i < n; i++) {
+				byte b = chunk[i];
+				if (b == '\n' || b == '\r') {
+					if (tokenLen > 0) handler.token(token, tokenLen);
+					tokenLen = 0;
+					comment = false;
+					handler.endLine();
+				}
+				else if (comment) {
+					continue;
+				}
+				else if (b == ' ' || b == '\t' || b == '#') {
+					if (tokenLen > 0) handler.token(token, tokenLen);
+					tokenLen = 0;
+					comment = b == '#';
+				}
+				else {
+					if (tokenLen == token.length) {
+						token = Arrays.copyOf(token, tokenLen * 2);
+					}
+					token[tokenLen++] = b;
+				}
+			}
+		}
+		if (tokenLen > 0) handler.token(token, tokenLen);
+		handler.endLine();
+		return handler.toDataset();
+	}
+
+
+	/*
+	 * Collects the tokens of a LIBSVM file into growable CSR arrays
+	 */
+	static class LibsvmHandler {
+
+		ByteDictionary classes = new ByteDictionary();
+		ByteDictionary valueBytes = new ByteDictionary(); //every distinct value of any feature
+		HashMap<Long, Integer> localCodes = new HashMap<Long, Integer>(); //feature << 32 | value -> the feature's code
+		ArrayList<ArrayList<String>> featureValues = new ArrayList<ArrayList<String>>();
+		int[] rowStart = new int[1024];
+		int[] features = new int[1024];
+		int[] codes = new int[1024];
+		int[] labels = new int[1024];
+		int numRows;
+		int numEntries;
+		boolean hasLabel; //the current line has its class label
+		boolean sorted = true; //the current line's features are in ascending order
+
+		//adds one token of the current line
+		void token(byte[] token, int len) throws IOException {
+			if (!hasLabel) {
+				hasLabel = true;
+				if (numRows == labels.length) {
+					labels = Arrays.copyOf(labels, numRows * 2);
+				}
+				labels[numRows] = classes.getOrAdd(token, 0, len);
+				return;
+			}
+			int colon = 0;
+			while (colon < len && token[colon] != ':') colon++;
+			if (colon == 0 || colon == len || !isDigits(token, 0, colon)) return; //not feature:value
+			if (isZero(token, colon + 1, len - colon - 1)) return;
+
+			long feature = 0;
+			for (int i = 0; i < colon; i++) {
+				feature = feature * 10 + (token[i] - '0');
+				if (feature > Integer.MAX_VALUE - 1) throw new IOException("feature number too large in line " + (numRows + 1));
+			}
+			int value = valueBytes.getOrAdd(token, colon + 1, len - colon - 1);
+			while (featureValues.size() <= feature) {
+				featureValues.add(null);
+			}
+			Integer code = localCodes.get(feature << 32 | value);
+			if (code == null) {
+				if (featureValues.get((int)feature) == null) {
+					featureValues.set((int)feature, new ArrayList<String>());
+				}
+				featureValues.get((int)feature).add(valueBytes.getValues().get(value));
+				code = featureValues.get((int)feature).size();
+				localCodes.put(feature << 32 | value, code);
+			}
+
+			if (numEntries == features.length) {
+				features = Arrays.copyOf(features, numEntries * 2);
+				codes = Arrays.copyOf(codes, numEntries * 2);
+			}
+			if (numEntries > rowStart[numRows] && features[numEntries - 1] >= feature) {
+				sorted = false;
+			}
+			features[numEntries] = (int)feature;
+			codes[numEntries] = code;
+			numEntries++;
+		}
+
+		//ends the current line; a line without tokens is skipped
+		void endLine() {
+			if (!hasLabel) return;
+			if (!sorted) {
+				sortRow(rowStart[numRows], numEntries);
+				sorted = true;
+			}
+			hasLabel = false;
+			numRows++;
+			if (numRows + 1 >= rowStart.length) {
+				rowStart = Arrays.copyOf(rowStart, rowStart.length * 2);
+			}
+			rowStart[numRows] = numEntries;
+		}
+
+		//sorts a row's entries by feature (insertion sort, rows are short and mostly sorted already);
+		//a feature given twice keeps its last value
+		void sortRow(int from, int to) {
+			for (int i = from + 1; i < to; i++) {
+				int feature = features[i];
+				int code = codes[i];
+				int j = i - 1;
+				while (j >= from && features[j] > feature) {
+					features[j + 1] = features[j];
+					codes[j + 1] = codes[j];
+					j--;
+				}
+				features[j + 1] = feature;
+				codes[j + 1] = code;
+			}
+			int last = from;
+			for (int i = from; i < to; i++) {
+				if (i + 1 < to && features[i + 1] == features[i]) continue;
+				features[last] = features[i];
+				codes[last] = codes[i];
+				last++;
+			}
+			numEntries = last;
+		}
+
+		SparseDataset toDataset() {
+			String[][] values = new String[featureValues.size()][];
+			for (int f = 0; f < values.length; f++) {
+				if (featureValues.get(f) != null) {
+					values[f] = featureValues.get(f).toArray(new String[0]);
+				}
+			}
+			return new SparseDataset(numRows, values.length, Arrays.copyOf(rowStart, numRows + 1), Arrays.copyOf(features, numEntries),
+					Arrays.copyOf(codes, numEntries), values, Arrays.copyOf(labels, numRows), classes.getValues());
+		}
+	}
+
+
+	//helper function to check a run of bytes is all digits
+	static boolean isDigits(byte[] buf, int off, int len) {
+		for (int i = off; i < off + len; i++) {
+			if (buf[i] < '0' || buf[i] > '9') return false;
+		}
+		return true;
+	}
+
+	//helper function to check if a value is a zero, e.g. 0, 0.0 or -0e5
+	static boolean isZero(byte[] buf, int off, int len) {
+		boolean digits = false;
+		for (int i = off; i < off + len; i++) {
+			byte b = buf[i];
+			if (b == 'e' || b == 'E') break;
+			if (b >= '1' && b <= '9') return false;
+			if (b == '0') digits = true;
+			else if (b != '.' && b != '-' && b != '+') return false;
+		}
+		return digits;
+	}
+
+
+	/*
+	 * Looks up the value code of one entry, by binary search of the row's entries
+	 *
+	 * @param row - the row
+	 * @param feature - the feature
+	 * @return the code of the value, 0 if the entry is zero
+	 */
+	public int getCode(int row, int feature) {
+		int position = Arrays.binarySearch(features, rowStart[row], rowStart[row + 1], feature);
+		return position >= 0 ? codes[position] : 0;
+	}
+
+	//getter function for a value of a feature, "0" for code 0
+	public String getValue(int feature, int code) {
+		return code == 0 ? DEFAULT_VALUE : values[feature][code - 1];
+	}
+
+	//getter function for the name of a feature: its number
+	public String getFeatureName(int feature) {
+		return Integer.toString(feature);
+	}
+
+	//getter function for the number of codes of a feature, counting the default value
+	public int getCardinality(int feature) {
+		return values[feature] == null ? 1 : values[feature].length + 1;
+	}
+
+	//getter function for the number of rows
+	public int getNumRows() {
+		return numRows;
+	}
+
+	//getter function for the number of features (one more than the largest feature number)
+	public int getNumFeatures() {
+		return numFeatures;
+	}
+
+	//getter function for the number of non-zero entries
+	public int getNumEntries() {
+		return rowStart[numRows];
+	}
+
+	//getter function for the class code of a row
+	public int getLabel(int row) {
+		return labels[row];
+	}
+
+	//getter function for a class value
+	public String getClassValue(int classCode) {
+		return classValues.get(classCode);
+	}
+
+	//getter function for the number of class values
+	public int getNumClasses() {
+		return classValues.size();
+	}
+
+}
@@ -0,0 +1,357 @@
+package Q4;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/*
+ * Builds an ID3 decision tree from a SparseDataset, visiting only the non-zero
+ * entries of each node's rows.
+ *
+ * Every feature is split one branch per value, the default value "0" included,
+ * with the same information gain, tie-breaking and leaf rules as ID3. A node's
+ * count tables only hold its non-default counts: one scan of its rows' entries
+ * fills the tables of every feature that occurs in them, and the default row of
+ * a table is the node's class counts less the rest. Features that do not occur
+ * at all have a gain of 0 and are never looked at, so choosing a split costs the
+ * node's non-zeros, not rows x features.
+ *
+ * The tree's nodes hold feature names (their numbers) and value edges as Strings,
+ * like any DTNode tree; predict() walks it for a row of the dataset.
+ */
+public class SparseTreeBuilder {
+
+	SparseDataset ds;
+	int numClasses;
+	int[] tableOffset; //tableOffset[feature] = start of the feature's non-default counts in counts
+	int[] counts; //counts[tableOffset[f] + (code - 1) * numClasses + class], for the node being split
+	boolean[] touched; //the features with counts at the node being split
+	int[] touchedList;
+	boolean[] used; //the features split on along the path to the node being made
+	int maxDepth = Integer.MAX_VALUE; //stopping rules, as ID3.setStoppingRules
+	int minRows = 0;
+	long entriesScanned; //the non-zero entries read to choose splits in the last build
+	int numNodes; //the nodes and depth of the last tree built
+	int depth;
+
+
+	/*
+	 * Constructor for a builder
+	 *
+	 * @param ds - the sparse dataset to train on
+	 */
+	public SparseTreeBuilder(SparseDataset ds) {
+		this.ds = ds;
+		this.numClasses = ds.getNumClasses();
+		this.tableOffset = new int[ds.getNumFeatures()];
+		int size = 0;
+		for (int f = 0; f < tableOffset.length; f++) {
+			tableOffset[f] = size;
+			size += (ds.getCardinality(f) - 1) * numClasses;
+		}
+		this.counts = new int[size];
+		this.touched = new boolean[ds.getNumFeatures()];
+		this.touchedList = new int[ds.getNumFeatures()];
+		this.used = new boolean[ds.getNumFeatures()];
+	}
+
+
+	//sets the depth and row stopping rules (see ID3.setStoppingRules); trees are grown fully by default
+	public void setStoppingRules(int maxDepth, int minRows) {
+		this.maxDepth = maxDepth;
+		this.minRows = minRows;
+	}
+
+
+	/*
+	 * Builds the tree over every row
+	 *
+	 * Nodes are made depth first from an explicit stack rather than by recursion, since
+	 * a tree of wide, noisy data can be as deep as it has features.
+	 *
+	 * @return the root of the decision tree
+	 */
+	public DTNode build() {
+		int[] rows = new int[ds.getNumRows()];
+		int[] classCounts = new int[numClasses];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = i;
+			classCounts[ds.labels[i]]++;
+		}
+		entriesScanned = 0;
+		numNodes = 0;
+		depth = 0;
+		Arrays.fill(used, false);
+		int[] pathFeatures = new int[ds.getNumFeatures()]; //the features split on along the path to the current node, as in used
+		int pathLength = 0;
+
+		DTNode root = null;
+		ArrayDeque<NodeTask> stack = new ArrayDeque<NodeTask>();
+		stack.push(new NodeTask(null, null, -1, new ArrayList<String>(), 0, rows.length, classCounts));
+		while (!stack.isEmpty()) {
+			NodeTask task = stack.pop();
+
+			//depth first, so the task's path is the current path cut back to its parent, then its parent's feature
+			int taskDepth = task.path.size();
+			while (pathLength > taskDepth - 1 && pathLength > 0) {
+				used[pathFeatures[--pathLength]] = false;
+			}
+			if (task.parent != null) {
+				pathFeatures[pathLength++] = task.parentFeature;
+				used[task.parentFeature] = true;
+			}
+
+			DTNode node = makeNode(task, rows, stack);
+			numNodes++;
+			depth = Math.max(depth, taskDepth);
+			if (task.parent == null) {
+				root = node;
+			}
+			else {
+				node.setParent(task.parent);
+				task.parent.addChildNode(task.edge, node);
+			}
+		}
+		Arrays.fill(used, false);
+		return root;
+	}
+
+
+	/*
+	 * A node still to be made: the rows it covers and the edge it hangs from
+	 */
+	static class NodeTask {
+
+		DTNode parent; //null for the root
+		String edge;
+		int parentFeature;
+		ArrayList<String> path; //the feature names split on along the path to the node
+		int from; //the node's rows are rows[from, to) of the shared row index array
+		int to;
+		int[] classCounts; //the class counts of the node's rows
+
+		NodeTask(DTNode parent, String edge, int parentFeature, ArrayList<String> path, int from, int to, int[] classCounts) {
+			this.parent = parent;
+			this.edge = edge;
+			this.parentFeature = parentFeature;
+			this.path = path;
+			this.from = from;
+			this.to = to;
+			this.classCounts = classCounts;
+		}
+	}
+
+
+	/*
+	 * Makes the node of a task: a leaf, or a split whose children are pushed as tasks
+	 *
+	 * @param task - the node's rows and path; used marks the features on its path
+	 * @param rows - the row index array shared by the whole build; rows[from, to) are reordered
+	 * @param stack - the tasks still to do
+	 * @return the node
+	 */
+	DTNode makeNode(NodeTask task, int[] rows, ArrayDeque<NodeTask> stack) {
+
+		int from = task.from;
+		int to = task.to;
+		int[] classCounts = task.classCounts;
+		int majorityClass = ID3.majorityClass(classCounts);
+		String majority = ds.getClassValue(majorityClass);
+		if (classCounts[majorityClass] == to - from || task.path.size() >= maxDepth || to - from < minRows) {
+			return newNode("leaf", majority, majority, task.path, from, to);
+		}
+
+		int best = -1;
+		double bestGain = 0;
+		int[] bestTable = null;
+		int numTouched = countEntries(rows, from, to);
+		for (int t = 0; t < numTouched; t++) {
+			int f = touchedList[t];
+			if (!used[f]) {
+				int[] table = table(f, classCounts);
+				double gain = new ContingencyTable(table, ds.getCardinality(f), numClasses).informationGain();
+				if (gain > bestGain) {
+					best = f;
+					bestGain = gain;
+					bestTable = table;
+				}
+			}
+			clearCounts(f);
+		}
+		if (best < 0) {
+			return newNode("leaf", majority, majority, task.path, from, to);
+		}
+
+		DTNode node = newNode("internal", ds.getFeatureName(best), majority, task.path, from, to);
+		int[] bounds = partition(best, rows, from, to);
+		ArrayList<String> childPath = new ArrayList<String>(task.path);
+		childPath.add(ds.getFeatureName(best));
+		//pushed last code first, so the children are made (and added) in code order
+		for (int code = ds.getCardinality(best) - 1; code >= 0; code--) {
+			if (bounds[code] == bounds[code + 1]) continue;
+			int[] childClassCounts = Arrays.copyOfRange(bestTable, code * numClasses, (code + 1) * numClasses);
+			stack.push(new NodeTask(node, ds.getValue(best, code), best, childPath, bounds[code], bounds[code + 1], childClassCounts));
+		}
+		return node;
+	}
+
+
+	/*
+	 * Counts the non-zero entries of rows[from, to) into the tables of the features they
+	 * belong to, and lists those features in ascending order (so ties go to the lowest feature)
+	 *
+	 * @return the number of features listed in touchedList
+	 */
+	int countEntries(int[] rows, int from, int to) {
+		int numTouched = 0;
+		int[] rowStart = ds.rowStart;
+		int[] features = ds.features;
+		int[] codes = ds.codes;
+		int[] labels = ds.labels;
+		for (int i = from; i < to; i++) {
+			int row = rows[i];
+			int label = labels[row];
+			for (int e = rowStart[row]; e < rowStart[row + 1]; e++) {
+				int f = features[e];
+				counts[tableOffset[f] + (codes[e] - 1) * numClasses + label]++;
+				if (!touched[f]) {
+					touched[f] = true;
+					touchedList[numTouched++] = f;
+				}
+			}
+			entriesScanned += rowStart[row + 1] - rowStart[row];
+		}
+		Arrays.sort(touchedList, 0, numTouched);
+		return numTouched;
+	}
+
+
+	//helper function for a feature's full count table: its non-default counts, with the default value's counts in front
+	int[] table(int f, int[] classCounts) {
+		int width = (ds.getCardinality(f) - 1) * numClasses;
+		int[] table = new int[width + numClasses];
+		System.arraycopy(counts, tableOffset[f], table, numClasses, width);
+		for (int c = 0; c < numClasses; c++) {
+			int nonDefault = 0;
+			for (int i = numClasses + c; i < table.length; i += numClasses) {
+				nonDefault += table[i];
+			}
+			table[c] = classCounts[c] - nonDefault;
+		}
+		return table;
+	}
+
+
+	//helper function to zero a feature's counts after the node is scored
+	void clearCounts(int f) {
+		Arrays.fill(counts, tableOffset[f], tableOffset[f] + (ds.getCardinality(f) - 1) * numClasses, 0);
+		touched[f] = false;
+	}
+
+
+	/*
+	 * Reorders rows[from, to) by their code of a feature (a counting sort, as ID3.partitionRows)
+	 *
+	 * @return bounds, where the rows with code k are rows[bounds[k], bounds[k + 1])
+	 */
+	int[] partition(int f, int[] rows, int from, int to) {
+		int cardinality = ds.getCardinality(f);
+		int[] rowCodes = new int[to - from];
+		int[] bounds = new int[cardinality + 1];
+		for (int i = from; i < to; i++) {
+			rowCodes[i - from] = ds.getCode(rows[i], f);
+			bounds[rowCodes[i - from] + 1]++;
+		}
+		bounds[0] = from;
+		for (int code = 1; code <= cardinality; code++) {
+			bounds[code] += bounds[code - 1];
+		}
+		int[] next = Arrays.copyOf(bounds, cardinality);
+		int[] sorted = new int[to - from];
+		for (int i = from; i < to; i++) {
+			sorted[next[rowCodes[i - from]]++ - from] = rows[i];
+		}
+		System.arraycopy(sorted, 0, rows, from, to - from);
+		return bounds;
+	}
+
+
+	//helper function to create a node that records its majority class and its range of the shared row index array
+	DTNode newNode(String type, String value, String majority, ArrayList<String> path, int from, int to) {
+		DTNode node = new DTNode(type, value, path);
+		node.setMajorityClass(majority);
+		node.setRowRange(from, to - from);
+		return node;
+	}
+
+
+	/*
+	 * Predicts the class of a row of a sparse dataset with a tree built by this class
+	 *
+	 * @param root - the root of the tree
+	 * @param data - the dataset holding the row (its feature numbers must match the training data's)
+	 * @param row - the row
+	 * @return the class value, or null if the row reaches a value with no edge
+	 */
+	public static String predict(DTNode root, SparseDataset data, int row) {
+		DTNode node = root;
+		while (node != null && node.getType().contentEquals("internal")) {
+			int f = Integer.parseInt(node.getValue());
+			int code = f < data.getNumFeatures() ? data.getCode(row, f) : 0;
+			node = node.getChild(data.getValue(f, code));
+		}
+		return node == null ? null : node.getValue();
+	}
+
+
+	//getter function for the non-zero entries read to choose splits in the last build
+	public long getEntriesScanned() {
+		return entriesScanned;
+	}
+
+	//getter function for the number of nodes of the last tree built
+	public int getNumNodes() {
+		return numNodes;
+	}
+
+	//getter function for the depth of the last tree built, 0 for a single leaf
+	public int getDepth() {
+		return depth;
+	}
+
+
+	/*
+	 * Trains a tree on a LIBSVM file and reports its size and training accuracy:
+	 *   java -cp bin Q4.SparseTreeBuilder data.libsvm [maxDepth]
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("usage: SparseTreeBuilder <data.libsvm> [maxDepth]");
+			return;
+		}
+		long start = System.nanoTime();
+		SparseDataset data = SparseDataset.loadLibsvm(args[0]);
+		long loaded = System.nanoTime();
+		SparseTreeBuilder builder = new SparseTreeBuilder(data);
+		if (args.length > 1) {
+			builder.setStoppingRules(Integer.parseInt(args[1]), 0);
+		}
+		DTNode root = builder.build();
+		long built = System.nanoTime();
+
+		int correct = 0;
+		HashMap<String, Integer> predicted = new HashMap<String, Integer>();
+		for (int row = 0; row < data.getNumRows(); row++) {
+			String label = predict(root, data, row);
+			if (label != null && label.equals(data.getClassValue(data.getLabel(row)))) correct++;
+			predicted.merge(String.valueOf(label), 1, Integer::sum);
+		}
+		System.out.println(String.format("%d rows, %d features, %d non-zero entries; loaded in %.1f ms, built in %.1f ms",
+				data.getNumRows(), data.getNumFeatures(), data.getNumEntries(), (loaded - start) / 1e6, (built - loaded) / 1e6));
+		System.out.println(String.format("%d nodes, depth %d, %d entries scanned", builder.getNumNodes(), builder.getDepth(), builder.getEntriesScanned()));
+		System.out.println("Correct classifications: " + correct + " of " + data.getNumRows() + " " + predicted);
+	}
+
+}
@@ -0,0 +1,42 @@
+package Q4;
+
+/*
+ * The best split found for a node: the attribute, its information gain, and
+ * for a numeric attribute the threshold (rows with values <= threshold go to
+ * the first child, the rest to the second).
+ */
+public class Split {
+
+	int attribute; //column index of the split attribute, -1 if there is no split
+	double gain; //information gain of the split
+	double threshold; //NaN for a categorical split
+
+
+	//constructor
+	public Split(int attribute, double gain, double threshold) {
+		this.attribute = attribute;
+		this.gain = gain;
+		this.threshold = threshold;
+	}
+
+	//getter function for the split attribute's column index
+	public int getAttribute() {
+		return this.attribute;
+	}
+
+	//getter function for the information gain
+	public double getGain() {
+		return this.gain;
+	}
+
+	//getter function for the threshold of a numeric split
+	public double getThreshold() {
+		return this.threshold;
+	}
+
+	//true for a numeric split on a threshold
+	public boolean isThreshold() {
+		return !Double.isNaN(this.threshold);
+	}
+
+}
@@ -0,0 +1,183 @@
+package Q4;
+
+import java.util.Arrays;
+
+/*
+ * Finds the best binary threshold split of a numeric attribute for a node.
+ *
+ * The node's rows are put in value order and swept once, keeping running class
+ * counts of the rows at or below each candidate threshold. Candidates are the
+ * midpoints between consecutive distinct values, and the information gain of each
+ * is calculated from the running counts and the node's class totals.
+ *
+ * The value order comes from the ranks presorted in Dataset.setNumeric: a node
+ * either counts its rows into a histogram over the ranks, or (when it has far
+ * fewer rows than the attribute has distinct values) sorts its rows' ranks.
+ * Both sweep the same counts in the same order, so they give identical results.
+ */
+public class ThresholdSearch {
+
+	static final int SORT_FACTOR = 8; //sort instead of a histogram when rows * SORT_FACTOR < distinct values
+
+
+	/*
+	 * Finds the best threshold of a numeric attribute for the range rows[from, to)
+	 *
+	 * @param ds - the encoded dataset; attr must be set as numeric
+	 * @param attr - the column index of the numeric attribute
+	 * @param classIndex - the column index of the class attribute
+	 * @param rows - the row index array
+	 * @param from - the first position of the node's rows (inclusive)
+	 * @param to - the last position of the node's rows (exclusive)
+	 * @return the best split; its gain is 0 and its threshold NaN if no threshold separates any rows
+	 */
+	public static Split bestThreshold(Dataset ds, int attr, int classIndex, int[] rows, int from, int to) {
+
+		int[] column = ds.getColumn(attr);
+		int[] classColumn = ds.getColumn(classIndex);
+		int[] codeRanks = ds.codeRanks[attr];
+		double[] rankValues = ds.rankValues[attr];
+		int numClasses = ds.getCardinality(classIndex);
+
+		if ((long)(to - from) * SORT_FACTOR < rankValues.length) {
+			//few rows: sort (rank, class) pairs packed into longs
+			long[] keys = new long[to - from];
+			for (int i = from; i < to; i++) {
+				int row = rows[i];
+				keys[i - from] = ((long)codeRanks[column[row]] << 32) | classColumn[row];
+			}
+			Arrays.sort(keys);
+			return sweepSorted(keys, rankValues, numClasses, attr);
+		}
+
+		int[] counts = new int[rankValues.length * numClasses];
+		for (int i = from; i < to; i++) {
+			int row = rows[i];
+			counts[codeRanks[column[row]] * numClasses + classColumn[row]]++;
+		}
+		return sweep(counts, rankValues, numClasses, attr);
+	}
+
+
+	/*
+	 * Sweeps a rank x class count histogram in rank order
+	 *
+	 * @param counts - counts[rank * numClasses + class]
+	 * @param rankValues - the value of each rank, ascending
+	 * @param numClasses - the number of class codes
+	 * @param attr - the attribute, recorded in the returned split
+	 * @return the best split
+	 */
+	public static Split sweep(int[] counts, double[] rankValues, int numClasses, int attr) {
+
+		int[] classTotals = new int[numClasses];
+		int total = 0;
+		for (int i = 0; i < counts.length; i++) {
+			classTotals[i % numClasses] += counts[i];
+			total += counts[i];
+		}
+
+		Sweep sweep = new Sweep(classTotals, total, attr);
+		for (int rank = 0; rank < rankValues.length; rank++) {
+			int base = rank * numClasses;
+			int rankTotal = 0;
+			for (int c = 0; c < numClasses; c++) {
+				rankTotal += counts[base + c];
+			}
+			if (rankTotal > 0) {
+				sweep.nextValue(rankValues[rank]);
+				for (int c = 0; c < numClasses; c++) {
+					sweep.add(c, counts[base + c]);
+				}
+			}
+		}
+		return sweep.best;
+	}
+
+
+	/*
+	 * Sweeps sorted (rank << 32 | class) keys, as sweep() does for a histogram
+	 */
+	static Split sweepSorted(long[] keys, double[] rankValues, int numClasses, int attr) {
+
+		int[] classTotals = new int[numClasses];
+		for (long key : keys) {
+			classTotals[(int)key]++;
+		}
+
+		Sweep sweep = new Sweep(classTotals, keys.length, attr);
+		int i = 0;
+		while (i < keys.length) {
+			int rank = (int)(keys[i] >>> 32);
+			sweep.nextValue(rankValues[rank]);
+			while (i < keys.length && (int)(keys[i] >>> 32) == rank) {
+				sweep.add((int)keys[i], 1);
+				i++;
+			}
+		}
+		return sweep.best;
+	}
+
+
+	/*
+	 * The running state of a sweep: the class counts at or below the current value,
+	 * and the best split so far
+	 */
+	static class Sweep {
+
+		int[] classTotals;
+		int total;
+		double parentEntropy;
+		int[] left; //class counts of the rows at or below the current value
+		int[] right; //scratch array for the class counts above it
+		int leftTotal;
+		double lastValue = Double.NaN; //the current value, NaN before the first
+		Split best;
+
+		Sweep(int[] classTotals, int total, int attr) {
+			this.classTotals = classTotals;
+			this.total = total;
+			this.parentEntropy = ContingencyTable.entropy(classTotals, 0, classTotals.length, total);
+			this.left = new int[classTotals.length];
+			this.right = new int[classTotals.length];
+			this.best = new Split(attr, 0, Double.NaN);
+		}
+
+		//moves on to the next distinct value, scoring the threshold between it and the current one
+		void nextValue(double value) {
+			if (!Double.isNaN(lastValue)) {
+				score(lastValue, value);
+			}
+			lastValue = value;
+		}
+
+		//adds rows of the current value
+		void add(int classCode, int count) {
+			left[classCode] += count;
+			leftTotal += count;
+		}
+
+		//scores the threshold between two consecutive distinct values, keeping it if it is the best so far
+		void score(double low, double high) {
+			int rightTotal = total - leftTotal;
+			for (int c = 0; c < left.length; c++) {
+				right[c] = classTotals[c] - left[c];
+			}
+			double gain = parentEntropy
+					- ((double)leftTotal/total) * ContingencyTable.entropy(left, 0, left.length, leftTotal)
+					- ((double)rightTotal/total) * ContingencyTable.entropy(right, 0, right.length, rightTotal);
+			if (gain > best.gain) {
+				best.gain = gain;
+				best.threshold = midpoint(low, high);
+			}
+		}
+	}
+
+
+	//helper function for a threshold between two values, low <= threshold < high
+	static double midpoint(double low, double high) {
+		double mid = low + (high - low) / 2;
+		return mid < high ? mid : low;
+	}
+
+}
@@ -0,0 +1,249 @@
+package Q4;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/*
+ * The coordinator of a distributed training run over TrainingWorkers, each holding
+ * one horizontal shard of the dataset.
+ *
+ * It grows the tree level by level like LevelWiseBuilder, but each pass is done by
+ * the workers: the coordinator sends them the last level's splits, every worker
+ * routes and counts its own rows, and the coordinator adds up their count tables
+ * and picks the splits with the same information gain logic. Only count tables
+ * and splits cross the network, never rows.
+ *
+ * The workers' dictionaries are merged into global ones in worker order, keeping
+ * each value's first appearance. With the shards given in file order the codes are
+ * then the same as a single Dataset of the whole file, so ties are broken the same
+ * way and the tree is the same as single-process training.
+ *
+ * Run with:  java Q4.TrainingCoordinator <class attribute> <port> [<port> ...]
+ * after starting a TrainingWorker on each (loopback) port.
+ */
+public class TrainingCoordinator extends LevelWiseBuilder implements Closeable {
+
+	Socket[] sockets;
+	DataInputStream[] ins;
+	DataOutputStream[] outs;
+	int numRows; //rows over all shards
+
+
+	/*
+	 * Constructor used by connect(), after the global schema is known
+	 */
+	TrainingCoordinator(Dataset schema, int classIndex, long memoryBudget, Socket[] sockets,
+			DataInputStream[] ins, DataOutputStream[] outs, int numRows) {
+		super(schema, classIndex, memoryBudget);
+		this.sockets = sockets;
+		this.ins = ins;
+		this.outs = outs;
+		this.numRows = numRows;
+	}
+
+
+	/*
+	 * Connects to the workers, merges their dictionaries into the global schema and
+	 * sends it back to them
+	 *
+	 * @param workers - the worker addresses, in shard order
+	 * @param classAttribute - the class attribute
+	 * @param numericAttributes - true to split attributes whose values are all numbers on thresholds
+	 * @param memoryBudget - the most bytes of count tables to hold at once
+	 * @return the coordinator, ready to build()
+	 * @throws IOException if a worker cannot be reached or the shards have different headers
+	 * @throws NoMatchingClassException if the class attribute is not in the header
+	 */
+	public static TrainingCoordinator connect(ArrayList<InetSocketAddress> workers, String classAttribute,
+			boolean numericAttributes, long memoryBudget) throws IOException, NoMatchingClassException {
+
+		int n = workers.size();
+		Socket[] sockets = new Socket[n];
+		DataInputStream[] ins = new DataInputStream[n];
+		DataOutputStream[] outs = new DataOutputStream[n];
+		boolean connected = false;
+		try {
+			for (int w = 0; w < n; w++) {
+				sockets[w] = new Socket();
+				sockets[w].connect(workers.get(w));
+				sockets[w].setTcpNoDelay(true);
+				ins[w] = new DataInputStream(new BufferedInputStream(sockets[w].getInputStream(), 1 << 16));
+				outs[w] = new DataOutputStream(new BufferedOutputStream(sockets[w].getOutputStream(), 1 << 16));
+				outs[w].writeInt(TrainingWorker.DICTIONARIES);
+				outs[w].flush();
+			}
+
+			//merge the dictionaries in worker order, so each value keeps its first appearance
+			String[] header = null;
+			ArrayList<ArrayList<String>> dictionaries = new ArrayList<ArrayList<String>>();
+			ArrayList<HashMap<String, Integer>> lookups = new ArrayList<HashMap<String, Integer>>();
+			int numRows = 0;
+			for (int w = 0; w < n; w++) {
+				numRows += ins[w].readInt();
+				int numAttributes = ins[w].readInt();
+				if (header == null) {
+					header = new String[numAttributes];
+					for (int i = 0; i < numAttributes; i++) {
+						dictionaries.add(new ArrayList<String>());
+						lookups.add(new HashMap<String, Integer>());
+					}
+				}
+				else if (numAttributes != header.length) {
+					throw new IOException("worker " + w + " has " + numAttributes + " attributes, not " + header.length);
+				}
+				for (int i = 0; i < numAttributes; i++) {
+					String name = TrainingWorker.readString(ins[w]);
+					if (w == 0) {
+						header[i] = name;
+					}
+					else if (!header[i].equals(name)) {
+						throw new IOException("worker " + w + " has attribute " + name + " where worker 0 has " + header[i]);
+					}
+					int cardinality = ins[w].readInt();
+					for (int code = 0; code < cardinality; code++) {
+						String value = TrainingWorker.readString(ins[w]);
+						if (!lookups.get(i).containsKey(value)) {
+							lookups.get(i).put(value, dictionaries.get(i).size());
+							dictionaries.get(i).add(value);
+						}
+					}
+				}
+			}
+			if (header == null) {
+				throw new IOException("no workers");
+			}
+
+			Dataset schema = new Dataset(header, new int[header.length][0], dictionaries, 0);
+			int classIndex = schema.getAttributeIndex(classAttribute);
+			if (classIndex < 0) throw new NoMatchingClassException("no class in dataset matches class attribute entered on the command line");
+			if (numericAttributes) {
+				schema.detectNumericAttributes(classAttribute);
+			}
+
+			for (int w = 0; w < n; w++) {
+				DataOutputStream out = outs[w];
+				out.writeInt(TrainingWorker.SCHEMA);
+				out.writeInt(classIndex);
+				out.writeInt(header.length);
+				for (int i = 0; i < header.length; i++) {
+					out.writeBoolean(schema.isNumeric(i));
+					out.writeInt(schema.getCardinality(i));
+					for (String value : dictionaries.get(i)) {
+						TrainingWorker.writeString(out, value);
+					}
+				}
+				out.flush();
+			}
+			TrainingCoordinator coordinator = new TrainingCoordinator(schema, classIndex, memoryBudget, sockets, ins, outs, numRows);
+			connected = true;
+			return coordinator;
+		} finally {
+			//a worker that could not be reached or does not match, close the connections already open
+			if (!connected) {
+				for (Socket socket : sockets) {
+					if (socket == null) continue;
+					try {
+						socket.close();
+					} catch (IOException e) {
+						//already closed
+					}
+				}
+			}
+		}
+	}
+
+
+	/*
+	 * Has every worker route (if previous is not null, or for the root level) and count
+	 * its rows, and adds their counts into the slots [lo, hi)
+	 */
+	@Override
+	void pass(ArrayList<Slot> previous, boolean initial, ArrayList<Slot> frontier, int lo, int hi) throws IOException {
+
+		passes++;
+		for (DataOutputStream out : outs) {
+			out.writeInt(TrainingWorker.COUNT);
+			out.writeBoolean(initial);
+			out.writeInt(previous == null ? -1 : previous.size());
+			if (previous != null) {
+				for (Slot slot : previous) {
+					out.writeInt(slot.routeAttribute);
+					if (slot.routeAttribute >= 0) {
+						TrainingWorker.writeInts(out, slot.route);
+					}
+				}
+			}
+			out.writeInt(frontier.size());
+			out.writeInt(lo);
+			out.writeInt(hi);
+			out.flush();
+		}
+
+		//the workers count at the same time; read their replies in turn
+		for (DataInputStream in : ins) {
+			for (int s = lo; s < hi; s++) {
+				int[] counts = frontier.get(s).counts;
+				for (int k = 0; k < counts.length; k++) {
+					counts[k] += in.readInt();
+				}
+			}
+		}
+		if (listener != null) listener.rowsScanned(numRows);
+	}
+
+
+	//getter function for the global schema: the merged header and dictionaries, with no rows
+	public Dataset getSchema() {
+		return this.schema;
+	}
+
+	//getter function for the number of rows over all shards
+	public int getNumRows() {
+		return this.numRows;
+	}
+
+
+	//ends the sessions with the workers
+	@Override
+	public void close() throws IOException {
+		for (int w = 0; w < sockets.length; w++) {
+			try {
+				outs[w].writeInt(TrainingWorker.CLOSE);
+				outs[w].flush();
+			} finally {
+				sockets[w].close();
+			}
+		}
+	}
+
+
+	/*
+	 * Trains on the workers at the given loopback ports and prints the tree
+	 */
+	public static void main(String[] args) throws Exception {
+
+		if (args.length < 2) {
+			System.err.println("usage: java Q4.TrainingCoordinator <class attribute> <port> [<port> ...]");
+			return;
+		}
+		ArrayList<InetSocketAddress> workers = new ArrayList<InetSocketAddress>();
+		for (int i = 1; i < args.length; i++) {
+			workers.add(new InetSocketAddress("127.0.0.1", Integer.parseInt(args[i])));
+		}
+		try (TrainingCoordinator coordinator = connect(workers, args[0], false, DEFAULT_MEMORY_BUDGET)) {
+			DTNode root = coordinator.build();
+			ID3 ID3Search = new ID3(coordinator.getSchema(), args[0]);
+			System.out.println("DECISION TREE (" + coordinator.getNumRows() + " rows on " + workers.size() + " workers): \n");
+			ID3Search.printHorizontal(root, "");
+		}
+	}
+
+}
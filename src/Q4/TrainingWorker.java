@@ -0,0 +1,223 @@
+package Q4;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/*
+ * One worker of a distributed training run. It holds a horizontal shard of the
+ * dataset and, on request from a TrainingCoordinator, counts its rows into the
+ * count tables of the nodes being grown; it never decides a split itself.
+ *
+ * Protocol (one coordinator connection, DataInput/DataOutput streams):
+ *   DICTIONARIES  -> the shard's header and value dictionaries
+ *   SCHEMA        <- the global dictionaries (the union over all shards) and the
+ *                    numeric attributes; the shard is re-encoded to the global codes
+ *   COUNT         <- the last level's routes (if routing), the level size and the
+ *                    slots [lo, hi) to count
+ *                 -> the counts of each slot in [lo, hi), as LevelWiseBuilder lays them out
+ *   CLOSE         ends the session
+ * Because every worker uses the same global codes, the coordinator can add up
+ * their counts element by element.
+ *
+ * Run as a separate JVM with:  java Q4.TrainingWorker <port> <csv file>
+ */
+public class TrainingWorker {
+
+	//commands sent by the coordinator
+	static final int CLOSE = 0;
+	static final int DICTIONARIES = 1;
+	static final int SCHEMA = 2;
+	static final int COUNT = 3;
+
+	Dataset shard; //the shard with its own dictionaries, as loaded
+	Dataset encoded; //the shard re-encoded to the global dictionaries
+	LevelWiseBuilder builder; //counts the shard, using its pass() on the encoded rows
+
+
+	//constructor for a worker over one shard
+	public TrainingWorker(Dataset shard) {
+		this.shard = shard;
+	}
+
+
+	/*
+	 * Listens on a port and serves coordinator sessions until the process is stopped
+	 */
+	public static void main(String[] args) throws IOException {
+
+		if (args.length < 2) {
+			System.err.println("usage: java Q4.TrainingWorker <port> <csv file>");
+			return;
+		}
+		TrainingWorker worker = new TrainingWorker(CSVLoader.load(args[1]));
+		try (ServerSocket server = new ServerSocket(Integer.parseInt(args[0]), 1, InetAddress.getLoopbackAddress())) {
+			System.out.println("worker listening on " + server.getLocalSocketAddress() + " with " + worker.shard.getNumRows() + " rows");
+			while (true) {
+				Socket socket = server.accept();
+				try (Socket session = socket) {
+					worker.serve(session);
+				} catch (IOException e) {
+					//the coordinator went away without CLOSE, wait for the next one
+					System.err.println("session ended: " + e);
+				}
+			}
+		}
+	}
+
+
+	/*
+	 * Serves one coordinator session, until CLOSE or the connection ends
+	 *
+	 * @param socket - the connection to the coordinator
+	 * @throws IOException if the connection fails
+	 */
+	public void serve(Socket socket) throws IOException {
+
+		socket.setTcpNoDelay(true);
+		DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+		while (true) {
+			int command = in.readInt();
+			switch (command) {
+				case DICTIONARIES: sendDictionaries(out); break;
+				case SCHEMA: readSchema(in); break;
+				case COUNT: count(in, out); break;
+				case CLOSE: return;
+				default: throw new IOException("unknown command " + command);
+			}
+			out.flush();
+		}
+	}
+
+
+	//sends the header and the shard's own dictionaries
+	void sendDictionaries(DataOutputStream out) throws IOException {
+		out.writeInt(shard.getNumRows());
+		out.writeInt(shard.getNumAttributes());
+		for (int i = 0; i < shard.getNumAttributes(); i++) {
+			writeString(out, shard.getAttributeName(i));
+			out.writeInt(shard.getCardinality(i));
+			for (int code = 0; code < shard.getCardinality(i); code++) {
+				writeString(out, shard.getValue(i, code));
+			}
+		}
+	}
+
+
+	//reads the global dictionaries and numeric attributes, and re-encodes the shard with them
+	void readSchema(DataInputStream in) throws IOException {
+
+		int classIndex = in.readInt();
+		int numAttributes = in.readInt();
+		ArrayList<ArrayList<String>> dictionaries = new ArrayList<ArrayList<String>>();
+		boolean[] numeric = new boolean[numAttributes];
+		for (int i = 0; i < numAttributes; i++) {
+			numeric[i] = in.readBoolean();
+			int cardinality = in.readInt();
+			ArrayList<String> dictionary = new ArrayList<String>(cardinality);
+			for (int code = 0; code < cardinality; code++) {
+				dictionary.add(readString(in));
+			}
+			dictionaries.add(dictionary);
+		}
+
+		Dataset global = new Dataset(shard.header, new int[numAttributes][0], dictionaries, 0);
+		int[][] columns = new int[numAttributes][];
+		for (int i = 0; i < numAttributes; i++) {
+			int[] translation = new int[shard.getCardinality(i)];
+			for (int code = 0; code < translation.length; code++) {
+				translation[code] = global.encode(i, shard.getValue(i, code));
+			}
+			int[] column = shard.getColumn(i);
+			columns[i] = new int[column.length];
+			for (int row = 0; row < column.length; row++) {
+				columns[i][row] = translation[column[row]];
+			}
+		}
+		this.encoded = new Dataset(shard.header, columns, dictionaries, shard.getNumRows());
+		for (int i = 0; i < numAttributes; i++) {
+			if (numeric[i]) {
+				encoded.setNumeric(i);
+			}
+		}
+		this.builder = new LevelWiseBuilder(new LevelWiseBuilder.DatasetRows(encoded), classIndex, Long.MAX_VALUE);
+	}
+
+
+	//routes and counts the shard for one pass, and sends back the counts
+	void count(DataInputStream in, DataOutputStream out) throws IOException {
+
+		boolean initial = in.readBoolean();
+		int numPrevious = in.readInt(); //-1 if the rows are already routed
+		ArrayList<LevelWiseBuilder.Slot> previous = null;
+		if (numPrevious >= 0) {
+			previous = new ArrayList<LevelWiseBuilder.Slot>(numPrevious);
+			for (int s = 0; s < numPrevious; s++) {
+				LevelWiseBuilder.Slot slot = new LevelWiseBuilder.Slot(null, null, null);
+				slot.routeAttribute = in.readInt();
+				if (slot.routeAttribute >= 0) {
+					slot.route = readInts(in);
+				}
+				previous.add(slot);
+			}
+		}
+		int frontierSize = in.readInt();
+		int lo = in.readInt();
+		int hi = in.readInt();
+
+		ArrayList<LevelWiseBuilder.Slot> frontier = new ArrayList<LevelWiseBuilder.Slot>(frontierSize);
+		for (int s = 0; s < frontierSize; s++) {
+			LevelWiseBuilder.Slot slot = new LevelWiseBuilder.Slot(null, null, null);
+			if (s >= lo && s < hi) {
+				slot.counts = new int[builder.slotInts];
+			}
+			frontier.add(slot);
+		}
+		builder.pass(previous, initial, frontier, lo, hi);
+
+		for (int s = lo; s < hi; s++) {
+			for (int count : frontier.get(s).counts) {
+				out.writeInt(count);
+			}
+		}
+	}
+
+
+	//helper function to write a length-prefixed UTF-8 string
+	static void writeString(DataOutputStream out, String value) throws IOException {
+		ModelFile.writeString(out, value);
+	}
+
+	//helper function to read a length-prefixed UTF-8 string
+	static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	//helper function to write a length-prefixed int array
+	static void writeInts(DataOutputStream out, int[] values) throws IOException {
+		out.writeInt(values.length);
+		for (int value : values) {
+			out.writeInt(value);
+		}
+	}
+
+	//helper function to read a length-prefixed int array
+	static int[] readInts(DataInputStream in) throws IOException {
+		int[] values = new int[in.readInt()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = in.readInt();
+		}
+		return values;
+	}
+
+}
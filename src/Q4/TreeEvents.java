@@ -0,0 +1,81 @@
+package Q4;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/*
+ * JDK Flight Recorder events for building and using trees, so a recording of a
+ * production run shows where training and prediction time goes without a profiler:
+ *   java -XX:StartFlightRecording=filename=id3.jfr ...
+ *
+ * The events cost next to nothing while no recording is running. Split and
+ * prediction events happen once per node or batch, so by default only those
+ * taking at least 1 ms are recorded; lower the threshold in the recording settings
+ * (e.g. Q4.ChooseSplit#threshold=0 ms) to see all of them.
+ */
+public final class TreeEvents {
+
+	private TreeEvents() {
+	}
+
+
+	@Name("Q4.TreeBuild")
+	@Label("Decision Tree Build")
+	@Category("ID3")
+	@Description("A whole decision tree build")
+	public static class Build extends Event {
+
+		@Label("Method")
+		String method;
+
+		@Label("Rows")
+		int rows;
+
+		@Label("Nodes")
+		int nodes;
+
+		@Label("Depth")
+		int depth;
+	}
+
+
+	@Name("Q4.ChooseSplit")
+	@Label("Choose Split")
+	@Category("ID3")
+	@Description("Scoring the candidate attributes of one node")
+	@Threshold("1 ms")
+	public static class ChooseSplit extends Event {
+
+		@Label("Depth")
+		int depth;
+
+		@Label("Rows")
+		int rows;
+
+		@Label("Candidates")
+		int candidates;
+
+		@Label("Attribute")
+		String attribute;
+
+		@Label("Gain")
+		double gain;
+	}
+
+
+	@Name("Q4.Prediction")
+	@Label("Prediction Batch")
+	@Category("ID3")
+	@Description("Predicting a batch of rows with a compiled tree")
+	@Threshold("1 ms")
+	public static class Prediction extends Event {
+
+		@Label("Rows")
+		int rows;
+	}
+
+}
@@ -0,0 +1,54 @@
+package Q4;
+
+/*
+ * Receives callbacks while a tree is built or used to predict, for metrics and
+ * tracing (see TreeMetrics). Set one with ID3.setTreeListener or
+ * CompiledTree.setTreeListener; without one nothing is reported.
+ *
+ * Every method does nothing by default, so a listener only overrides what it needs.
+ * Parallel builds call a listener from several threads at once, so implementations
+ * must be thread-safe, and cheap: some methods are called once per node.
+ */
+public interface TreeListener {
+
+	//a build is starting on numRows rows
+	default void buildStarted(int numRows) {
+	}
+
+	//rows were read from a column: counted into a table, partitioned, or swept for a threshold
+	default void rowsScanned(long numRows) {
+	}
+
+	/*
+	 * A node's best split was chosen
+	 *
+	 * @param depth - the node's depth, 0 for the root
+	 * @param numRows - the node's rows
+	 * @param numCandidates - the attributes whose gain was evaluated
+	 * @param best - the best split; its attribute is -1 if no attribute has a positive gain
+	 * @param nanos - the time taken to choose it
+	 */
+	default void splitChosen(int depth, int numRows, int numCandidates, Split best, long nanos) {
+	}
+
+	//splitDataset allocated numParts new row sets holding numRows rows in total
+	default void splitAllocated(int numParts, long numRows) {
+	}
+
+	//a node was added to the tree at a depth (0 for the root)
+	default void nodeCreated(DTNode node, int depth) {
+	}
+
+	//a level-wise build finished the level at a depth, of numNodes nodes, in nanos
+	default void levelFinished(int depth, int numNodes, long nanos) {
+	}
+
+	//a build finished with the given root, in nanos
+	default void buildFinished(DTNode root, long nanos) {
+	}
+
+	//a batch of numRows rows was predicted in nanos
+	default void predicted(int numRows, long nanos) {
+	}
+
+}
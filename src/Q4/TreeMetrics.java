@@ -0,0 +1,252 @@
+package Q4;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/*
+ * A TreeListener that keeps counters and timers of the builds and predictions it
+ * is attached to: rows scanned, gain evaluations, splitDataset allocations, nodes
+ * created, tree depth, time choosing splits at each depth, time per level of
+ * level-wise builds, and prediction batch latency (p50/p99).
+ *
+ * Counters add up over every build since the last reset(), except the per-depth
+ * and per-level times, which are for the last build. It can be registered as an
+ * MBean to read the counters over JMX while training runs.
+ */
+public class TreeMetrics implements TreeListener, TreeMetricsMBean {
+
+	LongAdder builds = new LongAdder();
+	volatile long lastBuildNanos;
+	LongAdder totalBuildNanos = new LongAdder();
+	LongAdder rowsScanned = new LongAdder();
+	LongAdder gainEvaluations = new LongAdder();
+	LongAdder splitsChosen = new LongAdder();
+	LongAdder splitAllocations = new LongAdder();
+	LongAdder splitRows = new LongAdder();
+	LongAdder nodesCreated = new LongAdder();
+	LongAdder leavesCreated = new LongAdder();
+	AtomicInteger maxDepth = new AtomicInteger();
+	long[] splitNanosByDepth = new long[0]; //guarded by this
+	long[] levelNanos = new long[0]; //guarded by this
+	LongAdder predictedRows = new LongAdder();
+	LongAdder predictionBatches = new LongAdder();
+	volatile LatencyHistogram predictionLatency = new LatencyHistogram();
+
+
+	/*
+	 * Registers the metrics with the platform MBean server
+	 *
+	 * @param name - the name part of the object name, e.g. "training"
+	 * @return the object name, Q4:type=TreeMetrics,name=<name>
+	 * @throws JMException if the name is taken or not valid
+	 */
+	public ObjectName register(String name) throws JMException {
+		ObjectName objectName = new ObjectName("Q4:type=TreeMetrics,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		return objectName;
+	}
+
+
+	@Override
+	public synchronized void buildStarted(int numRows) {
+		splitNanosByDepth = new long[0];
+		levelNanos = new long[0];
+	}
+
+	@Override
+	public void rowsScanned(long numRows) {
+		rowsScanned.add(numRows);
+	}
+
+	@Override
+	public void splitChosen(int depth, int numRows, int numCandidates, Split best, long nanos) {
+		gainEvaluations.add(numCandidates);
+		splitsChosen.increment();
+		synchronized (this) {
+			splitNanosByDepth = addAt(splitNanosByDepth, depth, nanos);
+		}
+	}
+
+	@Override
+	public void splitAllocated(int numParts, long numRows) {
+		splitAllocations.add(numParts);
+		splitRows.add(numRows);
+	}
+
+	@Override
+	public void nodeCreated(DTNode node, int depth) {
+		nodesCreated.increment();
+		if (node.getType().contentEquals("leaf")) {
+			leavesCreated.increment();
+		}
+		maxDepth.accumulateAndGet(depth, Math::max);
+	}
+
+	@Override
+	public synchronized void levelFinished(int depth, int numNodes, long nanos) {
+		levelNanos = addAt(levelNanos, depth, nanos);
+	}
+
+	@Override
+	public void buildFinished(DTNode root, long nanos) {
+		builds.increment();
+		lastBuildNanos = nanos;
+		totalBuildNanos.add(nanos);
+	}
+
+	@Override
+	public void predicted(int numRows, long nanos) {
+		predictedRows.add(numRows);
+		predictionBatches.increment();
+		predictionLatency.record(nanos);
+	}
+
+
+	//helper function to add to an element of a growable array
+	static long[] addAt(long[] array, int index, long value) {
+		if (index >= array.length) {
+			array = Arrays.copyOf(array, index + 1);
+		}
+		array[index] += value;
+		return array;
+	}
+
+	//helper function for nanoseconds in milliseconds
+	static double[] millis(long[] nanos) {
+		double[] millis = new double[nanos.length];
+		for (int i = 0; i < nanos.length; i++) {
+			millis[i] = nanos[i] / 1e6;
+		}
+		return millis;
+	}
+
+
+	@Override
+	public long getBuilds() {
+		return builds.sum();
+	}
+
+	@Override
+	public double getLastBuildMillis() {
+		return lastBuildNanos / 1e6;
+	}
+
+	@Override
+	public double getTotalBuildMillis() {
+		return totalBuildNanos.sum() / 1e6;
+	}
+
+	@Override
+	public long getRowsScanned() {
+		return rowsScanned.sum();
+	}
+
+	@Override
+	public long getGainEvaluations() {
+		return gainEvaluations.sum();
+	}
+
+	@Override
+	public long getSplitsChosen() {
+		return splitsChosen.sum();
+	}
+
+	@Override
+	public long getSplitDatasetAllocations() {
+		return splitAllocations.sum();
+	}
+
+	@Override
+	public long getSplitDatasetRows() {
+		return splitRows.sum();
+	}
+
+	@Override
+	public long getNodesCreated() {
+		return nodesCreated.sum();
+	}
+
+	@Override
+	public long getLeavesCreated() {
+		return leavesCreated.sum();
+	}
+
+	@Override
+	public int getMaxDepth() {
+		return maxDepth.get();
+	}
+
+	//time choosing splits at each depth of the last build
+	@Override
+	public synchronized double[] getSplitMillisByDepth() {
+		return millis(splitNanosByDepth);
+	}
+
+	//time of each level of the last level-wise build, counting passes included
+	@Override
+	public synchronized double[] getLevelMillis() {
+		return millis(levelNanos);
+	}
+
+	@Override
+	public long getPredictedRows() {
+		return predictedRows.sum();
+	}
+
+	@Override
+	public long getPredictionBatches() {
+		return predictionBatches.sum();
+	}
+
+	@Override
+	public double getPredictionP50Micros() {
+		return predictionLatency.getPercentile(50) / 1e3;
+	}
+
+	@Override
+	public double getPredictionP99Micros() {
+		return predictionLatency.getPercentile(99) / 1e3;
+	}
+
+
+	//sets every counter and timer back to zero
+	@Override
+	public void reset() {
+		for (LongAdder adder : new LongAdder[] {builds, totalBuildNanos, rowsScanned, gainEvaluations, splitsChosen,
+				splitAllocations, splitRows, nodesCreated, leavesCreated, predictedRows, predictionBatches}) {
+			adder.reset();
+		}
+		lastBuildNanos = 0;
+		maxDepth.set(0);
+		synchronized (this) {
+			splitNanosByDepth = new long[0];
+			levelNanos = new long[0];
+		}
+		predictionLatency = new LatencyHistogram();
+	}
+
+
+	//a summary of the counters, one per line
+	@Override
+	public String toString() {
+		StringBuilder out = new StringBuilder();
+		out.append(String.format("builds: %d (last %.1f ms, total %.1f ms)%n", getBuilds(), getLastBuildMillis(), getTotalBuildMillis()));
+		out.append(String.format("rows scanned: %d%n", getRowsScanned()));
+		out.append(String.format("gain evaluations: %d over %d splits%n", getGainEvaluations(), getSplitsChosen()));
+		out.append(String.format("splitDataset allocations: %d (%d rows)%n", getSplitDatasetAllocations(), getSplitDatasetRows()));
+		out.append(String.format("nodes created: %d (%d leaves), max depth %d%n", getNodesCreated(), getLeavesCreated(), getMaxDepth()));
+		out.append("split ms by depth: ").append(Arrays.toString(getSplitMillisByDepth())).append(String.format("%n"));
+		if (getLevelMillis().length > 0) {
+			out.append("level ms: ").append(Arrays.toString(getLevelMillis())).append(String.format("%n"));
+		}
+		out.append(String.format("predicted rows: %d in %d batches (p50 %.1f us, p99 %.1f us)",
+				getPredictedRows(), getPredictionBatches(), getPredictionP50Micros(), getPredictionP99Micros()));
+		return out.toString();
+	}
+
+}
@@ -0,0 +1,45 @@
+package Q4;
+
+/*
+ * The JMX view of a TreeMetrics (see TreeMetrics.register), readable with jconsole
+ * or any JMX client
+ */
+public interface TreeMetricsMBean {
+
+	long getBuilds();
+
+	double getLastBuildMillis();
+
+	double getTotalBuildMillis();
+
+	long getRowsScanned();
+
+	long getGainEvaluations();
+
+	long getSplitsChosen();
+
+	long getSplitDatasetAllocations();
+
+	long getSplitDatasetRows();
+
+	long getNodesCreated();
+
+	long getLeavesCreated();
+
+	int getMaxDepth();
+
+	double[] getSplitMillisByDepth();
+
+	double[] getLevelMillis();
+
+	long getPredictedRows();
+
+	long getPredictionBatches();
+
+	double getPredictionP50Micros();
+
+	double getPredictionP99Micros();
+
+	void reset();
+
+}
@@ -0,0 +1,145 @@
+package Q4;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/*
+ * Checks the scoring pipeline writes CompiledTree.predict's class for every row of
+ * a csv file, in input order
+ */
+class BatchScorerTest {
+
+	static final String[] INPUT_HEADER = { "x", "a0", "id" }; //a different column order from training, without the class
+
+	@TempDir
+	File directory;
+
+
+	@Test
+	void binnedModelScoresLikeTheCompiledTree() throws Exception {
+		ArrayList<ArrayList<String>> training = training(1, 4000);
+		Dataset ds = Dataset.fromRows(training);
+		ds.detectNumericAttributes("cls");
+		assertEquals(1, Binning.binHighCardinality(ds, "cls", 4, true));
+		ID3 id3 = new ID3(ds, "cls");
+		id3.buildDecisionTree(ds);
+		CompiledTree tree = id3.compile();
+		int id = Arrays.asList(tree.header).indexOf("id");
+		assertTrue(tree.lookups.get(id).size() > tree.dictionaries.get(id).size(), "the id values are aliases of their bins");
+		assertTrue(TestTrees.canon(id3.root).contains("(id)"), "the tree splits on the binned attribute");
+
+		String model = new File(directory, "model.id3").getPath();
+		ModelFile.save(tree, model);
+		File input = writeInput(2, 3000);
+		List<String> expected = expected(tree, input);
+
+		//the tree, its mapped model file (aliases read back from version 3) and a generated predictor,
+		//with small batches so they go through the predict threads out of order
+		check(tree, tree, input, expected, "compiled tree");
+		MappedModel mapped = ModelFile.load(model);
+		check(mapped, mapped, input, expected, "model file");
+		check(tree, TreeCodegen.generate(tree), input, expected, "generated predictor");
+	}
+
+
+	@Test
+	void categoricalModelScoresLikeTheCompiledTree() throws Exception {
+		ArrayList<ArrayList<String>> training = training(3, 2000);
+		Dataset ds = Dataset.fromRows(training);
+		ds.detectNumericAttributes("cls");
+		ID3 id3 = new ID3(ds, "cls");
+		id3.buildDecisionTree(ds);
+		CompiledTree tree = id3.compile();
+		File input = writeInput(4, 1500);
+		check(tree, tree, input, expected(tree, input), "unbinned");
+	}
+
+
+	//scores the input with a scorer and compares its output with the expected lines
+	void check(CompiledTree tree, Predictor predictor, File input, List<String> expected, String message) throws Exception {
+		File output = new File(directory, "predictions.csv");
+		new BatchScorer(tree, predictor, 37, 3).score(input.getPath(), output.getPath());
+		List<String> lines = Files.readAllLines(output.toPath(), StandardCharsets.UTF_8);
+		assertEquals("cls", lines.get(0), message);
+		assertEquals(expected.size(), lines.size() - 1, message);
+		for (int r = 0; r < expected.size(); r++) {
+			assertEquals(expected.get(r), lines.get(r + 1), message + " row " + r);
+		}
+	}
+
+
+	//the line BatchScorer should write for each input row: CompiledTree.predict of the row encoded by value
+	static List<String> expected(CompiledTree tree, File input) throws Exception {
+		List<String> lines = Files.readAllLines(input.toPath(), StandardCharsets.UTF_8);
+		List<String> expected = new ArrayList<String>();
+		int[] encoded = new int[tree.getNumAttributes()];
+		for (String line : lines.subList(1, lines.size())) {
+			String[] fields = line.split(",", -1);
+			ArrayList<String> values = new ArrayList<String>();
+			for (int attr = 0; attr < tree.getNumAttributes(); attr++) {
+				int column = Arrays.asList(INPUT_HEADER).indexOf(tree.header[attr]);
+				//a missing column is a value the tree has no code or number for
+				values.add(column >= 0 && column < fields.length ? fields[column] : "(missing)");
+			}
+			tree.encode(values, encoded);
+			int predicted = tree.predict(encoded);
+			expected.add(predicted < 0 ? "?" : tree.getClassLabel(predicted));
+		}
+		return expected;
+	}
+
+
+	/*
+	 * Training rows with a numeric x, a categorical a0 and a high-cardinality id of 40
+	 * values, where the class depends on the id's group and on x
+	 */
+	static ArrayList<ArrayList<String>> training(long seed, int numRows) {
+		Random random = new Random(seed);
+		ArrayList<ArrayList<String>> rows = new ArrayList<ArrayList<String>>();
+		rows.add(new ArrayList<String>(Arrays.asList("id", "a0", "x", "cls")));
+		for (int r = 0; r < numRows; r++) {
+			int id = random.nextInt(40);
+			int x = random.nextInt(100);
+			String a0 = "v" + random.nextInt(3);
+			boolean yes = id % 4 < 2 ? x > 30 : a0.equals("v1");
+			if (random.nextDouble() < 0.05) yes = !yes;
+			rows.add(new ArrayList<String>(Arrays.asList("k" + id, a0, Integer.toString(x), yes ? "yes" : "no")));
+		}
+		return rows;
+	}
+
+
+	//writes rows to score in INPUT_HEADER order, with unseen ids, non-numbers and short rows among them
+	File writeInput(long seed, int numRows) throws Exception {
+		Random random = new Random(seed);
+		File input = new File(directory, "input" + seed + ".csv");
+		try (PrintWriter out = new PrintWriter(input, StandardCharsets.UTF_8)) {
+			out.println(String.join(",", INPUT_HEADER));
+			for (int r = 0; r < numRows; r++) {
+				String x = random.nextInt(20) == 0 ? "n/a" : Integer.toString(random.nextInt(120));
+				String a0 = "v" + random.nextInt(4);
+				String id = "k" + random.nextInt(45);
+				if (r % 97 == 5) {
+					out.println(x + "," + a0); //no id
+				}
+				else {
+					out.println(x + "," + a0 + "," + id);
+				}
+			}
+		}
+		return input;
+	}
+
+}
@@ -0,0 +1,183 @@
+package Q4;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/*
+ * Checks the csv parser gives back the records a file was written from, with
+ * quoting, escapes, line endings, blank lines and a byte order mark, and with
+ * fields across the chunk and mapping window boundaries
+ */
+class CSVLoaderTest {
+
+	//field values with every character that needs quoting, multi-byte characters and empty values
+	static final String[] VALUES = { "", "a", "v1", "12.5", "hello world", "x,y", "say \"hi\"", "\"", "\"\"", "line\nbreak",
+			"cr\r\nlf", "cr\ronly", ",", " padded ", "ünïcødé", "日本", "a\"b", "trailing,", "\n" };
+
+	@TempDir
+	File directory;
+
+
+	@Test
+	void recordsAreReadBackAsWritten() throws Exception {
+		for (long seed = 0; seed < 40; seed++) {
+			Random random = new Random(seed);
+			List<List<String>> records = records(random, 50 + random.nextInt(200));
+			File csv = write(random, records, "seed" + seed + ".csv");
+			String message = "seed " + seed;
+
+			assertEquals(records, parse(csv, CSVLoader.WINDOW_SIZE, CSVLoader.CHUNK_SIZE), message);
+			//small windows and chunks, so fields, quotes, escapes and CRLFs fall across them
+			for (int[] sizes : new int[][] { { 3, 3 }, { 7, 3 }, { 5, 16 }, { 64, 16 }, { 333, 100 }, { 4096, 1000 } }) {
+				assertEquals(records, parse(csv, sizes[0], sizes[1]), message + " window " + sizes[0] + " chunk " + sizes[1]);
+			}
+		}
+	}
+
+
+	@Test
+	void fieldsAcrossTheOneMegabyteChunk() throws Exception {
+		//records of long fields, over 3 MB, so the default chunks end inside fields of every kind
+		Random random = new Random(42);
+		List<List<String>> records = new ArrayList<List<String>>();
+		int bytes = 0;
+		while (bytes < 3 * CSVLoader.CHUNK_SIZE) {
+			List<String> record = new ArrayList<String>();
+			for (int f = 1 + random.nextInt(6); f > 0; f--) {
+				StringBuilder value = new StringBuilder();
+				for (int k = random.nextInt(400); k > 0; k--) {
+					value.append(VALUES[random.nextInt(VALUES.length)]);
+				}
+				record.add(value.toString());
+				bytes += value.length() + 3;
+			}
+			records.add(blankSafe(record));
+		}
+		File csv = write(random, records, "large.csv");
+		assertEquals(records, parse(csv, CSVLoader.WINDOW_SIZE, CSVLoader.CHUNK_SIZE));
+		assertEquals(records, parse(csv, CSVLoader.CHUNK_SIZE + 7, CSVLoader.CHUNK_SIZE));
+		assertEquals(records, parse(csv, 1 << 16, 4093));
+	}
+
+
+	@Test
+	void shortAndLongRowsAreFitToTheHeader() throws Exception {
+		for (long seed = 0; seed < 10; seed++) {
+			Random random = new Random(seed);
+			List<List<String>> records = records(random, 300);
+			List<String> header = new ArrayList<String>();
+			for (int i = 0; i < 4; i++) {
+				header.add("c" + i);
+			}
+			records.add(0, header);
+			File csv = write(random, records, "rows" + seed + ".csv");
+
+			//the rows padded with empty values or cut to the header's length
+			ArrayList<ArrayList<String>> rows = new ArrayList<ArrayList<String>>();
+			for (List<String> record : records) {
+				ArrayList<String> row = new ArrayList<String>(record.subList(0, Math.min(record.size(), header.size())));
+				while (row.size() < header.size()) {
+					row.add("");
+				}
+				rows.add(row);
+			}
+			DatasetCacheTest.assertSameDataset(Dataset.fromRows(rows), CSVLoader.load(csv.getPath()));
+		}
+	}
+
+
+	/*
+	 * Random records of 1 to 6 fields drawn from VALUES
+	 *
+	 * @return the records
+	 */
+	static List<List<String>> records(Random random, int numRecords) {
+		List<List<String>> records = new ArrayList<List<String>>();
+		for (int r = 0; r < numRecords; r++) {
+			List<String> record = new ArrayList<String>();
+			for (int f = 1 + random.nextInt(6); f > 0; f--) {
+				record.add(VALUES[random.nextInt(VALUES.length)]);
+			}
+			records.add(blankSafe(record));
+		}
+		return records;
+	}
+
+
+	//a record of one empty field would be written as a blank line, which is not a record; it gets a second field
+	static List<String> blankSafe(List<String> record) {
+		if (record.size() == 1 && record.get(0).isEmpty()) {
+			record.add("");
+		}
+		return record;
+	}
+
+
+	/*
+	 * Writes records as csv, quoting the fields that need it and some that do not, with
+	 * LF, CRLF or CR line ends, blank lines between some records, sometimes a byte order
+	 * mark and sometimes no line break after the last record
+	 *
+	 * @return the file
+	 */
+	File write(Random random, List<List<String>> records, String name) throws Exception {
+		StringBuilder out = new StringBuilder();
+		if (random.nextBoolean()) out.append('\uFEFF');
+		for (int r = 0; r < records.size(); r++) {
+			List<String> record = records.get(r);
+			for (int f = 0; f < record.size(); f++) {
+				if (f > 0) out.append(',');
+				String value = record.get(f);
+				boolean quote = random.nextInt(5) == 0 || value.startsWith("\"")
+						|| value.contains(",") || value.contains("\n") || value.contains("\r");
+				if (quote) {
+					out.append('"').append(value.replace("\"", "\"\"")).append('"');
+				}
+				else {
+					out.append(value);
+				}
+			}
+			boolean last = r == records.size() - 1;
+			if (!last || random.nextBoolean()) {
+				out.append(new String[] { "\n", "\r\n", "\r" }[random.nextInt(3)]);
+				if (!last && random.nextInt(10) == 0) out.append(random.nextBoolean() ? "\n" : "\r\n");
+			}
+		}
+		File csv = new File(directory, name);
+		Files.write(csv.toPath(), out.toString().getBytes(StandardCharsets.UTF_8));
+		return csv;
+	}
+
+
+	//parses a file with the given window and chunk sizes into records of Strings
+	static List<List<String>> parse(File csv, long windowSize, int chunkSize) throws Exception {
+		List<List<String>> records = new ArrayList<List<String>>();
+		List<String> record = new ArrayList<String>();
+		CSVLoader.parse(csv.toPath(), new CSVLoader.FieldHandler() {
+			@Override
+			public void field(int column, byte[] buf, int off, int len) {
+				assertEquals(record.size(), column);
+				record.add(new String(Arrays.copyOfRange(buf, off, off + len), StandardCharsets.UTF_8));
+			}
+
+			@Override
+			public void endRecord(int numFields) {
+				assertEquals(record.size(), numFields);
+				records.add(new ArrayList<String>(record));
+				record.clear();
+			}
+		}, windowSize, chunkSize);
+		return records;
+	}
+
+}
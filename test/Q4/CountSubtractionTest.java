@@ -0,0 +1,158 @@
+package Q4;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Checks count tables derived by subtraction equal the tables counted directly,
+ * and that the build using them grows the same tree as one that counts every child
+ */
+class CountSubtractionTest {
+
+	@Test
+	void subtractMatchesDirectCounts() {
+		Random random = new Random(5);
+		for (int trial = 0; trial < 100; trial++) {
+			int numValues = 1 + random.nextInt(6);
+			int numClasses = 1 + random.nextInt(4);
+			int numRows = random.nextInt(500);
+			int[] column = new int[numRows];
+			int[] classColumn = new int[numRows];
+			int[] part = new int[numRows];
+			int numParts = 1 + random.nextInt(5);
+			for (int r = 0; r < numRows; r++) {
+				column[r] = random.nextInt(numValues);
+				classColumn[r] = random.nextInt(numClasses);
+				part[r] = random.nextInt(numParts);
+			}
+
+			//the whole table, every part but the last, and the last counted directly
+			ContingencyTable whole = ContingencyTable.count(column, classColumn, identity(numRows), 0, numRows, numValues, numClasses);
+			ContingencyTable[] parts = new ContingencyTable[numParts - 1];
+			for (int p = 0; p < parts.length; p++) {
+				parts[p] = random.nextInt(5) == 0 ? null : new ContingencyTable(numValues, numClasses); //a null part has no rows
+			}
+			ContingencyTable expected = new ContingencyTable(numValues, numClasses);
+			for (int r = 0; r < numRows; r++) {
+				if (part[r] == numParts - 1 || parts[part[r]] == null) {
+					expected.add(column[r], classColumn[r]);
+				}
+				else {
+					parts[part[r]].add(column[r], classColumn[r]);
+				}
+			}
+			assertSameTable(expected, whole.subtract(parts), "trial " + trial);
+		}
+	}
+
+
+	@Test
+	void subtractedChildTablesMatchDirectCounts() throws Exception {
+		for (long seed = 0; seed < 30; seed += 2) {
+			Dataset ds = TestTrees.encode(TestTrees.randomRows(seed));
+			ID3 id3 = new ID3(ds, "cls");
+			int[] rows = identity(ds.getNumRows());
+			int numAttributes = ds.getNumAttributes();
+			ContingencyTable[] tables = new ContingencyTable[numAttributes];
+			for (int attr = 0; attr < numAttributes; attr++) {
+				if (attr != id3.classIndex) {
+					tables[attr] = id3.countTable(attr, ds, rows, 0, rows.length);
+				}
+			}
+
+			//split on one attribute; the siblings have counted some of their tables, the rest are counted by subtractTables
+			int splitAttr = (int)(seed / 2) % (numAttributes - 1);
+			int[] bounds = id3.partitionRows(splitAttr, ds, rows, 0, rows.length);
+			int numChildren = bounds.length - 1;
+			int child = (int)(seed % numChildren);
+			ContingencyTable[][] childTables = new ContingencyTable[numChildren][];
+			for (int code = 0; code < numChildren; code++) {
+				if (code == child) continue;
+				childTables[code] = new ContingencyTable[numAttributes];
+				for (int attr = code % 2; attr < numAttributes; attr += 2) {
+					if (tables[attr] != null) {
+						childTables[code][attr] = id3.countTable(attr, ds, rows, bounds[code], bounds[code + 1]);
+					}
+				}
+			}
+			ContingencyTable[] derived = id3.subtractTables(ds, rows, bounds, childTables, tables, splitAttr, child);
+			for (int attr = 0; attr < numAttributes; attr++) {
+				if (tables[attr] == null || attr == splitAttr) continue;
+				ContingencyTable expected = id3.countTable(attr, ds, rows, bounds[child], bounds[child + 1]);
+				assertSameTable(expected, derived[attr], "seed " + seed + " attribute " + attr);
+			}
+		}
+	}
+
+
+	@Test
+	void subtractionBuildGivesTheDirectCountTree() throws Exception {
+		//a parallel build forking every child counts each child's tables itself
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			long subtractedScans = 0;
+			long directScans = 0;
+			for (long seed = 0; seed < 40; seed++) {
+				Dataset ds = TestTrees.encode(TestTrees.randomRows(seed));
+				ID3 sequential = new ID3(ds, "cls");
+				AtomicLong sequentialRows = new AtomicLong();
+				sequential.setTreeListener(rowCounter(sequentialRows));
+				ID3 direct = new ID3(ds, "cls");
+				AtomicLong directRows = new AtomicLong();
+				direct.setTreeListener(rowCounter(directRows));
+
+				DTNode expected = direct.buildDecisionTreeParallel(ds, pool, 1);
+				TestTrees.assertSameTree(expected, sequential.buildDecisionTree(ds), "seed " + seed);
+				if (seed % 2 == 0) { //categorical, where every split can subtract
+					subtractedScans += sequentialRows.get();
+					directScans += directRows.get();
+				}
+			}
+			assertTrue(subtractedScans < directScans, subtractedScans + " rows scanned with subtraction, " + directScans + " without");
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+
+	//a listener adding up the rows scanned
+	static TreeListener rowCounter(AtomicLong total) {
+		return new TreeListener() {
+			@Override
+			public void rowsScanned(long numRows) {
+				total.addAndGet(numRows);
+			}
+		};
+	}
+
+
+	//helper function for the row indices 0..n-1
+	static int[] identity(int n) {
+		int[] rows = new int[n];
+		for (int i = 0; i < n; i++) {
+			rows[i] = i;
+		}
+		return rows;
+	}
+
+
+	//asserts two tables have the same counts and totals
+	static void assertSameTable(ContingencyTable expected, ContingencyTable actual, String message) {
+		assertEquals(expected.getNumValues(), actual.getNumValues(), message);
+		assertEquals(expected.getTotal(), actual.getTotal(), message);
+		int numClasses = expected.getClassTotals().length;
+		for (int value = 0; value < expected.getNumValues(); value++) {
+			assertEquals(expected.getValueTotal(value), actual.getValueTotal(value), message);
+			for (int classCode = 0; classCode < numClasses; classCode++) {
+				assertEquals(expected.getCount(value, classCode), actual.getCount(value, classCode), message);
+			}
+		}
+	}
+
+}
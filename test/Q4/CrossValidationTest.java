@@ -0,0 +1,98 @@
+package Q4;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Checks cross-validation against folds trained and tested one at a time, and that
+ * its results depend only on the seed
+ */
+class CrossValidationTest {
+
+	@Test
+	void foldsAreTestedOnTreesOfTheOtherFolds() throws Exception {
+		for (long seed = 0; seed < 6; seed++) {
+			ArrayList<ArrayList<String>> rows = TestTrees.randomRows(seed);
+			Dataset ds = TestTrees.encode(rows);
+			int k = 3 + (int)seed % 3;
+			CrossValidation cv = new CrossValidation(ds, "cls", k, seed);
+			CrossValidation.Config config = new CrossValidation.Config(2 + (int)seed, 5, 0, Integer.MAX_VALUE);
+			CrossValidation.Result result = cv.evaluate(config, ForkJoinPool.commonPool());
+
+			//every row is in exactly one fold
+			int[] sorted = cv.shuffled.clone();
+			Arrays.sort(sorted);
+			for (int i = 0; i < sorted.length; i++) {
+				assertEquals(i, sorted[i]);
+			}
+
+			int classIndex = ds.getAttributeIndex("cls");
+			int numClasses = ds.getCardinality(classIndex);
+			int[] classColumn = ds.getColumn(classIndex);
+			int[][] confusion = new int[numClasses][numClasses + 1];
+			for (int f = 0; f < k; f++) {
+				int from = cv.foldStart[f];
+				int to = cv.foldStart[f + 1];
+				int[] training = new int[ds.getNumRows() - (to - from)];
+				System.arraycopy(cv.shuffled, 0, training, 0, from);
+				System.arraycopy(cv.shuffled, to, training, from, cv.shuffled.length - to);
+				ID3 id3 = new ID3(ds, "cls");
+				id3.setStoppingRules(config.maxDepth, config.minRows, config.minGain, config.maxNodes);
+				CompiledTree tree = new CompiledTree(id3.buildDecisionTree(new ArrayList<String>(), ds, training, 0, training.length), ds, "cls");
+				int[][] encoded = TestTrees.encodedRows(tree, rows);
+
+				int correct = 0;
+				for (int i = from; i < to; i++) {
+					int row = cv.shuffled[i];
+					int predicted = tree.predict(encoded[row]);
+					confusion[classColumn[row]][predicted < 0 ? numClasses : predicted]++;
+					if (predicted == classColumn[row]) correct++;
+				}
+				assertEquals((double)correct / (to - from), result.getFoldAccuracy()[f], 1e-12, "seed " + seed + " fold " + f);
+			}
+			assertArrayEquals(confusion, result.getConfusion(), "seed " + seed);
+
+			int total = 0;
+			for (int[] counts : result.getConfusion()) {
+				for (int count : counts) {
+					total += count;
+				}
+			}
+			assertEquals(ds.getNumRows(), total);
+		}
+	}
+
+
+	@Test
+	void resultsDependOnlyOnTheSeed() throws Exception {
+		Dataset ds = TestTrees.encode(TestTrees.randomRows(7));
+		List<CrossValidation.Config> grid = CrossValidation.grid(new int[] { 2, 4, Integer.MAX_VALUE }, new int[] { 0, 20 },
+				new double[] { 0 }, new int[] { Integer.MAX_VALUE });
+		List<CrossValidation.Result> expected = new CrossValidation(ds, "cls", 5, 3).gridSearch(grid, ForkJoinPool.commonPool());
+		for (int threads : new int[] { 1, 4 }) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			try {
+				CrossValidation cv = new CrossValidation(ds, "cls", 5, 3);
+				List<CrossValidation.Result> actual = cv.gridSearch(grid, pool);
+				for (int c = 0; c < grid.size(); c++) {
+					String message = grid.get(c) + " on " + threads + " threads";
+					assertArrayEquals(expected.get(c).getConfusion(), actual.get(c).getConfusion(), message);
+					assertArrayEquals(expected.get(c).getFoldAccuracy(), actual.get(c).getFoldAccuracy(), message);
+					assertEquals(expected.get(c).getMeanNodes(), actual.get(c).getMeanNodes(), message);
+					//one configuration on its own gives its result in the grid
+					assertArrayEquals(expected.get(c).getConfusion(), cv.evaluate(grid.get(c), pool).getConfusion(), message);
+				}
+			} finally {
+				pool.shutdown();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,132 @@
+package Q4;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/*
+ * Checks cached datasets are read back the same as parsing the csv, and only while
+ * the csv's contents are unchanged
+ */
+class DatasetCacheTest {
+
+	@TempDir
+	File directory;
+
+
+	@Test
+	void unchangedFileIsReadFromTheCache() throws Exception {
+		File csv = writeCsv(TestTrees.mixed(1, 500));
+		DatasetCache cache = new DatasetCache(new File(directory, "cache"), 1 << 20);
+		Dataset parsed = cache.load(csv.getPath());
+		assertFalse(cache.wasHit());
+		Dataset cached = cache.load(csv.getPath());
+		assertTrue(cache.wasHit());
+		assertSameDataset(CSVLoader.load(csv.getPath()), parsed);
+		assertSameDataset(parsed, cached);
+	}
+
+
+	@Test
+	void touchedFileIsCheckedByHash() throws Exception {
+		File csv = writeCsv(TestTrees.categorical(2, 400, 5, 3));
+		DatasetCache cache = new DatasetCache(new File(directory, "cache"), 1 << 20);
+		Dataset parsed = cache.load(csv.getPath());
+
+		//a new time with the same contents is still a hit
+		Files.setLastModifiedTime(csv.toPath(), FileTime.fromMillis(csv.lastModified() + 10000));
+		assertSameDataset(parsed, cache.load(csv.getPath()));
+		assertTrue(cache.wasHit());
+
+		//the same size and time with other contents is a miss, and the entry is replaced
+		long modified = csv.lastModified();
+		ArrayList<ArrayList<String>> rows = TestTrees.categorical(2, 400, 5, 3);
+		ArrayList<String> last = rows.get(rows.size() - 1);
+		last.set(0, last.get(0).equals("v0") ? "v1" : "v0");
+		writeCsv(rows);
+		Files.setLastModifiedTime(csv.toPath(), FileTime.fromMillis(modified));
+		Dataset changed = cache.load(csv.getPath());
+		assertFalse(cache.wasHit());
+		assertSameDataset(CSVLoader.load(csv.getPath()), changed);
+		assertSameDataset(changed, cache.load(csv.getPath()));
+		assertTrue(cache.wasHit());
+	}
+
+
+	@Test
+	void readOnlyCacheStillHits() throws Exception {
+		File csv = writeCsv(TestTrees.mixed(3, 300));
+		File cacheDirectory = new File(directory, "cache");
+		DatasetCache cache = new DatasetCache(cacheDirectory, 1 << 20);
+		Dataset parsed = cache.load(csv.getPath());
+		File entry = cache.entryFile(csv.toPath().toRealPath());
+		assertTrue(entry.isFile());
+
+		entry.setWritable(false);
+		cacheDirectory.setWritable(false);
+		try {
+			assumeFalse(Files.isWritable(entry.toPath()), "permissions are not enforced for this user");
+			//a hit that needs the hash check, whose new time cannot be recorded
+			Files.setLastModifiedTime(csv.toPath(), FileTime.fromMillis(csv.lastModified() + 10000));
+			assertSameDataset(parsed, cache.load(csv.getPath()));
+			assertTrue(cache.wasHit());
+		} finally {
+			cacheDirectory.setWritable(true);
+			entry.setWritable(true);
+		}
+	}
+
+
+	@Test
+	void cacheDirectoryIsTheUsers() throws Exception {
+		//not the temporary directory that every local user can write to
+		File home = new File(System.getProperty("user.home"));
+		assertEquals(new File(new File(home, ".cache"), "id3"), new DatasetCache(1 << 20).getDirectory());
+
+		File csv = writeCsv(TestTrees.mixed(4, 200));
+		File cacheDirectory = new File(new File(directory, "home"), "cache");
+		new DatasetCache(cacheDirectory, 1 << 20).load(csv.getPath());
+		assertTrue(cacheDirectory.isDirectory());
+		assumeTrue(Files.getFileStore(cacheDirectory.toPath()).supportsFileAttributeView("posix"), "no POSIX permissions");
+		assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(cacheDirectory.toPath())));
+	}
+
+
+	//writes rows to data.csv in the test directory
+	File writeCsv(ArrayList<ArrayList<String>> rows) throws Exception {
+		File csv = new File(directory, "data.csv");
+		try (PrintWriter out = new PrintWriter(csv, StandardCharsets.UTF_8)) {
+			for (ArrayList<String> row : rows) {
+				out.println(String.join(",", row));
+			}
+		}
+		return csv;
+	}
+
+
+	//asserts two datasets have the same header, dictionaries and codes
+	static void assertSameDataset(Dataset expected, Dataset actual) {
+		assertEquals(expected.getNumAttributes(), actual.getNumAttributes());
+		assertEquals(expected.getNumRows(), actual.getNumRows());
+		for (int i = 0; i < expected.getNumAttributes(); i++) {
+			assertEquals(expected.getAttributeName(i), actual.getAttributeName(i));
+			assertEquals(expected.dictionaries.get(i), actual.dictionaries.get(i));
+			assertArrayEquals(expected.getColumn(i), actual.getColumn(i), expected.getAttributeName(i));
+		}
+	}
+
+}
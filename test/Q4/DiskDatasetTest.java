@@ -0,0 +1,56 @@
+package Q4;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/*
+ * Checks the out-of-core build on column files grows the same tree as the
+ * in-memory build, whatever its memory budget and block size
+ */
+class DiskDatasetTest {
+
+	@TempDir
+	File directory;
+
+
+	@Test
+	void diskBuildGivesTheInMemoryTree() throws Exception {
+		//40 datasets, each with a budget that holds everything, one that spills and one that spills every level
+		long[] budgets = { 1L << 30, 20000, 1 };
+		int compared = 0;
+		for (long seed = 0; seed < 40; seed++) {
+			Dataset ds = TestTrees.encode(TestTrees.randomRows(seed));
+			DTNode expected = new ID3(ds, "cls").buildDecisionTree(ds);
+			for (int b = 0; b < budgets.length; b++) {
+				try (DiskDataset disk = DiskDataset.write(ds, new File(directory, seed + "-" + b))) {
+					if (b == 1) {
+						disk.setBlockSize(97); //many blocks per pass
+					}
+					DTNode actual = new ID3(disk.getSchema(), "cls").buildDecisionTree(disk, budgets[b]);
+					TestTrees.assertSameTree(expected, actual, "seed " + seed + " budget " + budgets[b]);
+					compared++;
+				}
+			}
+		}
+		assertEquals(120, compared);
+	}
+
+
+	@Test
+	void streamedCsvGivesTheInMemoryTree() throws Exception {
+		String path = "src/bchousing.csv";
+		Dataset ds = CSVLoader.load(path);
+		String classAttr = ds.getAttributeName(ds.getNumAttributes() - 1);
+		DTNode expected = new ID3(ds, classAttr).buildDecisionTree(ds);
+		try (DiskDataset disk = DiskDataset.load(path, new File(directory, "csv"))) {
+			assertEquals(ds.getNumRows(), disk.getNumRows());
+			DTNode actual = new ID3(disk.getSchema(), classAttr).buildDecisionTree(disk, 1 << 20);
+			TestTrees.assertSameTree(expected, actual, path);
+		}
+	}
+
+}
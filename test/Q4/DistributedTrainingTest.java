@@ -0,0 +1,167 @@
+package Q4;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataOutputStream;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/*
+ * Checks training through a coordinator and worker processes on loopback grows the
+ * same tree as building on the whole dataset in one process, and that a worker
+ * outlives a coordinator that goes away mid-session
+ */
+class DistributedTrainingTest {
+
+	@TempDir
+	File directory;
+
+
+	@Test
+	void coordinatorGivesTheSingleProcessTree() throws Exception {
+		check(TestTrees.categorical(1, 6000, 8, 4), 3, false, 1L << 30);
+		check(TestTrees.mixed(2, 5000), 2, true, 1L << 30);
+		check(TestTrees.categorical(3, 8000, 8, 4), 4, false, 20000); //several passes a level
+	}
+
+
+	@Test
+	void workerServesTheNextSessionAfterAFailedOne() throws Exception {
+		ArrayList<ArrayList<String>> rows = TestTrees.categorical(4, 2000, 5, 3);
+		File shard = writeShard(rows, "shard.csv");
+		ArrayList<ArrayList<String>> other = TestTrees.categorical(5, 100, 6, 3); //one more attribute
+		File otherShard = writeShard(other, "other.csv");
+		Dataset ds = Dataset.fromRows(rows);
+		DTNode expected = new ID3(ds, "cls").buildDecisionTree(ds);
+
+		int port = freePort();
+		int otherPort = freePort();
+		Process worker = startWorker(port, shard);
+		Process otherWorker = startWorker(otherPort, otherShard);
+		try {
+			InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+			ArrayList<InetSocketAddress> one = new ArrayList<InetSocketAddress>();
+			one.add(address);
+
+			//a coordinator that goes away without CLOSE
+			try (Socket socket = new Socket(address.getAddress(), port)) {
+				DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+				out.writeInt(TrainingWorker.DICTIONARIES);
+				out.flush();
+				socket.getInputStream().read();
+			}
+
+			//shards with different headers; the connection to the first worker is closed
+			ArrayList<InetSocketAddress> mismatched = new ArrayList<InetSocketAddress>(one);
+			mismatched.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), otherPort));
+			assertThrows(IOException.class, () -> TrainingCoordinator.connect(mismatched, "cls", false, 1L << 30));
+
+			//the worker is still there, free for the next session
+			assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+				try (TrainingCoordinator coordinator = TrainingCoordinator.connect(one, "cls", false, 1L << 30)) {
+					TestTrees.assertSameTree(expected, coordinator.build(), "after failed sessions");
+				}
+			});
+			assertTrue(worker.isAlive());
+		} finally {
+			worker.destroy();
+			otherWorker.destroy();
+		}
+	}
+
+
+	//writes rows to a csv file in the test directory
+	File writeShard(ArrayList<ArrayList<String>> rows, String name) throws IOException {
+		File shard = new File(directory, name);
+		try (PrintWriter out = new PrintWriter(shard, StandardCharsets.UTF_8)) {
+			for (ArrayList<String> row : rows) {
+				out.println(String.join(",", row));
+			}
+		}
+		return shard;
+	}
+
+
+	/*
+	 * Splits a dataset into shards, starts a worker JVM per shard, trains through a
+	 * coordinator and compares the tree with ID3.buildDecisionTree on the whole dataset
+	 */
+	void check(ArrayList<ArrayList<String>> rows, int numWorkers, boolean numeric, long memoryBudget) throws Exception {
+
+		Dataset ds = Dataset.fromRows(rows);
+		if (numeric) {
+			ds.detectNumericAttributes("cls");
+		}
+		DTNode expected = new ID3(ds, "cls").buildDecisionTree(ds);
+
+		ArrayList<Process> workers = new ArrayList<Process>();
+		ArrayList<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+		try {
+			int perShard = (rows.size() - 1 + numWorkers - 1) / numWorkers;
+			for (int w = 0; w < numWorkers; w++) {
+				File shard = new File(directory, "shard" + w + ".csv");
+				try (PrintWriter out = new PrintWriter(shard, StandardCharsets.UTF_8)) {
+					out.println(String.join(",", rows.get(0)));
+					for (int r = 1 + w * perShard; r < Math.min(rows.size(), 1 + (w + 1) * perShard); r++) {
+						out.println(String.join(",", rows.get(r)));
+					}
+				}
+				int port = freePort();
+				workers.add(startWorker(port, shard));
+				addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+			}
+
+			try (TrainingCoordinator coordinator = TrainingCoordinator.connect(addresses, "cls", numeric, memoryBudget)) {
+				DTNode actual = coordinator.build();
+				TestTrees.assertSameTree(expected, actual, numWorkers + " workers, budget " + memoryBudget);
+				assertEquals(ds.getNumRows(), coordinator.getNumRows());
+				assertTrue(coordinator.getPasses() > 0);
+			}
+		} finally {
+			for (Process worker : workers) {
+				worker.destroy();
+			}
+		}
+	}
+
+
+	//starts a worker JVM on this test's classpath and waits until it is listening
+	static Process startWorker(int port, File shard) throws IOException {
+		String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+		Process worker = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+				"Q4.TrainingWorker", Integer.toString(port), shard.getPath()).redirectErrorStream(true).start();
+		BufferedReader out = new BufferedReader(new InputStreamReader(worker.getInputStream(), StandardCharsets.UTF_8));
+		String line = out.readLine();
+		if (line == null || !line.startsWith("worker listening")) {
+			worker.destroy();
+			throw new IOException("worker on port " + port + " did not start: " + line);
+		}
+		return worker;
+	}
+
+
+	//helper function for a loopback port that is free now
+	static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			return socket.getLocalPort();
+		}
+	}
+
+}
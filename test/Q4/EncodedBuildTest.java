@@ -0,0 +1,128 @@
+package Q4;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Checks the encoded build over one in-place partitioned row index array against the
+ * original ArrayList build, and the partitioning it relies on
+ */
+class EncodedBuildTest {
+
+	@Test
+	void encodedBuildMatchesArrayListBuild() throws Exception {
+		int compared = 0;
+		int ties = 0;
+		for (long seed = 0; seed < 200; seed++) {
+			ArrayList<ArrayList<String>> rows = TestTrees.categorical(seed, 30 + (int)(seed % 80), 6, 3);
+			ID3 legacy = new ID3(rows, "cls");
+			DTNode expected;
+			try {
+				expected = legacy.buildDecisionTree(new ArrayList<String>(), rows);
+			} catch (IndexOutOfBoundsException e) {
+				continue; //the ArrayList build has no leaf rule for a node no attribute splits with any gain
+			}
+			Dataset ds = Dataset.fromRows(rows);
+			DTNode actual = new ID3(ds, "cls").buildDecisionTree(ds);
+			ties += compare(legacy, expected, actual, rows, "seed " + seed);
+			compared++;
+		}
+		assertTrue(compared >= 100, "only " + compared + " datasets compared");
+		assertTrue(ties <= compared / 4, ties + " tied splits in " + compared + " datasets");
+	}
+
+
+	/*
+	 * Compares two trees node by node. Where they split on different attributes, the two
+	 * attributes' gains must tie: the builders add up the entropy terms in different orders,
+	 * so an exact tie can differ in the last bit and go either way.
+	 *
+	 * @param rows - the node's rows, the header first
+	 * @return the number of tied splits found
+	 */
+	int compare(ID3 legacy, DTNode expected, DTNode actual, ArrayList<ArrayList<String>> rows, String message) {
+		assertEquals(expected.getType(), actual.getType(), message);
+		if (!expected.getValue().equals(actual.getValue())) {
+			assertEquals("internal", expected.getType(), message);
+			assertEquals(legacy.calculateInformationGain(expected.getValue(), rows),
+					legacy.calculateInformationGain(actual.getValue(), rows), 1e-12, message + " split " + expected.getValue() + " vs " + actual.getValue());
+			return 1;
+		}
+		assertEquals(new TreeMap<String, DTNode>(expected.children).keySet(), new TreeMap<String, DTNode>(actual.children).keySet(), message);
+		int ties = 0;
+		int attribute = rows.get(0).indexOf(expected.getValue());
+		for (String edge : expected.children.keySet()) {
+			ArrayList<ArrayList<String>> childRows = new ArrayList<ArrayList<String>>();
+			childRows.add(rows.get(0));
+			for (int r = 1; r < rows.size(); r++) {
+				if (rows.get(r).get(attribute).equals(edge)) childRows.add(rows.get(r));
+			}
+			ties += compare(legacy, expected.getChild(edge), actual.getChild(edge), childRows, message + " " + expected.getValue() + "=" + edge);
+		}
+		return ties;
+	}
+
+
+	@Test
+	void partitionRowsGroupsARangeInPlace() throws Exception {
+		Dataset ds = Dataset.fromRows(TestTrees.categorical(3, 500, 4, 5));
+		ID3 id3 = new ID3(ds, "cls");
+		int[] rows = new int[ds.getNumRows()];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = rows.length - 1 - i;
+		}
+		int[] before = rows.clone();
+		int from = 100;
+		int to = 400;
+		int[] bounds = id3.partitionRows(1, ds, rows, from, to);
+
+		//rows outside the range are untouched, and the range holds the same rows
+		assertArrayEquals(Arrays.copyOfRange(before, 0, from), Arrays.copyOfRange(rows, 0, from));
+		assertArrayEquals(Arrays.copyOfRange(before, to, rows.length), Arrays.copyOfRange(rows, to, rows.length));
+		int[] sortedBefore = Arrays.copyOfRange(before, from, to);
+		int[] sortedAfter = Arrays.copyOfRange(rows, from, to);
+		Arrays.sort(sortedBefore);
+		Arrays.sort(sortedAfter);
+		assertArrayEquals(sortedBefore, sortedAfter);
+
+		//each code's rows are one run, at its bounds
+		int[] column = ds.getColumn(1);
+		assertEquals(from, bounds[0]);
+		assertEquals(to, bounds[bounds.length - 1]);
+		for (int code = 0; code + 1 < bounds.length; code++) {
+			for (int i = bounds[code]; i < bounds[code + 1]; i++) {
+				assertEquals(code, column[rows[i]]);
+			}
+		}
+	}
+
+
+	@Test
+	void nodesRecordTheirRowRanges() throws Exception {
+		Dataset ds = TestTrees.encode(TestTrees.randomRows(6));
+		DTNode root = new ID3(ds, "cls").buildDecisionTree(ds);
+		assertEquals(0, root.getRowOffset());
+		assertEquals(ds.getNumRows(), root.getRowCount());
+		checkChildRanges(root);
+	}
+
+	//children's ranges lie inside their parent's, without overlapping
+	void checkChildRanges(DTNode node) {
+		int total = 0;
+		for (DTNode child : node.children.values()) {
+			assertTrue(child.getRowOffset() >= node.getRowOffset());
+			assertTrue(child.getRowOffset() + child.getRowCount() <= node.getRowOffset() + node.getRowCount());
+			total += child.getRowCount();
+			checkChildRanges(child);
+		}
+		assertTrue(node.children.isEmpty() || total <= node.getRowCount());
+	}
+
+}
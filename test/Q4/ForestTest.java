@@ -0,0 +1,85 @@
+package Q4;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Checks a forest depends only on its seed, not on the pool that builds it, and that
+ * each tree is the ID3 tree of its bootstrap sample
+ */
+class ForestTest {
+
+	@Test
+	void forestIsTheSameOnEveryPool() throws Exception {
+		for (long seed = 0; seed < 6; seed++) {
+			Dataset ds = TestTrees.encode(TestTrees.randomRows(seed));
+			Forest expected = new Forest(ds, "cls", 12, 0, seed);
+			ForkJoinPool single = new ForkJoinPool(1);
+			try {
+				expected.build(single);
+			} finally {
+				single.shutdown();
+			}
+			int[] expectedVotes = new int[ds.getNumRows()];
+			expected.predictBatch(ds, expectedVotes, ForkJoinPool.commonPool());
+
+			for (int threads : new int[] { 2, 8 }) {
+				ForkJoinPool pool = new ForkJoinPool(threads);
+				try {
+					Forest actual = new Forest(ds, "cls", 12, 0, seed);
+					actual.build(pool);
+					for (int t = 0; t < expected.getNumTrees(); t++) {
+						TestTrees.assertSameTree(expected.getRoots()[t], actual.getRoots()[t], "seed " + seed + " tree " + t + " on " + threads + " threads");
+					}
+					int[] votes = new int[ds.getNumRows()];
+					actual.predictBatch(ds, votes, pool);
+					assertArrayEquals(expectedVotes, votes, "seed " + seed + " on " + threads + " threads");
+					assertEquals(expected.countCorrect(ds, pool), actual.countCorrect(ds, pool));
+				} finally {
+					pool.shutdown();
+				}
+			}
+		}
+	}
+
+
+	@Test
+	void treesAreTheID3TreesOfTheirSamples() throws Exception {
+		for (long seed = 0; seed < 10; seed++) {
+			Dataset ds = TestTrees.encode(TestTrees.randomRows(seed));
+			//a subset of every attribute, so each node scores them all as ID3 does
+			Forest forest = new Forest(ds, "cls", 4, ds.getNumAttributes() - 1, seed);
+			forest.build(ForkJoinPool.commonPool());
+			for (int t = 0; t < forest.getNumTrees(); t++) {
+				//the bootstrap sample drawn the same way as Forest.buildTree
+				SplittableRandom random = new SplittableRandom(forest.treeSeeds[t]);
+				int[] sample = new int[ds.getNumRows()];
+				for (int i = 0; i < sample.length; i++) {
+					sample[i] = random.nextInt(sample.length);
+				}
+				DTNode expected = new ID3(ds, "cls").buildDecisionTree(new ArrayList<String>(), ds, sample, 0, sample.length);
+				TestTrees.assertSameTree(expected, forest.getRoots()[t], "seed " + seed + " tree " + t);
+			}
+		}
+	}
+
+
+	@Test
+	void oneTreeForestVotesLikeItsTree() throws Exception {
+		Dataset ds = TestTrees.encode(TestTrees.randomRows(4));
+		Forest forest = new Forest(ds, "cls", 1, 0, 9);
+		forest.build(ForkJoinPool.commonPool());
+		int[] expected = new int[ds.getNumRows()];
+		forest.getTrees()[0].predictBatch(ds, expected);
+		int[] votes = new int[ds.getNumRows()];
+		forest.predictBatch(ds, votes, ForkJoinPool.commonPool());
+		assertArrayEquals(expected, votes);
+	}
+
+}
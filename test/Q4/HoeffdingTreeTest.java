@@ -0,0 +1,87 @@
+package Q4;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Checks the incremental tree learns a stream, keeps counts for its leaves only and
+ * the split attribute of its internal nodes only
+ */
+class HoeffdingTreeTest {
+
+	@Test
+	void learnsTheConceptOfAStream() throws Exception {
+		ArrayList<ArrayList<String>> train = stream(1, 50000);
+		ArrayList<ArrayList<String>> test = stream(2, 5000);
+		HoeffdingTree tree = new HoeffdingTree(train.get(0), "cls", 1e-7, 200, 0.05);
+		tree.learnAll(train);
+		assertEquals(50000, tree.getNumRows());
+
+		int correct = 0;
+		for (int r = 1; r < test.size(); r++) {
+			if (test.get(r).get(6).equals(tree.predict(test.get(r)))) correct++;
+		}
+		//5% of the labels are noise, half of which happen to be right
+		assertTrue(correct > 0.9 * (test.size() - 1), "accuracy " + correct / (double)(test.size() - 1));
+	}
+
+
+	@Test
+	void onlyLeavesKeepStatistics() throws Exception {
+		ArrayList<ArrayList<String>> train = stream(3, 20000);
+		HoeffdingTree tree = new HoeffdingTree(train.get(0), "cls", 1e-7, 200, 0.05);
+		for (int r = 1; r < train.size(); r++) {
+			tree.learn(train.get(r));
+			if (r % 1000 == 0) {
+				int leaves = countLeaves(tree, tree.getRoot());
+				assertEquals(leaves, tree.leafStatistics.size(), "after " + r + " rows");
+				assertEquals(ID3.countNodes(tree.getRoot()) - leaves, tree.splitAttributes.size(), "after " + r + " rows");
+			}
+		}
+		assertTrue(tree.getRoot().getType().contentEquals("internal"), "the root was split");
+	}
+
+
+	//counts the leaves under a node, checking each has statistics and each internal node its attribute index
+	static int countLeaves(HoeffdingTree tree, DTNode node) {
+		if (!node.getType().contentEquals("internal")) {
+			assertNotNull(tree.leafStatistics.get(node));
+			return 1;
+		}
+		assertEquals(node.getValue(), tree.header[tree.splitAttributes.get(node)]);
+		int leaves = 0;
+		for (DTNode child : node.children.values()) {
+			leaves += countLeaves(tree, child);
+		}
+		return leaves;
+	}
+
+
+	//a stream of six categorical attributes whose class depends on the first three, with 5% label noise
+	static ArrayList<ArrayList<String>> stream(long seed, int numRows) {
+		Random random = new Random(seed);
+		ArrayList<ArrayList<String>> rows = new ArrayList<ArrayList<String>>();
+		rows.add(new ArrayList<String>(Arrays.asList("a0", "a1", "a2", "a3", "a4", "a5", "cls")));
+		for (int r = 0; r < numRows; r++) {
+			ArrayList<String> row = new ArrayList<String>();
+			int[] v = new int[6];
+			for (int i = 0; i < v.length; i++) {
+				v[i] = random.nextInt(4);
+				row.add("v" + v[i]);
+			}
+			String cls = v[0] == 1 || (v[1] >= 2 && v[2] != 0) ? "yes" : "no";
+			if (random.nextDouble() < 0.05) cls = random.nextBoolean() ? "yes" : "no";
+			row.add(cls);
+			rows.add(row);
+		}
+		return rows;
+	}
+
+}
@@ -0,0 +1,59 @@
+package Q4;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Checks the histogram's buckets at the power-of-two edges and its percentiles
+ */
+class LatencyHistogramTest {
+
+	@Test
+	void bucketsMeetAtPowersOfTwo() {
+		//one bucket per value below SUB_BUCKETS
+		for (long value = 0; value < LatencyHistogram.SUB_BUCKETS; value++) {
+			assertEquals(value, LatencyHistogram.bucket(value));
+			assertEquals(value, LatencyHistogram.lowerBound((int)value));
+		}
+		for (int exponent = LatencyHistogram.SUB_BITS; exponent < 63; exponent++) {
+			long power = 1L << exponent;
+			int bucket = LatencyHistogram.bucket(power);
+			String message = "2^" + exponent;
+			assertEquals(power, LatencyHistogram.lowerBound(bucket), message);
+			assertEquals(bucket - 1, LatencyHistogram.bucket(power - 1), message);
+			assertTrue(LatencyHistogram.lowerBound(bucket - 1) <= power - 1, message);
+			//a power of two's buckets are 1/SUB_BUCKETS of it wide
+			long width = power / LatencyHistogram.SUB_BUCKETS;
+			assertEquals(bucket, LatencyHistogram.bucket(power + width - 1), message);
+			assertEquals(bucket + 1, LatencyHistogram.bucket(power + width), message);
+			assertEquals(power + width, LatencyHistogram.lowerBound(bucket + 1), message);
+		}
+		assertEquals(LatencyHistogram.NUM_BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+		assertEquals((2L * LatencyHistogram.SUB_BUCKETS - 1) << (62 - LatencyHistogram.SUB_BITS), LatencyHistogram.lowerBound(LatencyHistogram.NUM_BUCKETS - 1));
+
+		//every bucket's lower bound is in that bucket
+		for (int bucket = 0; bucket < LatencyHistogram.NUM_BUCKETS; bucket++) {
+			assertEquals(bucket, LatencyHistogram.bucket(LatencyHistogram.lowerBound(bucket)), "bucket " + bucket);
+		}
+	}
+
+
+	@Test
+	void percentilesAreBucketLowerBounds() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getPercentile(50));
+		for (long nanos = 1; nanos <= 1000; nanos++) {
+			histogram.record(nanos * 1000);
+		}
+		histogram.record(-5); //counted as 0
+		assertEquals(1001, histogram.getCount());
+		long p50 = histogram.getPercentile(50);
+		long p99 = histogram.getPercentile(99);
+		assertEquals(LatencyHistogram.lowerBound(LatencyHistogram.bucket(500000)), p50);
+		assertEquals(LatencyHistogram.lowerBound(LatencyHistogram.bucket(990000)), p99);
+		assertEquals(0, histogram.getPercentile(0));
+	}
+
+}
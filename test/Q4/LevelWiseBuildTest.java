@@ -0,0 +1,33 @@
+package Q4;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Checks the level-wise build grows the same tree as the recursive build
+ */
+class LevelWiseBuildTest {
+
+	@Test
+	void levelWiseBuildGivesTheRecursiveTree() throws Exception {
+		for (long seed = 0; seed < 60; seed++) {
+			Dataset ds = TestTrees.encode(TestTrees.randomRows(seed));
+			ID3 id3 = new ID3(ds, "cls");
+			DTNode expected = id3.buildDecisionTree(ds);
+			TestTrees.assertSameTree(expected, id3.buildDecisionTreeLevelWise(ds), "seed " + seed);
+			//a budget small enough that a level is counted in several batches
+			TestTrees.assertSameTree(expected, id3.buildDecisionTreeLevelWise(ds, 5000), "seed " + seed + " budget 5000");
+		}
+	}
+
+
+	@Test
+	void levelWiseBuildFollowsTheStoppingRules() throws Exception {
+		for (long seed = 0; seed < 20; seed++) {
+			Dataset ds = TestTrees.encode(TestTrees.randomRows(seed));
+			ID3 id3 = new ID3(ds, "cls");
+			id3.setStoppingRules(3, 10, 0.01, Integer.MAX_VALUE);
+			TestTrees.assertSameTree(id3.buildDecisionTree(ds), id3.buildDecisionTreeLevelWise(ds), "seed " + seed);
+		}
+	}
+
+}
@@ -0,0 +1,185 @@
+package Q4;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/*
+ * Checks a saved model, and files of the older versions, load back predicting like
+ * the compiled tree, and that a damaged file is reported as an IOException
+ */
+class ModelFileTest {
+
+	@TempDir
+	File directory;
+
+
+	@Test
+	void loadedModelPredictsLikeTheCompiledTree() throws Exception {
+		for (long seed = 0; seed < 10; seed++) {
+			ArrayList<ArrayList<String>> dataset = TestTrees.randomRows(seed);
+			Dataset ds = TestTrees.encode(dataset);
+			ID3 id3 = new ID3(ds, "cls");
+			id3.buildDecisionTree(ds);
+			CompiledTree tree = id3.compile();
+			String path = new File(directory, "model" + seed + ".id3").getPath();
+			ModelFile.save(tree, path);
+			MappedModel model = ModelFile.load(path);
+			assertEquals(tree.getNumNodes(), model.getNumNodes(), "seed " + seed);
+			int[][] rows = TestTrees.encodedRows(tree, dataset);
+			for (int r = 0; r < rows.length; r++) {
+				assertEquals(tree.predict(rows[r]), model.predict(rows[r]), "seed " + seed + " row " + r);
+			}
+		}
+	}
+
+
+	@Test
+	void truncatedNodesAreReported() throws Exception {
+		Dataset ds = TestTrees.encode(TestTrees.randomRows(3));
+		ID3 id3 = new ID3(ds, "cls");
+		id3.buildDecisionTree(ds);
+		File saved = new File(directory, "model.id3");
+		ModelFile.save(id3.compile(), saved.getPath());
+		MappedModel model = ModelFile.load(saved.getPath());
+		long nodesEnd = saved.length() - model.childTableSize * 4L;
+
+		//cut inside the node arrays, and inside the child table
+		for (long length : new long[] { nodesEnd - 4, nodesEnd - model.getNumNodes() * 4L, saved.length() - 4 }) {
+			File truncated = new File(directory, "truncated" + length + ".id3");
+			Files.copy(saved.toPath(), truncated.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			try (RandomAccessFile file = new RandomAccessFile(truncated, "rw")) {
+				file.setLength(length);
+			}
+			IOException e = assertThrows(IOException.class, () -> ModelFile.load(truncated.getPath()));
+			assertEquals(truncated.getPath() + " is truncated", e.getMessage());
+		}
+	}
+
+
+
+	@Test
+	void damagedHeaderIsReported() throws Exception {
+		//a binned model, so the file has dictionaries, cuts and aliases
+		Dataset ds = Dataset.fromRows(BatchScorerTest.training(5, 2000));
+		ds.detectNumericAttributes("cls");
+		Binning.binHighCardinality(ds, "cls", 4, true);
+		ID3 id3 = new ID3(ds, "cls");
+		id3.buildDecisionTree(ds);
+		File saved = new File(directory, "model.id3");
+		ModelFile.save(id3.compile(), saved.getPath());
+		MappedModel model = ModelFile.load(saved.getPath());
+		int headerEnd = (int)(saved.length() - model.childTableSize * 4L - model.getNumNodes() * 8L - 8);
+		byte[] bytes = Files.readAllBytes(saved.toPath());
+
+		//cut anywhere before the node arrays
+		File damaged = new File(directory, "damaged.id3");
+		for (int length = 0; length < headerEnd + 8; length++) {
+			Files.write(damaged.toPath(), Arrays.copyOf(bytes, length));
+			assertThrows(IOException.class, () -> ModelFile.load(damaged.getPath()), "cut at " + length);
+		}
+
+		//a negative or huge count or length anywhere in the header either still loads or is an IOException
+		for (int offset = 8; offset + 4 <= headerEnd; offset++) {
+			for (int value : new int[] { -1, Integer.MAX_VALUE, 1 << 20 }) {
+				byte[] corrupt = bytes.clone();
+				for (int b = 0; b < 4; b++) {
+					corrupt[offset + b] = (byte)(value >>> (24 - 8 * b));
+				}
+				Files.write(damaged.toPath(), corrupt);
+				try {
+					ModelFile.load(damaged.getPath());
+				} catch (IOException e) {
+					//reported
+				}
+			}
+		}
+
+		//a class index that is not an attribute's
+		byte[] corrupt = bytes.clone();
+		corrupt[12] = 0;
+		corrupt[13] = 0;
+		corrupt[14] = 0;
+		corrupt[15] = 4; //of four attributes
+		Files.write(damaged.toPath(), corrupt);
+		assertThrows(IOException.class, () -> ModelFile.load(damaged.getPath()));
+	}
+
+
+	@Test
+	void olderVersionsStillLoad() throws Exception {
+		//version 1 had no cuts, so only categorical trees; version 2 no aliases
+		for (int version = 1; version <= 2; version++) {
+			for (long seed = 0; seed < 4; seed++) {
+				ArrayList<ArrayList<String>> dataset = version == 1 ? TestTrees.categorical(seed, 600, 6, 3) : TestTrees.mixed(seed, 600);
+				Dataset ds = TestTrees.encode(dataset);
+				ID3 id3 = new ID3(ds, "cls");
+				id3.buildDecisionTree(ds);
+				CompiledTree tree = id3.compile();
+				String path = new File(directory, "v" + version + "-" + seed + ".id3").getPath();
+				saveVersion(tree, path, version);
+				MappedModel model = ModelFile.load(path);
+				String message = "version " + version + " seed " + seed;
+				assertEquals(tree.getNumNodes(), model.getNumNodes(), message);
+				int[][] rows = TestTrees.encodedRows(tree, dataset);
+				for (int r = 0; r < rows.length; r++) {
+					assertEquals(tree.predict(rows[r]), model.predict(rows[r]), message + " row " + r);
+				}
+			}
+		}
+	}
+
+
+	//writes a compiled tree in the layout of an older version: 1 without cuts or aliases, 2 without aliases
+	static void saveVersion(CompiledTree tree, String path, int version) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)))) {
+			out.writeInt(ModelFile.MAGIC);
+			out.writeInt(version);
+			out.writeInt(tree.header.length);
+			out.writeInt(tree.classIndex);
+			for (int i = 0; i < tree.header.length; i++) {
+				ModelFile.writeString(out, tree.header[i]);
+				out.writeInt(tree.dictionaries.get(i).size());
+				for (String value : tree.dictionaries.get(i)) {
+					ModelFile.writeString(out, value);
+				}
+				if (version >= 2) {
+					double[] cuts = tree.cuts[i];
+					out.writeInt(cuts == null ? -1 : cuts.length);
+					if (cuts != null) {
+						for (double cut : cuts) {
+							out.writeDouble(cut);
+						}
+					}
+				}
+			}
+			while (out.size() % 4 != 0) {
+				out.writeByte(0);
+			}
+			int[] nodes = tree.nodeArray();
+			int[] childTable = tree.childArray();
+			out.writeInt(tree.numNodes);
+			out.writeInt(childTable.length);
+			for (int i = 0; i < tree.numNodes * 2; i++) {
+				out.writeInt(nodes[i]);
+			}
+			for (int child : childTable) {
+				out.writeInt(child);
+			}
+		}
+	}
+
+}
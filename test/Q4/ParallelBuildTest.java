@@ -0,0 +1,69 @@
+package Q4;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Checks the fork/join subtree build against the sequential build
+ */
+class ParallelBuildTest {
+
+	@Test
+	void parallelBuildGivesTheSequentialTree() throws Exception {
+		ForkJoinPool pool = new ForkJoinPool(8);
+		try {
+			for (long seed = 0; seed < 50; seed++) {
+				Dataset ds = TestTrees.encode(TestTrees.randomRows(seed));
+				DTNode expected = new ID3(ds, "cls").buildDecisionTree(ds);
+				ID3 parallel = new ID3(ds, "cls");
+				if (seed % 4 == 0) {
+					parallel.setParallelSplitEvaluation(pool, 50); //both kinds of task on one pool
+				}
+				DTNode actual = parallel.buildDecisionTreeParallel(ds, pool, 1 + (int)seed * 5);
+				String message = "seed " + seed;
+				TestTrees.assertSameTree(expected, actual, message);
+				assertSameRowCounts(expected, actual, message);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+
+	@Test
+	void concurrentBuildsOnOneDatasetDoNotInterfere() throws Exception {
+		Dataset ds = Dataset.fromRows(TestTrees.categorical(11, 5000, 10, 4));
+		DTNode expected = new ID3(ds, "cls").buildDecisionTree(ds);
+		ForkJoinPool pool = new ForkJoinPool(8);
+		try {
+			//several parallel builds at once, sharing the read-only dataset and the pool
+			ID3 shared = new ID3(ds, "cls");
+			Thread[] threads = new Thread[4];
+			DTNode[] roots = new DTNode[threads.length];
+			for (int t = 0; t < threads.length; t++) {
+				int index = t;
+				threads[t] = new Thread(() -> roots[index] = shared.buildDecisionTreeParallel(ds, pool, 20));
+				threads[t].start();
+			}
+			for (int t = 0; t < threads.length; t++) {
+				threads[t].join();
+				TestTrees.assertSameTree(expected, roots[t], "build " + t);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+
+	//asserts every node of two trees of the same structure covers the same number of rows
+	static void assertSameRowCounts(DTNode expected, DTNode actual, String message) {
+		assertEquals(expected.getRowCount(), actual.getRowCount(), message);
+		for (String edge : expected.children.keySet()) {
+			assertSameRowCounts(expected.children.get(edge), actual.children.get(edge), message + " " + expected.getValue() + "=" + edge);
+		}
+	}
+
+}
@@ -0,0 +1,65 @@
+package Q4;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Checks fork/join scoring of candidate attributes against sequential scoring
+ */
+class ParallelSplitTest {
+
+	@Test
+	void parallelScoringGivesTheSequentialTree() throws Exception {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (long seed = 0; seed < 50; seed++) {
+				Dataset ds = seed % 2 == 0 ? Dataset.fromRows(TestTrees.categorical(seed, 200 + (int)seed * 10, 12, 4))
+						: TestTrees.encode(TestTrees.mixed(seed, 200 + (int)seed * 10));
+				DTNode expected = new ID3(ds, "cls").buildDecisionTree(ds);
+				ID3 parallel = new ID3(ds, "cls");
+				parallel.setParallelSplitEvaluation(pool, (int)seed % 3 * 20);
+				TestTrees.assertSameTree(expected, parallel.buildDecisionTree(ds), "seed " + seed);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+
+	@Test
+	void attributesAreScoredOnTheConfiguredPoolFromAnotherPool() throws Exception {
+		ForkJoinPool splitPool = new ForkJoinPool(2, pool -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName("split-" + thread.getName());
+			return thread;
+		}, null, false);
+		ForkJoinPool callerPool = new ForkJoinPool(2);
+		try {
+			Dataset ds = Dataset.fromRows(TestTrees.categorical(1, 2000, 10, 4));
+			Set<String> scoringThreads = ConcurrentHashMap.newKeySet();
+			ID3 id3 = new ID3(ds, "cls");
+			id3.setParallelSplitEvaluation(splitPool, 0);
+			id3.setTreeListener(new TreeListener() {
+				@Override
+				public void rowsScanned(long numRows) {
+					scoringThreads.add(Thread.currentThread().getName());
+				}
+			});
+			DTNode root = callerPool.submit(() -> id3.buildDecisionTree(ds)).get();
+			TestTrees.assertSameTree(new ID3(ds, "cls").buildDecisionTree(ds), root, "tree built from another pool");
+
+			//the caller's pool still counts rows outside attribute scoring, e.g. for single-candidate nodes
+			assertTrue(scoringThreads.stream().anyMatch(name -> name.startsWith("split-")), "scored on " + scoringThreads);
+		} finally {
+			splitPool.shutdown();
+			callerPool.shutdown();
+		}
+	}
+
+}
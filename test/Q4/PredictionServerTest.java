@@ -0,0 +1,129 @@
+package Q4;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Checks the prediction server answers every row with CompiledTree.predict's class
+ * over loopback, answers STATS, and drops its clients when closed
+ */
+class PredictionServerTest {
+
+	static final int NUM_CLIENTS = 4;
+
+
+	@Test
+	void answersLikeTheCompiledTree() throws Exception {
+		ArrayList<ArrayList<String>> rows = TestTrees.mixed(1, 2000);
+		Dataset ds = TestTrees.encode(rows);
+		ID3 id3 = new ID3(ds, "cls");
+		id3.buildDecisionTree(ds);
+		CompiledTree tree = id3.compile();
+
+		//the training rows, with some values replaced by ones the tree never saw
+		Random random = new Random(2);
+		List<String> lines = new ArrayList<String>();
+		List<String> expected = new ArrayList<String>();
+		int[] encoded = new int[tree.getNumAttributes()];
+		int unseen = 0;
+		for (ArrayList<String> row : rows.subList(1, rows.size())) {
+			ArrayList<String> values = new ArrayList<String>(row);
+			if (random.nextInt(4) == 0) values.set(2, "zz");
+			if (random.nextInt(10) == 0) values.set(random.nextInt(2), "n/a");
+			values.set(3, "");
+			lines.add(String.join(",", values));
+			tree.encode(values, encoded);
+			int predicted = tree.predict(encoded);
+			if (predicted < 0) unseen++;
+			expected.add(predicted < 0 ? PredictionServer.UNKNOWN : tree.getClassLabel(predicted));
+		}
+		assertTrue(unseen > 0, "no row reached a missing edge");
+
+		try (PredictionServer server = new PredictionServer(tree, 0, 16, 0)) {
+			server.start();
+			ExecutorService clients = Executors.newFixedThreadPool(NUM_CLIENTS);
+			try {
+				List<Future<List<String>>> answers = new ArrayList<Future<List<String>>>();
+				for (int c = 0; c < NUM_CLIENTS; c++) {
+					answers.add(clients.submit(() -> ask(server.getPort(), lines)));
+				}
+				for (Future<List<String>> answer : answers) {
+					List<String> actual = answer.get();
+					for (int r = 0; r < expected.size(); r++) {
+						assertEquals(expected.get(r), actual.get(r), "row " + r + ": " + lines.get(r));
+					}
+				}
+			} finally {
+				clients.shutdown();
+			}
+
+			List<String> stats = ask(server.getPort(), List.of(PredictionServer.STATS));
+			assertTrue(stats.get(0).startsWith("requests=" + NUM_CLIENTS * lines.size() + " "), stats.get(0));
+		}
+	}
+
+
+	@Test
+	void closeDropsConnectedClients() throws Exception {
+		ArrayList<ArrayList<String>> rows = TestTrees.categorical(3, 500, 4, 3);
+		Dataset ds = TestTrees.encode(rows);
+		ID3 id3 = new ID3(ds, "cls");
+		id3.buildDecisionTree(ds);
+		PredictionServer server = new PredictionServer(id3.compile(), 0, 16, 0);
+		server.start();
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+			socket.setSoTimeout(10000);
+			PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			out.println(String.join(",", rows.get(1)));
+			assertTrue(in.readLine() != null, "answered before close");
+
+			//the client is idle in the server's read when it closes
+			server.close();
+			String line;
+			try {
+				line = in.readLine();
+			} catch (SocketException e) {
+				line = null; //reset by the server
+			}
+			assertEquals(null, line, "the connection is closed");
+			server.acceptor.join(10000);
+			assertTrue(!server.acceptor.isAlive(), "the acceptor stopped");
+			assertTrue(server.clients.isEmpty());
+		}
+	}
+
+
+	//sends lines on one connection and reads an answer to each
+	static List<String> ask(int port, List<String> lines) throws Exception {
+		List<String> answers = new ArrayList<String>();
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+			socket.setSoTimeout(10000);
+			PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			for (String line : lines) {
+				out.println(line);
+				answers.add(in.readLine());
+			}
+		}
+		return answers;
+	}
+
+}
@@ -0,0 +1,75 @@
+package Q4;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Checks reduced-error pruning never lowers the holdout accuracy and reports the
+ * nodes it removed, on categorical and threshold trees
+ */
+class PruningTest {
+
+	@Test
+	void categoricalTreesArePruned() throws Exception {
+		int removed = 0;
+		for (long seed = 0; seed < 8; seed++) {
+			removed += check(TestTrees.categorical(seed, 300, 8, 4), TestTrees.categorical(seed + 100, 500, 8, 4), "categorical seed " + seed);
+		}
+		assertTrue(removed > 0, "nothing was pruned");
+	}
+
+
+	@Test
+	void thresholdTreesArePruned() throws Exception {
+		int removed = 0;
+		for (long seed = 0; seed < 8; seed++) {
+			removed += check(TestTrees.mixed(seed, 400 + (int)seed * 100), TestTrees.mixed(seed + 100, 500), "mixed seed " + seed);
+		}
+		assertTrue(removed > 0, "nothing was pruned");
+	}
+
+
+	/*
+	 * Builds a tree on the training rows, prunes it against the holdout rows and checks
+	 * the accuracy and node count before and after
+	 *
+	 * @return the number of nodes removed
+	 */
+	static int check(ArrayList<ArrayList<String>> training, ArrayList<ArrayList<String>> holdout, String message) throws Exception {
+		Dataset ds = TestTrees.encode(training);
+		ID3 id3 = new ID3(ds, "cls");
+		DTNode root = id3.buildDecisionTree(ds);
+		int before = ID3.countNodes(root);
+		int correctBefore = countCorrect(root, holdout);
+
+		int removed = Pruning.reducedError(root, TestTrees.encode(holdout), "cls");
+		int after = ID3.countNodes(root);
+		assertEquals(before - after, removed, message);
+		int correctAfter = countCorrect(root, holdout);
+		assertTrue(correctAfter >= correctBefore, message + ": " + correctBefore + " correct before, " + correctAfter + " after");
+
+		//pruning again against the same rows finds nothing more to remove
+		assertEquals(0, Pruning.reducedError(root, TestTrees.encode(holdout), "cls"), message);
+		return removed;
+	}
+
+
+	//counts the rows (after the header) the tree predicts the class of; a row with no edge is wrong
+	static int countCorrect(DTNode root, ArrayList<ArrayList<String>> rows) {
+		int classIndex = rows.get(0).indexOf("cls");
+		int correct = 0;
+		for (ArrayList<String> row : rows.subList(1, rows.size())) {
+			DTNode node = root;
+			while (node != null && !node.children.isEmpty()) {
+				node = node.getChild(row.get(rows.get(0).indexOf(node.getValue())));
+			}
+			if (node != null && node.getValue().equals(row.get(classIndex))) correct++;
+		}
+		return correct;
+	}
+
+}
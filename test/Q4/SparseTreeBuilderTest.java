@@ -0,0 +1,145 @@
+package Q4;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Checks the sparse builder grows the same tree as the dense build of the same rows,
+ * with every absent feature written out as "0" (up to exactly tied splits)
+ */
+class SparseTreeBuilderTest {
+
+	static final String[] VALUES = { "a", "b", "c" };
+
+
+	@Test
+	void sparseBuildGivesTheDenseTree() throws Exception {
+		int ties = 0;
+		int numNodes = 0;
+		for (long seed = 0; seed < 30; seed++) {
+			int numFeatures = 20 + (int)seed * 5;
+			int maxDepth = seed % 3 == 0 ? 3 + (int)seed % 4 : Integer.MAX_VALUE;
+			ArrayList<ArrayList<String>> dense = new ArrayList<ArrayList<String>>();
+			String libsvm = generate(seed, 300 + (int)seed * 30, numFeatures, 1 + (int)seed % 6, dense);
+
+			SparseDataset sparse = SparseDataset.loadLibsvm(new ByteArrayInputStream(libsvm.getBytes(StandardCharsets.UTF_8)));
+			assertEquals(dense.size() - 1, sparse.getNumRows());
+			SparseTreeBuilder builder = new SparseTreeBuilder(sparse);
+			builder.setStoppingRules(maxDepth, 3);
+			DTNode actual = builder.build();
+
+			Dataset ds = Dataset.fromRows(dense);
+			ID3 id3 = new ID3(ds, "class");
+			id3.setStoppingRules(maxDepth, 3, 0, Integer.MAX_VALUE);
+			DTNode expected = id3.buildDecisionTree(ds);
+			String message = "seed " + seed + " max depth " + maxDepth;
+			int seedTies = compare(new ID3(dense, "class"), expected, actual, dense, message);
+			if (seedTies == 0) {
+				assertEquals(ID3.countNodes(expected), builder.getNumNodes(), message);
+				assertEquals(ID3.treeDepth(expected), builder.getDepth(), message);
+			}
+			ties += seedTies;
+			numNodes += builder.getNumNodes();
+
+			//every row is predicted by the path its dense values take through the tree
+			for (int r = 0; r < sparse.getNumRows(); r++) {
+				DTNode node = actual;
+				while (node != null && !node.children.isEmpty()) {
+					node = node.children.get(dense.get(r + 1).get(Integer.parseInt(node.getValue())));
+				}
+				assertEquals(node == null ? null : node.getValue(), SparseTreeBuilder.predict(actual, sparse, r), message + " row " + r);
+			}
+		}
+		assertTrue(ties <= 5, ties + " tied splits in " + numNodes + " nodes");
+	}
+
+
+	/*
+	 * Compares two trees node by node. Where they split on different features, the two
+	 * features' gains must tie: the builders add up the entropy terms in different orders,
+	 * so an exact tie can differ in the last bit and go either way (the subtrees below are
+	 * then not compared).
+	 *
+	 * @param rows - the node's dense rows, the header first
+	 * @return the number of tied splits found
+	 */
+	static int compare(ID3 legacy, DTNode expected, DTNode actual, ArrayList<ArrayList<String>> rows, String message) {
+		assertEquals(expected.getType(), actual.getType(), message);
+		if (!expected.getValue().equals(actual.getValue())) {
+			assertEquals("internal", expected.getType(), message);
+			assertEquals(legacy.calculateInformationGain(expected.getValue(), rows),
+					legacy.calculateInformationGain(actual.getValue(), rows), 1e-12, message + " split " + expected.getValue() + " vs " + actual.getValue());
+			return 1;
+		}
+		assertEquals(new TreeMap<String, DTNode>(expected.children).keySet(), new TreeMap<String, DTNode>(actual.children).keySet(), message);
+		int ties = 0;
+		int feature = rows.get(0).indexOf(expected.getValue());
+		for (String edge : expected.children.keySet()) {
+			ArrayList<ArrayList<String>> childRows = new ArrayList<ArrayList<String>>();
+			childRows.add(rows.get(0));
+			for (int r = 1; r < rows.size(); r++) {
+				if (rows.get(r).get(feature).equals(edge)) childRows.add(rows.get(r));
+			}
+			ties += compare(legacy, expected.children.get(edge), actual.children.get(edge), childRows, message + " " + expected.getValue() + "=" + edge);
+		}
+		return ties;
+	}
+
+
+	/*
+	 * Generates rows of a few entries each, with values a, b or c, as LIBSVM text (entries
+	 * sometimes out of order, with comments and CRLF line ends) and as dense rows
+	 *
+	 * @param dense - filled with the dense rows, the header ("0", "1", ..., "class") first
+	 * @return the LIBSVM text
+	 */
+	static String generate(long seed, int numRows, int numFeatures, int entriesPerRow, ArrayList<ArrayList<String>> dense) {
+		Random random = new Random(seed);
+		StringBuilder libsvm = new StringBuilder();
+		ArrayList<String> header = new ArrayList<String>();
+		for (int f = 0; f < numFeatures; f++) {
+			header.add(Integer.toString(f));
+		}
+		header.add("class");
+		dense.add(header);
+		for (int r = 0; r < numRows; r++) {
+			TreeMap<Integer, String> entries = new TreeMap<Integer, String>();
+			for (int k = 0; k < entriesPerRow; k++) {
+				entries.put(random.nextInt(numFeatures), VALUES[random.nextInt(VALUES.length)]);
+			}
+			int hot = 0;
+			for (int f : entries.keySet()) {
+				if (f < 10) hot++;
+			}
+			String cls = (hot + random.nextInt(2)) % 3 == 0 ? "+1" : "-1";
+
+			libsvm.append(cls);
+			List<Integer> features = new ArrayList<Integer>(entries.keySet());
+			if (r % 5 == 0) Collections.reverse(features);
+			for (int f : features) {
+				libsvm.append(' ').append(f).append(':').append(entries.get(f));
+			}
+			if (r % 7 == 0) libsvm.append(" # comment 3:x");
+			libsvm.append(r % 3 == 0 ? "\r\n" : "\n");
+
+			ArrayList<String> row = new ArrayList<String>();
+			for (int f = 0; f < numFeatures; f++) {
+				row.add(entries.getOrDefault(f, "0"));
+			}
+			row.add(cls);
+			dense.add(row);
+		}
+		return libsvm.toString();
+	}
+
+}
@@ -0,0 +1,111 @@
+package Q4;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Checks every tree the recursive, parallel and level-wise builds grow under the
+ * stopping rules keeps to them, and that the default rules change nothing
+ */
+class StoppingRulesTest {
+
+	//{maxDepth, minRows, maxNodes} with minGain from GAINS; each row tightens some rules
+	static final int[][] RULES = {
+		{ 3, 0, Integer.MAX_VALUE },
+		{ Integer.MAX_VALUE, 60, Integer.MAX_VALUE },
+		{ Integer.MAX_VALUE, 0, Integer.MAX_VALUE },
+		{ Integer.MAX_VALUE, 0, 25 },
+		{ 4, 20, 60 },
+	};
+	static final double[] GAINS = { 0, 0, 0.1, 0, 0.02 };
+
+
+	@Test
+	void treesKeepToTheRules() throws Exception {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (long seed = 0; seed < 4; seed++) {
+				ArrayList<ArrayList<String>> rows = TestTrees.categorical(seed, 1500, 6, 3);
+				Dataset ds = TestTrees.encode(rows);
+				int unlimited = ID3.countNodes(new ID3(ds, "cls").buildDecisionTree(ds));
+				for (int r = 0; r < RULES.length; r++) {
+					int maxDepth = RULES[r][0];
+					int minRows = RULES[r][1];
+					double minGain = GAINS[r];
+					int maxNodes = RULES[r][2];
+					for (String build : new String[] { "recursive", "parallel", "level-wise" }) {
+						ID3 id3 = new ID3(ds, "cls");
+						id3.setStoppingRules(maxDepth, minRows, minGain, maxNodes);
+						DTNode root;
+						if (build.equals("recursive")) {
+							root = id3.buildDecisionTree(ds);
+						}
+						else if (build.equals("parallel")) {
+							root = id3.buildDecisionTreeParallel(ds, pool, 16);
+						}
+						else {
+							root = id3.buildDecisionTreeLevelWise(ds);
+						}
+						String message = build + " seed " + seed + " rules " + r;
+						int numNodes = ID3.countNodes(root);
+						assertTrue(numNodes < unlimited, message + ": the rules cut the tree");
+						assertTrue(numNodes <= maxNodes, message + ": " + numNodes + " nodes");
+						assertTrue(ID3.treeDepth(root) <= maxDepth, message + ": depth " + ID3.treeDepth(root));
+						checkSplits(new ID3(rows, "cls"), root, rows, minRows, minGain, message);
+					}
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+
+	@Test
+	void defaultRulesChangeNothing() throws Exception {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (long seed = 0; seed < 6; seed++) {
+				ArrayList<ArrayList<String>> rows = TestTrees.randomRows(seed);
+				Dataset ds = TestTrees.encode(rows);
+				DTNode expected = new ID3(ds, "cls").buildDecisionTree(ds);
+				ID3 id3 = new ID3(ds, "cls");
+				id3.setStoppingRules(Integer.MAX_VALUE, 0, 0, Integer.MAX_VALUE);
+				TestTrees.assertSameTree(expected, id3.buildDecisionTree(ds), "recursive seed " + seed);
+				TestTrees.assertSameTree(expected, id3.buildDecisionTreeParallel(ds, pool, 16), "parallel seed " + seed);
+				TestTrees.assertSameTree(expected, id3.buildDecisionTreeLevelWise(ds), "level-wise seed " + seed);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+
+	/*
+	 * Routes the training rows down the tree and checks each internal node had at least
+	 * minRows rows and a split gain of at least minGain on them
+	 *
+	 * @param rows - the node's rows, the header first
+	 */
+	static void checkSplits(ID3 legacy, DTNode node, ArrayList<ArrayList<String>> rows, int minRows, double minGain, String message) {
+		if (node.children.isEmpty()) return;
+		assertTrue(rows.size() - 1 >= minRows, message + ": " + node.getValue() + " split " + (rows.size() - 1) + " rows");
+		double gain = legacy.calculateInformationGain(node.getValue(), rows);
+		assertTrue(gain > 0 && gain >= minGain - 1e-12, message + ": " + node.getValue() + " split with gain " + gain);
+		int attr = rows.get(0).indexOf(node.getValue());
+		for (Map.Entry<String, DTNode> child : node.children.entrySet()) {
+			ArrayList<ArrayList<String>> childRows = new ArrayList<ArrayList<String>>();
+			childRows.add(rows.get(0));
+			for (int r = 1; r < rows.size(); r++) {
+				if (rows.get(r).get(attr).equals(child.getKey())) childRows.add(rows.get(r));
+			}
+			checkSplits(legacy, child.getValue(), childRows, minRows, minGain, message + " " + node.getValue() + "=" + child.getKey());
+		}
+	}
+
+}
@@ -0,0 +1,124 @@
+package Q4;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/*
+ * Seeded random datasets and a structural comparison of trees, shared by the tests
+ * that check a builder grows the same tree as another.
+ */
+final class TestTrees {
+
+	private TestTrees() {
+	}
+
+
+	/*
+	 * A categorical dataset whose class depends on every attribute, so trees grow deep
+	 *
+	 * @param seed - the random seed
+	 * @param numRows - the number of data rows
+	 * @param numAttributes - the number of attributes, named a0, a1, ...
+	 * @param cardinality - the values of each attribute, v0, v1, ...
+	 * @return the rows, the header first, with the class attribute "cls" (c0, c1 or c2) last
+	 */
+	static ArrayList<ArrayList<String>> categorical(long seed, int numRows, int numAttributes, int cardinality) {
+		Random random = new Random(seed);
+		ArrayList<ArrayList<String>> rows = new ArrayList<ArrayList<String>>();
+		ArrayList<String> header = new ArrayList<String>();
+		for (int i = 0; i < numAttributes; i++) {
+			header.add("a" + i);
+		}
+		header.add("cls");
+		rows.add(header);
+		for (int r = 0; r < numRows; r++) {
+			ArrayList<String> row = new ArrayList<String>();
+			int sum = 0;
+			for (int i = 0; i < numAttributes; i++) {
+				int value = random.nextInt(cardinality);
+				sum += value * (i + 1);
+				row.add("v" + value);
+			}
+			row.add("c" + (sum % 3));
+			rows.add(row);
+		}
+		return rows;
+	}
+
+
+	/*
+	 * A dataset of two numeric attributes (x with decimals, y with some values written
+	 * as "12.0") and one categorical, with 5% label noise
+	 *
+	 * @return the rows, the header (x, y, cat, cls) first
+	 */
+	static ArrayList<ArrayList<String>> mixed(long seed, int numRows) {
+		Random random = new Random(seed);
+		ArrayList<ArrayList<String>> rows = new ArrayList<ArrayList<String>>();
+		rows.add(new ArrayList<String>(Arrays.asList("x", "y", "cat", "cls")));
+		for (int r = 0; r < numRows; r++) {
+			double x = Math.round(random.nextGaussian() * 100) / 10.0;
+			int y = random.nextInt(50);
+			String cat = "v" + random.nextInt(3);
+			String cls = (x > 0.5 && y < 30) || cat.equals("v1") ? "yes" : "no";
+			if (random.nextDouble() < 0.05) cls = random.nextBoolean() ? "yes" : "no";
+			rows.add(new ArrayList<String>(Arrays.asList(Double.toString(x), y + (random.nextInt(4) == 0 ? ".0" : ""), cat, cls)));
+		}
+		return rows;
+	}
+
+
+	//a categorical dataset for even seeds and a mixed one for odd seeds, of a few hundred to a few thousand rows
+	static ArrayList<ArrayList<String>> randomRows(long seed) {
+		int numRows = 300 + (int)seed * 40;
+		return seed % 2 == 0 ? categorical(seed, numRows, 8, 4) : mixed(seed, numRows);
+	}
+
+
+	//encodes a dataset made by categorical() or mixed(), with the numeric attributes of mixed ones split on thresholds
+	static Dataset encode(ArrayList<ArrayList<String>> rows) {
+		Dataset ds = Dataset.fromRows(rows);
+		if (rows.get(0).contains("x")) {
+			ds.detectNumericAttributes("cls");
+		}
+		return ds;
+	}
+
+
+	//the data rows (after the header) encoded with a compiled tree's dictionaries and cuts, as CompiledTree.predict takes them
+	static int[][] encodedRows(CompiledTree tree, ArrayList<ArrayList<String>> rows) {
+		int[][] encoded = new int[rows.size() - 1][tree.getNumAttributes()];
+		for (int r = 1; r < rows.size(); r++) {
+			tree.encode(rows.get(r), encoded[r - 1]);
+		}
+		return encoded;
+	}
+
+
+	/*
+	 * Writes a tree as a String that only depends on its structure: each node's type and
+	 * value, with its children in edge order (DTNode keeps them in a HashMap)
+	 */
+	static String canon(DTNode node) {
+		if (node.children.isEmpty()) {
+			return node.getType() + "(" + node.getValue() + ")";
+		}
+		StringBuilder out = new StringBuilder(node.getType()).append('(').append(node.getValue()).append(")[");
+		for (Map.Entry<String, DTNode> child : new TreeMap<String, DTNode>(node.children).entrySet()) {
+			out.append(child.getKey()).append('=').append(canon(child.getValue())).append(';');
+		}
+		return out.append(']').toString();
+	}
+
+
+	//asserts two trees have the same structure
+	static void assertSameTree(DTNode expected, DTNode actual, String message) {
+		assertEquals(canon(expected), canon(actual), message);
+	}
+
+}
@@ -0,0 +1,181 @@
+package Q4;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Checks the threshold search finds the best midpoint of a brute-force scan, on
+ * both its histogram and its sorted-sweep paths
+ */
+class ThresholdSearchTest {
+
+	@Test
+	void bestThresholdMatchesABruteForceScan() throws Exception {
+		int sorted = 0;
+		int histogram = 0;
+		for (long seed = 0; seed < 30; seed++) {
+			Random random = new Random(seed);
+			int numDistinct = 5 + random.nextInt(seed % 2 == 0 ? 20 : 2000);
+			ArrayList<ArrayList<String>> rows = rows(random, 3000, numDistinct);
+			Dataset ds = Dataset.fromRows(rows);
+			assertEquals(1, ds.detectNumericAttributes("cls"));
+			int attr = ds.getAttributeIndex("x");
+			int classIndex = ds.getAttributeIndex("cls");
+			assertTrue(ds.codeRanks[attr].length > ds.rankValues[attr].length, "some codes share a rank");
+
+			//nodes of every size, from a handful of rows to all of them
+			for (int size : new int[] { 2, 5, 20, 100, 700, ds.getNumRows() }) {
+				int[] nodeRows = new int[ds.getNumRows()];
+				for (int i = 0; i < nodeRows.length; i++) {
+					nodeRows[i] = i;
+				}
+				for (int i = 0; i < size; i++) {
+					int j = i + random.nextInt(nodeRows.length - i);
+					int swap = nodeRows[i];
+					nodeRows[i] = nodeRows[j];
+					nodeRows[j] = swap;
+				}
+				int from = random.nextInt(2);
+				int to = Math.max(from, size);
+				String message = "seed " + seed + " rows " + (to - from) + " of " + ds.rankValues[attr].length + " values";
+				if ((long)(to - from) * ThresholdSearch.SORT_FACTOR < ds.rankValues[attr].length) {
+					sorted++;
+				}
+				else {
+					histogram++;
+				}
+
+				Split split = ThresholdSearch.bestThreshold(ds, attr, classIndex, nodeRows, from, to);
+				check(rows, nodeRows, from, to, split, message);
+
+				//the other path gives the same split
+				Split other = otherPath(ds, attr, classIndex, nodeRows, from, to);
+				assertEquals(split.gain, other.gain, message);
+				assertEquals(split.threshold, other.threshold, message);
+			}
+		}
+		assertTrue(sorted > 20, sorted + " sorted sweeps");
+		assertTrue(histogram > 20, histogram + " histogram sweeps");
+	}
+
+
+	/*
+	 * Scores every midpoint between the node's consecutive distinct values and checks the
+	 * split has the best gain, at a threshold that has it
+	 *
+	 * @param rows - the dataset rows, the header first
+	 */
+	static void check(ArrayList<ArrayList<String>> rows, int[] nodeRows, int from, int to, Split split, String message) {
+		TreeMap<Double, HashMap<String, Integer>> byValue = new TreeMap<Double, HashMap<String, Integer>>();
+		HashMap<String, Integer> totals = new HashMap<String, Integer>();
+		for (int i = from; i < to; i++) {
+			ArrayList<String> row = rows.get(nodeRows[i] + 1);
+			byValue.computeIfAbsent(Double.parseDouble(row.get(0)), v -> new HashMap<String, Integer>()).merge(row.get(1), 1, Integer::sum);
+			totals.merge(row.get(1), 1, Integer::sum);
+		}
+		Double[] values = byValue.keySet().toArray(new Double[0]);
+
+		double bestGain = 0;
+		HashMap<Double, Double> gains = new HashMap<Double, Double>(); //threshold -> gain
+		for (int v = 0; v + 1 < values.length; v++) {
+			double threshold = ThresholdSearch.midpoint(values[v], values[v + 1]);
+			assertTrue(values[v] <= threshold && threshold < values[v + 1], message);
+			HashMap<String, Integer> left = new HashMap<String, Integer>();
+			for (HashMap<String, Integer> counts : byValue.headMap(threshold, true).values()) {
+				counts.forEach((cls, count) -> left.merge(cls, count, Integer::sum));
+			}
+			HashMap<String, Integer> right = new HashMap<String, Integer>(totals);
+			left.forEach((cls, count) -> right.merge(cls, -count, Integer::sum));
+			int leftTotal = sum(left);
+			int rightTotal = sum(right);
+			double gain = entropy(totals) - (double)leftTotal / (to - from) * entropy(left) - (double)rightTotal / (to - from) * entropy(right);
+			gains.put(threshold, gain);
+			bestGain = Math.max(bestGain, gain);
+		}
+
+		assertEquals(bestGain, split.gain, 1e-12, message);
+		if (bestGain <= 0) {
+			assertTrue(Double.isNaN(split.threshold), message + ": threshold " + split.threshold);
+		}
+		else {
+			assertTrue(gains.containsKey(split.threshold), message + ": " + split.threshold + " is not a midpoint");
+			assertEquals(bestGain, gains.get(split.threshold), 1e-12, message);
+		}
+	}
+
+
+	//the split from the path bestThreshold did not take: a sorted sweep for a histogram, or the reverse
+	static Split otherPath(Dataset ds, int attr, int classIndex, int[] rows, int from, int to) {
+		int[] column = ds.getColumn(attr);
+		int[] classColumn = ds.getColumn(classIndex);
+		int[] codeRanks = ds.codeRanks[attr];
+		double[] rankValues = ds.rankValues[attr];
+		int numClasses = ds.getCardinality(classIndex);
+		if ((long)(to - from) * ThresholdSearch.SORT_FACTOR < rankValues.length) {
+			int[] counts = new int[rankValues.length * numClasses];
+			for (int i = from; i < to; i++) {
+				counts[codeRanks[column[rows[i]]] * numClasses + classColumn[rows[i]]]++;
+			}
+			return ThresholdSearch.sweep(counts, rankValues, numClasses, attr);
+		}
+		long[] keys = new long[to - from];
+		for (int i = from; i < to; i++) {
+			keys[i - from] = ((long)codeRanks[column[rows[i]]] << 32) | classColumn[rows[i]];
+		}
+		Arrays.sort(keys);
+		return ThresholdSearch.sweepSorted(keys, rankValues, numClasses, attr);
+	}
+
+
+	//the entropy of class counts, in a base of the number of classes present, as ID3 takes it
+	static double entropy(HashMap<String, Integer> counts) {
+		int total = sum(counts);
+		int classes = 0;
+		for (int count : counts.values()) {
+			if (count > 0) classes++;
+		}
+		double entropy = 0;
+		for (int count : counts.values()) {
+			if (count > 0 && count < total) {
+				double part = (double)count / total;
+				entropy -= part * Math.log(part) / Math.log(classes);
+			}
+		}
+		return entropy;
+	}
+
+	//helper function for the sum of the counts
+	static int sum(HashMap<String, Integer> counts) {
+		int total = 0;
+		for (int count : counts.values()) {
+			total += count;
+		}
+		return total;
+	}
+
+
+	/*
+	 * Rows of a numeric x with many repeated values, some written as "5.0" for 5 so two
+	 * codes share a rank, and a class of three values that mostly rises with x
+	 */
+	static ArrayList<ArrayList<String>> rows(Random random, int numRows, int numDistinct) {
+		ArrayList<ArrayList<String>> rows = new ArrayList<ArrayList<String>>();
+		rows.add(new ArrayList<String>(Arrays.asList("x", "cls")));
+		for (int r = 0; r < numRows; r++) {
+			int value = random.nextInt(numDistinct) - numDistinct / 3;
+			String x = random.nextInt(3) == 0 ? value + ".0" : Integer.toString(value);
+			int cls = value * 3 / numDistinct + (random.nextInt(5) == 0 ? 1 : 0);
+			rows.add(new ArrayList<String>(Arrays.asList(x, "c" + Math.floorMod(cls, 3))));
+		}
+		return rows;
+	}
+
+}
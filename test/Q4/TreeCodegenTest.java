@@ -0,0 +1,105 @@
+package Q4;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Checks the generated predictors give the compiled tree's class for every row,
+ * including rows with values the tree never saw
+ */
+class TreeCodegenTest {
+
+	@Test
+	void categoricalTreesPredictLikeTheCompiledTree() throws Exception {
+		for (long seed = 0; seed < 8; seed++) {
+			check(TestTrees.categorical(seed, 200 + (int)seed * 100, 6, 3), "categorical seed " + seed);
+		}
+	}
+
+
+	@Test
+	void thresholdTreesPredictLikeTheCompiledTree() throws Exception {
+		for (long seed = 0; seed < 8; seed++) {
+			check(TestTrees.mixed(seed, 300 + (int)seed * 200), "mixed seed " + seed);
+		}
+	}
+
+
+	@Test
+	void largeTreesAreSplitIntoMethods() throws Exception {
+		CompiledTree categorical = check(TestTrees.categorical(42, 8000, 10, 4), "large categorical");
+		assertTrue(categorical.getNumNodes() > 5 * TreeCodegen.MAX_METHOD_NODES, categorical.getNumNodes() + " nodes");
+		assertTrue(countMethods(categorical) > 5, countMethods(categorical) + " methods");
+
+		CompiledTree threshold = check(TestTrees.mixed(42, 20000), "large mixed");
+		assertTrue(threshold.getNumNodes() > TreeCodegen.MAX_METHOD_NODES, threshold.getNumNodes() + " nodes");
+		assertTrue(countMethods(threshold) > 1, countMethods(threshold) + " methods");
+	}
+
+
+	/*
+	 * Builds and compiles a tree, generates its predictor and compares the two on the
+	 * training rows, on copies with unseen values, and on codes out of every range
+	 *
+	 * @return the compiled tree
+	 */
+	static CompiledTree check(ArrayList<ArrayList<String>> rows, String message) throws Exception {
+
+		Dataset ds = TestTrees.encode(rows);
+		ID3 id3 = new ID3(ds, "cls");
+		id3.buildDecisionTree(ds);
+		CompiledTree tree = id3.compile();
+		Predictor generated = TreeCodegen.generate(tree);
+
+		//the training rows, then each with some values replaced by ones the tree never saw
+		//("zz" is not in a dictionary, "n/a" is not a number), then with codes past every dictionary
+		int[][] training = TestTrees.encodedRows(tree, rows);
+		int numRows = training.length;
+		int[][] encoded = new int[numRows * 3][];
+		Random random = new Random(message.hashCode());
+		for (int r = 0; r < numRows; r++) {
+			encoded[r] = training[r];
+			ArrayList<String> unseen = new ArrayList<String>(rows.get(r + 1));
+			for (int i = 0; i < unseen.size(); i++) {
+				if (random.nextInt(4) == 0) unseen.set(i, random.nextBoolean() ? "zz" : "n/a");
+			}
+			encoded[numRows + r] = new int[tree.getNumAttributes()];
+			tree.encode(unseen, encoded[numRows + r]);
+			encoded[2 * numRows + r] = training[r].clone();
+			encoded[2 * numRows + r][random.nextInt(tree.getNumAttributes())] = 1000;
+		}
+
+		int unseenRows = 0;
+		for (int r = 0; r < encoded.length; r++) {
+			int expected = tree.predict(encoded[r]);
+			assertEquals(expected, generated.predict(encoded[r]), message + " row " + r);
+			if (expected < 0) unseenRows++;
+		}
+		assertTrue(unseenRows > 0, message + ": no row reached a missing edge");
+
+		int[] expected = new int[encoded.length];
+		int[] actual = new int[encoded.length];
+		tree.predictBatch(encoded, expected);
+		generated.predictBatch(encoded, actual);
+		assertArrayEquals(expected, actual, message);
+		return tree;
+	}
+
+
+	//helper function for the number of methods the generated source has for the nodes
+	static int countMethods(CompiledTree tree) {
+		String source = TreeCodegen.source(tree, "Counted");
+		int methods = 0;
+		for (int i = source.indexOf("static int n"); i >= 0; i = source.indexOf("static int n", i + 1)) {
+			methods++;
+		}
+		return methods;
+	}
+
+}
@@ -0,0 +1,127 @@
+package Q4;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/*
+ * Checks the metrics a TreeMetrics listener collects match the trees built and the
+ * rows predicted, and that builds and prediction batches are recorded as JFR events
+ */
+class TreeMetricsTest {
+
+	@TempDir
+	File directory;
+
+
+	@Test
+	void countersMatchTheBuiltTree() throws Exception {
+		for (long seed = 0; seed < 6; seed++) {
+			ArrayList<ArrayList<String>> rows = TestTrees.randomRows(seed);
+			Dataset ds = TestTrees.encode(rows);
+			for (boolean levelWise : new boolean[] { false, true }) {
+				String message = (levelWise ? "level-wise" : "recursive") + " seed " + seed;
+				TreeMetrics metrics = new TreeMetrics();
+				ID3 id3 = new ID3(ds, "cls");
+				id3.setTreeListener(metrics);
+				DTNode root = levelWise ? id3.buildDecisionTreeLevelWise(ds) : id3.buildDecisionTree(ds);
+
+				int numNodes = ID3.countNodes(root);
+				assertEquals(1, metrics.getBuilds(), message);
+				assertEquals(numNodes, metrics.getNodesCreated(), message);
+				assertEquals(countLeaves(root), metrics.getLeavesCreated(), message);
+				assertEquals(ID3.treeDepth(root), metrics.getMaxDepth(), message);
+				assertTrue(metrics.getRowsScanned() > 0, message);
+				assertTrue(metrics.getSplitsChosen() >= numNodes - countLeaves(root), message);
+				assertTrue(metrics.getGainEvaluations() >= metrics.getSplitsChosen(), message);
+				if (levelWise) {
+					assertEquals(ID3.treeDepth(root) + 1, metrics.getLevelMillis().length, message);
+				}
+
+				//predictions are counted per batch
+				CompiledTree tree = id3.compile();
+				tree.setTreeListener(metrics);
+				int[][] encoded = TestTrees.encodedRows(tree, rows);
+				tree.predictBatch(encoded, new int[encoded.length]);
+				tree.predictBatch(ds, new int[ds.getNumRows()]);
+				assertEquals(encoded.length + ds.getNumRows(), metrics.getPredictedRows(), message);
+				assertEquals(2, metrics.getPredictionBatches(), message);
+				assertTrue(metrics.toString().contains("nodes created: " + numNodes), message);
+
+				metrics.reset();
+				assertEquals(0, metrics.getBuilds(), message);
+				assertEquals(0, metrics.getNodesCreated(), message);
+				assertEquals(0, metrics.getLeavesCreated(), message);
+				assertEquals(0, metrics.getMaxDepth(), message);
+				assertEquals(0, metrics.getRowsScanned(), message);
+				assertEquals(0, metrics.getSplitsChosen(), message);
+				assertEquals(0, metrics.getGainEvaluations(), message);
+				assertEquals(0, metrics.getPredictedRows(), message);
+				assertEquals(0, metrics.getPredictionBatches(), message);
+				assertEquals(0, metrics.getLastBuildMillis(), message);
+				assertEquals(0, metrics.getSplitMillisByDepth().length, message);
+				assertEquals(0, metrics.getLevelMillis().length, message);
+			}
+		}
+	}
+
+
+	@Test
+	void buildsAreRecordedAsEvents() throws Exception {
+		Dataset ds = TestTrees.encode(TestTrees.categorical(4, 3000, 6, 3));
+		ID3 id3 = new ID3(ds, "cls");
+		DTNode root;
+		File file = new File(directory, "id3.jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable(TreeEvents.Build.class);
+			recording.enable(TreeEvents.Prediction.class).withThreshold(Duration.ZERO);
+			recording.start();
+			root = id3.buildDecisionTree(ds);
+			id3.compile().predictBatch(ds, new int[ds.getNumRows()]);
+			recording.stop();
+			recording.dump(file.toPath());
+		}
+
+		List<RecordedEvent> events = RecordingFile.readAllEvents(file.toPath());
+		int builds = 0;
+		int predictions = 0;
+		for (RecordedEvent event : events) {
+			if (event.getEventType().getName().equals("Q4.TreeBuild")) {
+				builds++;
+				assertEquals("buildDecisionTree", event.getString("method"));
+				assertEquals(ds.getNumRows(), event.getInt("rows"));
+				assertEquals(ID3.countNodes(root), event.getInt("nodes"));
+				assertEquals(ID3.treeDepth(root), event.getInt("depth"));
+			}
+			else if (event.getEventType().getName().equals("Q4.Prediction")) {
+				predictions++;
+				assertEquals(ds.getNumRows(), event.getInt("rows"));
+			}
+		}
+		assertEquals(1, builds);
+		assertEquals(1, predictions);
+	}
+
+
+	//helper function for the number of leaves under a node
+	static int countLeaves(DTNode node) {
+		if (node.children.isEmpty()) return 1;
+		int leaves = 0;
+		for (DTNode child : node.children.values()) {
+			leaves += countLeaves(child);
+		}
+		return leaves;
+	}
+
+}